@@ -0,0 +1,244 @@
+import java.io.IOException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reçoit en continu les réponses du récepteur depuis le {@link Transport}, pendant que l'émetteur continue d'envoyer.
+ *
+ * Jusqu'à {@link #attach}, seul l'ACK de la trame de connexion est attendu, en texte.
+ *
+ * Les ACK cumulatifs font avancer la {@link SlidingWindow} et relancent le {@link RetransmissionTimer} dès leur
+ * arrivée ; les REJ sont déposés dans une
+ * file sans verrou que l'émetteur vide entre deux envois. Chaque événement réveille le thread émetteur s'il
+ * attend de la place dans la fenêtre.
+ *
+ * En duplex, les trames de données du sens retour sont confiées à un {@link ReceiverSession}, qui renvoie
+ * l'acquittement qu'elles portent à {@link #acknowledge}.
+ */
+public class AckReader implements TransportListener {
+    private static final Log LOG = Log.get(AckReader.class);
+
+    private final Thread sender; // Thread à réveiller à chaque événement
+    private final ConcurrentLinkedQueue<Long> rejected = new ConcurrentLinkedQueue<>();
+    private FrameCodec codec = FrameCodec.TEXT;
+    private SlidingWindow window;
+    private RetransmissionTimer timer;
+    private TransferStats stats;
+    private ReceiverSession inbound; // Duplex : reçoit les trames de données du sens retour
+    // Publie les champs précédents au thread de lecture : écrit en dernier par attach(), lu en premier par onData()
+    private volatile Deframer deframer;
+    private volatile Frame connectionAck;
+    private volatile boolean closed = false;
+    private volatile IOException failure;
+    private volatile long lastReceived = System.nanoTime(); // Arrivée des derniers octets
+
+    /**
+     * @param sender Le thread émetteur, réveillé à chaque événement
+     */
+    public AckReader(Thread sender) {
+        this.sender = sender;
+        this.deframer = new Deframer(FrameCodec.TEXT, this::onConnectionReply);
+    }
+
+    /**
+     * Passe à la réception des ACKs de données, une fois les options de connexion adoptées.
+     *
+     * @param codec Le codec négocié
+     * @param window La fenêtre d'émission
+     * @param timer Le timer de retransmission
+     * @param stats Les statistiques du transfert, mises à jour à chaque réponse
+     */
+    public void attach(FrameCodec codec, SlidingWindow window, RetransmissionTimer timer, TransferStats stats) {
+        this.codec = codec;
+        this.window = window;
+        this.timer = timer;
+        this.stats = stats;
+        this.deframer = new Deframer(codec, new FrameListener() {
+            @Override
+            public void onFrame(Frame frame) throws IOException {
+                onReply(frame);
+            }
+
+            @Override
+            public void onBurstEnd() {
+                if (inbound != null) {
+                    inbound.endBurst(); // Les trames du sens retour sont acquittées par salve
+                }
+            }
+        });
+    }
+
+    /**
+     * Reçoit aussi des données : les trames autres que ACK et REJ sont confiées à la session.
+     * À appeler avant {@link #attach}.
+     *
+     * @param inbound La session du sens retour
+     */
+    public void setInbound(ReceiverSession inbound) {
+        this.inbound = inbound;
+    }
+
+    @Override
+    public void onData(byte[] buf, int off, int len) throws IOException {
+        lastReceived = System.nanoTime();
+        deframer.feed(buf, off, len);
+    }
+
+    @Override
+    public void onClosed(IOException cause) {
+        failure = cause;
+        closed = true;
+        if (inbound != null) {
+            inbound.onClosed(cause);
+        }
+        LockSupport.unpark(sender);
+    }
+
+    // Première réponse du récepteur : l'ACK de la trame de connexion
+    private void onConnectionReply(Frame reply) {
+        if (connectionAck == null) {
+            connectionAck = reply;
+            LockSupport.unpark(sender);
+        }
+    }
+
+    /**
+     * Attend la réponse à la trame de connexion.
+     *
+     * @param timeoutMillis Le délai d'attente
+     * @return La réponse, ou null si elle n'arrive pas à temps
+     * @throws IOException Si la connexion est perdue
+     */
+    public Frame awaitConnectionAck(long timeoutMillis) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long remaining;
+        while (connectionAck == null && (remaining = deadline - System.nanoTime()) > 0) {
+            if (closed) {
+                throw failure != null ? failure : new IOException("Connection closed by receiver");
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+        return connectionAck;
+    }
+
+    /**
+     * Traite une réponse complète : reçue par le deframer, ou transmise par la session qui reçoit les
+     * trames de ce lien en duplex.
+     *
+     * @param reply La trame reçue (son CRC n'est pas encore vérifié)
+     * @throws IOException Si la session du sens retour échoue
+     */
+    void onReply(Frame reply) throws IOException {
+        if (inbound != null && !"A".equals(reply.getType()) && !"R".equals(reply.getType())) {
+            inbound.receiveFrame(reply);
+            if (inbound.isEnded()) {
+                LockSupport.unpark(sender); // Fin du sens retour attendue par awaitInbound()
+            }
+            return;
+        }
+        Frame unstuffedFrame = reply;
+        if (codec.isLineDelimited()) {
+            String unstuffedData = BitStuffing.removeBitStuffing(reply.getData()); // Retire le bit stuffing
+            if (!unstuffedData.equals(reply.getData())) { // Sinon le CRC contrôlé au décodage reste valable
+                unstuffedFrame = new Frame(reply.getType(), reply.getNum(), unstuffedData, reply.getCrc());
+            }
+        }
+        if (!codec.validate(unstuffedFrame)) { // Vérifie le CRC
+            LOG.warn("CRC mismatch for reply to frame " + reply.getNum());
+            return;
+        }
+
+        if ("A".equals(reply.getType())) {
+            acknowledge(reply.getNum());
+        } else if ("R".equals(reply.getType())) {
+            long index = window.indexOf(reply.getNum());
+            if (window.isOutstanding(index)) {
+                LOG.warn("Received REJ for frame " + reply.getNum());
+                stats.onReject();
+                long base = window.getBase();
+                int acknowledged = window.acknowledge(reply.getNum());
+                if (acknowledged > 0) { // Un REJ acquitte aussi les trames qui précèdent
+                    stats.onAck(base, base + acknowledged);
+                    timer.onAck(window);
+                }
+                rejected.add(index);
+            }
+        } else {
+            LOG.warn("Received unexpected frame type: " + reply.getType());
+            return;
+        }
+        LockSupport.unpark(sender);
+    }
+
+    /**
+     * Traite un ACK cumulatif, reçu seul ou porté par une trame de données du sens retour.
+     * Appelée par le seul thread qui lit le lien.
+     *
+     * @param num Le numéro de la prochaine trame attendue par le pair
+     */
+    void acknowledge(int num) {
+        long base = window.getBase(); // Seul ce thread fait avancer la base
+        int acknowledged = window.acknowledge(num);
+        if (acknowledged > 0) {
+            stats.onAck(base, base + acknowledged);
+            timer.onAck(window);
+            LOG.debug(() -> "Received ACK for frame " + Math.floorMod(num - 1, SlidingWindow.SEQUENCE_MODULUS));
+            LockSupport.unpark(sender);
+        }
+    }
+
+    /**
+     * @return L'indice de la prochaine trame rejetée à réenvoyer, ou null s'il n'y en a pas
+     */
+    public Long pollRejected() {
+        return rejected.poll();
+    }
+
+    /**
+     * Attend que la base de la fenêtre avance, qu'un REJ arrive, que le timer de retransmission expire
+     * ou que la connexion se ferme.
+     *
+     * @param base La base lue avant de décider d'attendre : un ACK arrivé depuis rend la main aussitôt
+     * @throws IOException Si la connexion est perdue
+     */
+    public void awaitProgress(long base) throws IOException {
+        while (window.getBase() == base && rejected.isEmpty() && !timer.isExpired()) {
+            if (closed) {
+                throw failure != null ? failure : new IOException("Connection closed by receiver");
+            }
+            LockSupport.park(this);
+        }
+    }
+
+    /**
+     * Attend la fin du sens retour : sa trame F, la fermeture de la connexion, ou un silence prolongé
+     * (trame F perdue).
+     *
+     * @param idleMillis Le silence au-delà duquel l'attente cesse
+     * @return true si le sens retour s'est terminé par une trame F
+     */
+    public boolean awaitInbound(long idleMillis) {
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+        long remaining;
+        while (!inbound.isEnded() && !closed && (remaining = lastReceived + idleNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+        return inbound.isEnded();
+    }
+
+    /**
+     * Attend que le récepteur ferme la connexion.
+     *
+     * @param timeoutMillis Le délai d'attente
+     * @return true si la connexion est fermée
+     */
+    public boolean awaitClosed(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long remaining;
+        while (!closed && (remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+        return closed;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Appender asynchrone : les événements sont copiés dans un tampon circulaire d'enregistrements préalloués et
+ * écrits par un thread démon. Le thread émetteur range les champs de l'événement dans une place du tampon,
+ * sans rien allouer ; la mise en forme et les écritures sur la console se font hors du chemin critique.
+ *
+ * Quand le tampon est plein, l'émetteur attend qu'une place se libère : aucun événement n'est perdu.
+ */
+public class AsyncAppender implements LogAppender, Runnable {
+    private final LogAppender delegate;
+    private final LogRecord[] ring;
+    private long head = 0; // Prochain événement à écrire
+    private long tail = 0; // Prochaine place libre
+    private final LogRecord current = new LogRecord(); // Copie de l'événement en cours d'écriture
+
+    /**
+     * @param delegate L'appender qui écrit réellement les événements
+     * @param capacity La taille du tampon circulaire
+     */
+    public AsyncAppender(LogAppender delegate, int capacity) {
+        this.delegate = delegate;
+        this.ring = new LogRecord[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new LogRecord();
+        }
+        Thread thread = new Thread(this, "log-appender");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void append(LogRecord record) {
+        append(record.timeMillis, record.level, record.thread, record.logger, record.message, record.error);
+    }
+
+    @Override
+    public synchronized void append(long timeMillis, Log.Level level, String thread, String logger, String message, Throwable error) {
+        boolean interrupted = false;
+        while (tail - head == ring.length) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true; // L'événement est tout de même écrit
+            }
+        }
+        ring[(int) (tail % ring.length)].set(timeMillis, level, thread, logger, message, error);
+        if (tail++ == head) {
+            notifyAll(); // Réveille le thread d'écriture
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            synchronized (this) {
+                while (head == tail) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                LogRecord slot = ring[(int) (head % ring.length)];
+                current.copyFrom(slot);
+                slot.clear();
+            }
+            delegate.append(current); // Hors du verrou : les émetteurs ne sont pas bloqués par la console
+            synchronized (this) {
+                head++;
+                notifyAll(); // Libère les émetteurs en attente et les appels à flush()
+            }
+        }
+    }
+
+    /**
+     * Attend que tous les événements reçus jusqu'ici soient écrits.
+     */
+    @Override
+    public void flush() {
+        synchronized (this) {
+            long target = tail;
+            while (head < target) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        delegate.flush();
+    }
+}
@@ -0,0 +1,253 @@
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Codec binaire : le type, le numéro, les données et le CRC sont transmis en bits réels.
+ *
+ * Format : flag 0x7E | bourrage(type 8 bits, numéro 8 bits, données, CRC) | flag 0x7E.
+ * Chaque trame commence sur une frontière d'octet ; les bits restants après le flag de fin sont à 0.
+ *
+ * Le CRC est un CRC-CCITT sur 16 bits par défaut ; un CRC-32 ou un CRC-32C peut être négocié pour les
+ * grandes trames, où 16 bits laissent passer trop d'erreurs. Le CRC-32C est le plus rapide des trois :
+ * la JVM le calcule avec l'instruction CRC32 des processeurs x86 (SSE4.2) et ARMv8.
+ */
+public class BinaryFrameCodec implements FrameCodec {
+    static final int FLAG = 0x7E; // 01111110
+    private static final int HEADER_SIZE = 2; // Type et numéro
+    private static final int CRC_BLOCK = 512; // Octets passés au CRC à la fois pendant un parcours, encore en cache
+
+    /**
+     * Somme de contrôle placée en fin de trame, annoncée par l'option "fcs" de la trame de connexion.
+     */
+    public enum Checksum {
+        CRC16("crc16", 2),  // CRC-CCITT, moteur sélectionné par crc.engine
+        CRC32("crc32", 4),  // CRC-32 IEEE 802.3, celui d'Ethernet (java.util.zip, accéléré par la JVM)
+        CRC32C("crc32c", 4); // CRC-32C Castagnoli, celui d'iSCSI et de SCTP (instruction dédiée du processeur)
+
+        private final String name;
+        private final int size;
+
+        Checksum(String name, int size) {
+            this.name = name;
+            this.size = size;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return La taille de la somme dans la trame, en octets
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return Le codec binaire qui utilise cette somme
+         */
+        public BinaryFrameCodec getCodec() {
+            return Codecs.BY_CHECKSUM[ordinal()];
+        }
+
+        long compute(byte[] buf, int off, int len) {
+            return compute(buf, off, len, newEngine());
+        }
+
+        // Avec un moteur fourni par l'appelant (voir newEngine), réutilisable d'une trame à l'autre
+        long compute(byte[] buf, int off, int len, java.util.zip.Checksum engine) {
+            engine.reset();
+            engine.update(buf, off, len);
+            return engine.getValue();
+        }
+
+        // Accumulateur de la somme, alimenté au fil du parcours de la trame
+        java.util.zip.Checksum newEngine() {
+            switch (this) {
+                case CRC16:
+                    return new CRC.Accumulator();
+                case CRC32:
+                    return new CRC32();
+                default:
+                    return new CRC32C();
+            }
+        }
+
+        // Forme hexadécimale conservée dans la trame
+        String format(long value) {
+            return BitCodec.toHex(value, size * 2);
+        }
+
+        public static Checksum forName(String name) {
+            for (Checksum checksum : values()) {
+                if (checksum.name.equals(name)) {
+                    return checksum;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Une instance par somme de contrôle, créée au premier usage : FrameCodec et Checksum s'initialisent avant
+    private static final class Codecs {
+        static final BinaryFrameCodec[] BY_CHECKSUM = new BinaryFrameCodec[Checksum.values().length];
+
+        static {
+            for (Checksum checksum : Checksum.values()) {
+                BY_CHECKSUM[checksum.ordinal()] = new BinaryFrameCodec(checksum);
+            }
+        }
+    }
+
+    private final Checksum checksum;
+
+    // Obtenu par Checksum.getCodec() ; FrameCodec.BINARY utilise le CRC-CCITT
+    private BinaryFrameCodec(Checksum checksum) {
+        this.checksum = checksum;
+    }
+
+    public Checksum getChecksum() {
+        return checksum;
+    }
+
+    @Override
+    public String getName() {
+        return "binary";
+    }
+
+    @Override
+    public byte[] encode(Frame frame) {
+        byte[] data = frame.getPayload();
+        byte[] body = newBody(frame.getType().charAt(0), frame.getNum(), data.length);
+        System.arraycopy(data, 0, body, HEADER_SIZE, data.length);
+        return seal(body);
+    }
+
+    // Contenu de la trame avant bourrage : type, numéro, données, CRC
+    private byte[] newBody(char type, int num, int dataLength) {
+        byte[] body = new byte[HEADER_SIZE + dataLength + checksum.size];
+        body[0] = (byte) type;
+        body[1] = (byte) num;
+        return body;
+    }
+
+    /**
+     * Encode une trame mutable directement dans un tampon de sortie, sans allocation une fois les tampons
+     * de la trame dimensionnés.
+     *
+     * @param frame La trame (type, numéro et données)
+     * @param out Le tampon de sortie ; la trame est écrite à sa position, qui avance d'autant
+     * @return Le nombre d'octets écrits
+     * @throws java.nio.BufferOverflowException Si le tampon ne peut pas contenir {@link #maxEncodedLength} octets
+     */
+    public int encode(FrameBuffer frame, ByteBuffer out) {
+        int bodyLength = frame.length + checksum.size;
+        frame.ensureCapacity(bodyLength);
+        frame.ensureScratch(bodyLength);
+        int bodyBits = packWithChecksum(frame.body, frame.length, frame.bits, frame.engine(checksum));
+        int length = stuff(frame.bits, bodyBits, frame.stuffed, frame.stuffer);
+        return BitStuffing.unpack(frame.stuffed, length, out);
+    }
+
+    /**
+     * @param dataLength Nombre d'octets de données
+     * @return La taille maximale de la trame encodée : chaque bit de bourrage suit au moins cinq bits
+     */
+    public int maxEncodedLength(int dataLength) {
+        int bodyBits = (HEADER_SIZE + dataLength + checksum.size) * 8;
+        return (bodyBits + bodyBits / 5 + 16 + 7) / 8;
+    }
+
+    // Calcule le CRC du contenu puis applique le bourrage et les flags
+    private byte[] seal(byte[] body) {
+        long[] bits = new long[(body.length + 7) / 8];
+        int bodyBits = packWithChecksum(body, body.length - checksum.size, bits, checksum.newEngine());
+        long[] stuffed = new long[BitStuffing.stuffedCapacity(bodyBits + 16)];
+        int length = stuff(bits, bodyBits, stuffed, new BitStuffing.Stuffer());
+        byte[] encoded = new byte[(length + 7) / 8];
+        BitStuffing.unpack(stuffed, length, encoded, 0);
+        return encoded;
+    }
+
+    /*
+     * Range les end premiers octets dans bits en calculant le CRC au passage, bloc par bloc, puis écrit le
+     * CRC juste après eux (poids fort en premier) et le range à son tour. Rend le nombre de bits rangés.
+     */
+    private int packWithChecksum(byte[] body, int end, long[] bits, java.util.zip.Checksum engine) {
+        engine.reset();
+        int aligned = end & ~7; // Les mots entiers qui ne contiennent que du contenu
+        for (int from = 0; from < aligned; from += CRC_BLOCK) {
+            int n = Math.min(CRC_BLOCK, aligned - from);
+            engine.update(body, from, n);
+            BitStuffing.pack(body, from, n, bits, from >>> 3);
+        }
+        engine.update(body, aligned, end - aligned);
+        long crc = engine.getValue();
+        for (int i = end + checksum.size - 1; i >= end; i--, crc >>>= 8) {
+            body[i] = (byte) crc;
+        }
+        return aligned * 8 + BitStuffing.pack(body, aligned, end + checksum.size - aligned, bits, aligned >>> 3);
+    }
+
+    // Bourrage mot par mot, encadré par les deux flags ; rend le nombre de bits écrits dans stuffed
+    private static int stuff(long[] bits, int bodyBits, long[] stuffed, BitStuffing.Stuffer stuffer) {
+        BitStuffing.writeBits(stuffed, 0, (long) FLAG << 56, 8);
+        stuffer.reset();
+        int length = stuffer.stuff(bits, 0, bodyBits, stuffed, 8);
+        BitStuffing.writeBits(stuffed, length, (long) FLAG << 56, 8);
+        return length + 8;
+    }
+
+    @Override
+    public Frame decodeBody(long[] bits, int length) {
+        if (length % 8 != 0 || length < (HEADER_SIZE + checksum.size) * 8) {
+            return null;
+        }
+        // Un seul parcours des bits : les données sont extraites et passées au CRC bloc par bloc
+        java.util.zip.Checksum engine = checksum.newEngine();
+        int type = byteAt(bits, 0);
+        int num = byteAt(bits, 1);
+        engine.update(type);
+        engine.update(num);
+        int end = length / 8 - checksum.size;
+        byte[] data = new byte[end - HEADER_SIZE]; // Données brutes, sans décodage
+        for (int from = 0; from < data.length; from += CRC_BLOCK) {
+            int to = Math.min(data.length, from + CRC_BLOCK);
+            for (int i = from; i < to; i++) {
+                data[i] = (byte) byteAt(bits, HEADER_SIZE + i);
+            }
+            engine.update(data, from, to - from);
+        }
+        long crc = 0;
+        for (int i = end; i < end + checksum.size; i++) {
+            crc = crc << 8 | byteAt(bits, i);
+        }
+        Frame frame = Frame.withPayload(String.valueOf((char) type), num, data, checksum.format(crc));
+        frame.setCrcValid(engine.getValue() == crc);
+        return frame;
+    }
+
+    @Override
+    public boolean validate(Frame frame) {
+        if (frame.getCrcValid() != null) {
+            return frame.getCrcValid(); // Contrôlé pendant le décodage
+        }
+        byte[] body = bodyWithoutCrc(frame);
+        return checksum.format(checksum.compute(body, 0, body.length)).equals(frame.getCrc());
+    }
+
+    // Octet i d'un tampon de bits compacté
+    private static int byteAt(long[] bits, int i) {
+        return (int) (bits[i >>> 3] >>> (56 - ((i & 7) << 3))) & 0xFF;
+    }
+
+    private static byte[] bodyWithoutCrc(Frame frame) {
+        byte[] data = frame.getPayload();
+        byte[] body = new byte[HEADER_SIZE + data.length];
+        body[0] = (byte) frame.getType().charAt(0);
+        body[1] = (byte) frame.getNum();
+        System.arraycopy(data, 0, body, HEADER_SIZE, data.length);
+        return body;
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Conversions entre octets et chaînes de bits ('0' et '1') du codec texte, par tables précalculées.
+ *
+ * Un octet devient ses huit caractères, poids fort en premier, par une simple copie depuis une table de
+ * 256 entrées ; dans l'autre sens, une table indexée par caractère donne la valeur de chaque bit et
+ * repère les caractères invalides. Aucune conversion ne passe par String.format ni Integer.parseInt.
+ */
+public class BitCodec {
+    private static final char[] BITS = new char[256 * 8]; // Les huit caractères de chaque octet, bout à bout
+    private static final byte[] BIT_VALUES = new byte[256]; // Valeur du bit de chaque caractère, -1 s'il est invalide
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    static {
+        for (int b = 0; b < 256; b++) {
+            for (int i = 0; i < 8; i++) {
+                BITS[b * 8 + i] = (b >>> (7 - i) & 1) == 0 ? '0' : '1';
+            }
+        }
+        java.util.Arrays.fill(BIT_VALUES, (byte) -1);
+        BIT_VALUES['0'] = 0;
+        BIT_VALUES['1'] = 1;
+    }
+
+    /**
+     * Ajoute les huit bits d'un octet.
+     *
+     * @param sb La chaîne en construction
+     * @param value L'octet, de 0 à 255 (seuls les 8 bits de poids faible sont pris)
+     * @return sb
+     */
+    public static StringBuilder appendBits(StringBuilder sb, int value) {
+        return sb.append(BITS, (value & 0xFF) << 3, 8);
+    }
+
+    /**
+     * Ajoute les bits d'une plage d'octets.
+     *
+     * @param sb La chaîne en construction
+     * @param src Les octets
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @return sb
+     */
+    public static StringBuilder appendBits(StringBuilder sb, byte[] src, int off, int len) {
+        sb.ensureCapacity(sb.length() + len * 8);
+        for (int i = off; i < off + len; i++) {
+            sb.append(BITS, (src[i] & 0xFF) << 3, 8);
+        }
+        return sb;
+    }
+
+    /**
+     * Écrit les bits d'une plage d'octets dans un tableau de caractères.
+     *
+     * @param src Les octets
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @param dst Le tableau de destination, d'au moins 8 * len caractères après dstOff
+     * @param dstOff Position du premier caractère écrit
+     * @return Le nombre de caractères écrits
+     */
+    public static int toBits(byte[] src, int off, int len, char[] dst, int dstOff) {
+        for (int i = 0; i < len; i++) {
+            System.arraycopy(BITS, (src[off + i] & 0xFF) << 3, dst, dstOff + (i << 3), 8);
+        }
+        return len << 3;
+    }
+
+    /**
+     * @param src Les octets
+     * @return Leur représentation binaire, 8 caractères par octet
+     */
+    public static String toBits(byte[] src) {
+        char[] bits = new char[src.length * 8];
+        toBits(src, 0, src.length, bits, 0);
+        return new String(bits);
+    }
+
+    /**
+     * Ajoute les bits des chiffres hexadécimaux (ASCII, majuscules) d'une valeur : c'est la forme du CRC
+     * dans une trame texte.
+     *
+     * @param sb La chaîne en construction
+     * @param value La valeur
+     * @param digits Nombre de chiffres hexadécimaux
+     * @return sb
+     */
+    public static StringBuilder appendHexBits(StringBuilder sb, long value, int digits) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            appendBits(sb, HEX_DIGITS[(int) (value >>> shift) & 0xF]);
+        }
+        return sb;
+    }
+
+    /**
+     * @param value La valeur
+     * @param digits Nombre de chiffres hexadécimaux
+     * @return La valeur en hexadécimal majuscule, complétée par des zéros à gauche
+     */
+    public static String toHex(long value, int digits) {
+        char[] hex = new char[digits];
+        for (int i = digits - 1; i >= 0; i--, value >>>= 4) {
+            hex[i] = HEX_DIGITS[(int) value & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Lit un nombre écrit en binaire, poids fort en premier.
+     *
+     * @param bits La chaîne binaire
+     * @param off Position du premier bit
+     * @param len Nombre de bits, au plus 31
+     * @return La valeur lue
+     * @throws NumberFormatException Si un caractère n'est ni '0' ni '1'
+     */
+    public static int parseBits(CharSequence bits, int off, int len) {
+        int value = 0;
+        for (int i = off; i < off + len; i++) {
+            value = value << 1 | bitValue(bits.charAt(i));
+        }
+        return value;
+    }
+
+    /**
+     * @param c Un caractère d'une chaîne binaire
+     * @return 0 ou 1
+     * @throws NumberFormatException Si le caractère n'est ni '0' ni '1'
+     */
+    static int bitValue(char c) {
+        int bit = c < 256 ? BIT_VALUES[c] : -1;
+        if (bit < 0) {
+            throw new NumberFormatException("Invalid bit '" + c + "'");
+        }
+        return bit;
+    }
+
+    /**
+     * Lit un octet : huit bits, poids fort en premier.
+     *
+     * @param bits La chaîne binaire
+     * @param off Position du premier bit
+     * @return L'octet, de 0 à 255
+     * @throws NumberFormatException Si un caractère n'est ni '0' ni '1'
+     */
+    public static int parseByte(CharSequence bits, int off) {
+        return parseBits(bits, off, 8);
+    }
+
+    /**
+     * Convertit une chaîne binaire en octets ; un dernier groupe de moins de huit bits donne un octet
+     * qui ne contient que ces bits (comme Integer.parseInt sur le groupe).
+     *
+     * @param bits La chaîne binaire
+     * @param off Position du premier bit
+     * @param len Nombre de bits
+     * @param dst Le tableau de destination
+     * @param dstOff Position du premier octet écrit
+     * @return Le nombre d'octets écrits
+     * @throws NumberFormatException Si un caractère n'est ni '0' ni '1'
+     */
+    public static int toBytes(CharSequence bits, int off, int len, byte[] dst, int dstOff) {
+        int count = 0;
+        for (int i = 0; i < len; i += 8, count++) {
+            dst[dstOff + count] = (byte) parseBits(bits, off + i, Math.min(8, len - i));
+        }
+        return count;
+    }
+}
@@ -1,3 +1,6 @@
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 public class BitStuffing {
 
     /**
@@ -7,7 +10,7 @@ public class BitStuffing {
      * @return La chaîne avec le bit stuffing appliqué
      */
     public static String applyBitStuffing(String data) {
-        StringBuilder stuffedData = new StringBuilder(); // Stocke les données après bit stuffing
+        StringBuilder stuffedData = new StringBuilder(data.length() + data.length() / 5); // Stocke les données après bit stuffing
         int consecutiveOnes = 0; // Compteur pour suivre les '1' consécutifs
 
         for (char bit : data.toCharArray()) { // Parcourt chaque bit dans la chaîne
@@ -33,7 +36,7 @@ public class BitStuffing {
      * @return La chaîne d'origine sans bit stuffing
      */
     public static String removeBitStuffing(String stuffedData) {
-        StringBuilder originalData = new StringBuilder(); // Stocke les données après suppression du bit stuffing
+        StringBuilder originalData = new StringBuilder(stuffedData.length()); // Stocke les données après suppression du bit stuffing
         int consecutiveOnes = 0; // Compteur pour suivre les '1' consécutifs
 
         for (int i = 0; i < stuffedData.length(); i++) { // Parcourt chaque bit dans la chaîne
@@ -64,15 +67,366 @@ public class BitStuffing {
      * @return La représentation binaire de la chaîne
      */
     public static String stringToBinary(String input) {
-        StringBuilder binaryRepresentation = new StringBuilder(); // Stocke la chaîne binaire
-        byte[] byteArray = input.getBytes(); // Convertit la chaîne en tableau d'octets
+        return BitCodec.toBits(input.getBytes()); // Chaque octet devient ses 8 bits, lus dans une table
+    }
+
+    /**
+     * Bourrage d'une trame texte écrite octet par octet : chaque bit devient un caractère '0' ou '1', avec un
+     * '0' inséré après cinq '1' (comme {@link #applyBitStuffing(String)}). Les bits avant bourrage peuvent
+     * alimenter un CRC pendant le même parcours.
+     */
+    public static final class TextStuffer {
+        private final StringBuilder out;
+        private int ones; // '1' consécutifs à la fin de la sortie
+
+        /**
+         * @param out La chaîne où écrire les bits bourrés
+         */
+        public TextStuffer(StringBuilder out) {
+            this.out = out;
+        }
+
+        /**
+         * Ajoute les huit bits d'un octet, poids fort en premier.
+         *
+         * @param b L'octet (seuls les 8 bits de poids faible sont pris)
+         * @param crc Le CRC à alimenter avec les bits avant bourrage, ou null
+         */
+        public void append(int b, CRC.Accumulator crc) {
+            for (int i = 7; i >= 0; i--) {
+                char bit = (b >>> i & 1) == 0 ? '0' : '1';
+                if (crc != null) {
+                    crc.update(bit);
+                }
+                out.append(bit);
+                if (bit == '0') {
+                    ones = 0;
+                } else if (++ones == 5) {
+                    out.append('0'); // Insère un '0' après cinq '1'
+                    ones = 0;
+                }
+            }
+        }
+
+        /**
+         * Ajoute les bits d'une plage d'octets.
+         */
+        public void append(byte[] src, int off, int len, CRC.Accumulator crc) {
+            for (int i = off; i < off + len; i++) {
+                append(src[i], crc);
+            }
+        }
+    }
+
+    /*
+     * Moteur de bourrage sur tampons de bits compactés.
+     *
+     * Les bits sont rangés poids fort en premier : le bit i d'un tampon long[] est le bit (63 - i % 64)
+     * du mot i / 64, ce qui correspond à l'ordre de transmission des octets. Les tampons de sortie sont
+     * fournis par l'appelant et doivent contenir un mot de réserve après la dernière position écrite.
+     */
+
+    /**
+     * Nombre de mots nécessaires pour recevoir le bourrage de {@code bits} bits à partir de la position 0.
+     *
+     * @param bits Nombre de bits avant bourrage
+     * @return Taille minimale du tampon de sortie, mot de réserve compris
+     */
+    public static int stuffedCapacity(int bits) {
+        return (bits + bits / 5 + 63) / 64 + 1;
+    }
+
+    /**
+     * Range des octets dans un tampon de bits compacté (8 octets par mot, poids fort en premier).
+     *
+     * @param src Les octets source
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @param dst Le tampon de destination, d'au moins (len + 7) / 8 mots
+     * @return Le nombre de bits écrits
+     */
+    public static int pack(byte[] src, int off, int len, long[] dst) {
+        return pack(src, off, len, dst, 0);
+    }
 
-        for (byte b : byteArray) {
-            // Convertit chaque octet en une chaîne binaire (8 bits), complétée par des zéros à gauche si nécessaire
-            String binaryString = String.format("%8s", Integer.toBinaryString(b & 0xFF)).replace(' ', '0');
-            binaryRepresentation.append(binaryString); // Ajoute la chaîne binaire au résultat final
+    /**
+     * Range des octets dans un tampon de bits compacté, à partir d'un mot donné.
+     *
+     * @param src Les octets source
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @param dst Le tampon de destination
+     * @param dstWord Premier mot écrit
+     * @return Le nombre de bits écrits
+     */
+    public static int pack(byte[] src, int off, int len, long[] dst, int dstWord) {
+        int words = (len + 7) >>> 3;
+        for (int w = 0; w < words; w++) {
+            long word = 0;
+            int base = off + (w << 3);
+            for (int k = 0; k < 8; k++) {
+                int i = base + k;
+                word = (word << 8) | (i < off + len ? src[i] & 0xFF : 0);
+            }
+            dst[dstWord + w] = word;
         }
+        return len << 3;
+    }
+
+    /**
+     * Copie un tampon de bits compacté dans des octets. Le dernier octet est complété par des zéros.
+     *
+     * @param src Le tampon de bits
+     * @param bits Nombre de bits à copier
+     * @param dst Les octets de destination
+     * @param off Position du premier octet écrit
+     * @return Le nombre d'octets écrits
+     */
+    public static int unpack(long[] src, int bits, byte[] dst, int off) {
+        int len = (bits + 7) >>> 3;
+        for (int i = 0; i < len; i++) {
+            dst[off + i] = (byte) (src[i >>> 3] >>> (56 - ((i & 7) << 3)));
+        }
+        if ((bits & 7) != 0) {
+            dst[off + len - 1] &= (byte) (0xFF00 >>> (bits & 7));
+        }
+        return len;
+    }
+
+    /**
+     * Copie un tampon de bits compacté à la position d'un tampon d'octets, qui avance d'autant.
+     *
+     * @param src Le tampon de bits
+     * @param bits Nombre de bits à copier
+     * @param dst Le tampon de destination
+     * @return Le nombre d'octets écrits
+     * @throws BufferOverflowException Si la destination est trop petite ; elle n'est alors pas modifiée
+     */
+    public static int unpack(long[] src, int bits, ByteBuffer dst) {
+        int len = (bits + 7) >>> 3;
+        if (dst.remaining() < len) {
+            throw new BufferOverflowException();
+        }
+        if (dst.hasArray()) {
+            unpack(src, bits, dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + len);
+            return len;
+        }
+        for (int i = 0; i < len - 1; i++) {
+            dst.put((byte) (src[i >>> 3] >>> (56 - ((i & 7) << 3))));
+        }
+        if (len > 0) {
+            int i = len - 1;
+            byte last = (byte) (src[i >>> 3] >>> (56 - ((i & 7) << 3)));
+            dst.put((bits & 7) != 0 ? (byte) (last & (0xFF00 >>> (bits & 7))) : last);
+        }
+        return len;
+    }
 
-        return binaryRepresentation.toString(); // Retourne la chaîne binaire
+    /**
+     * Lit 64 bits à partir d'une position quelconque ; les bits au-delà de {@code end} valent 0.
+     */
+    static long readBits(long[] src, int pos, int end) {
+        int index = pos >>> 6;
+        int shift = pos & 63;
+        long word = src[index] << shift;
+        if (shift != 0 && index + 1 < src.length) {
+            word |= src[index + 1] >>> (64 - shift);
+        }
+        int available = end - pos;
+        return available >= 64 ? word : word & ~(-1L >>> available);
+    }
+
+    /**
+     * Écrit les {@code n} bits de poids fort de {@code bits} à la position {@code pos}.
+     * Les bits qui suivent la zone écrite peuvent être écrasés.
+     */
+    static void writeBits(long[] dst, int pos, long bits, int n) {
+        int index = pos >>> 6;
+        int shift = pos & 63;
+        if (n < 64) {
+            bits &= ~(-1L >>> n);
+        }
+        if (shift == 0) {
+            dst[index] = bits;
+        } else {
+            dst[index] = (dst[index] & ~(-1L >>> shift)) | (bits >>> shift);
+            if (shift + n > 64) {
+                dst[index + 1] = bits << (64 - shift);
+            }
+        }
+    }
+
+    /**
+     * Cherche, dans un bloc de {@code n} bits, l'endroit où une série de '1' atteint cinq bits,
+     * en tenant compte des {@code ones} '1' qui terminaient le bloc précédent.
+     *
+     * @return Le nombre de bits à consommer jusqu'au cinquième '1' inclus, ou -1 s'il n'y en a pas
+     */
+    private static int firstRunOfFive(long word, int n, int ones) {
+        int leadingOnes = Math.min(Long.numberOfLeadingZeros(~word), n);
+        if (ones + leadingOnes >= 5) {
+            return 5 - ones;
+        }
+        // Un bit reste à 1 si lui et les quatre bits qui le précèdent sont à 1
+        long runs = word & (word >>> 1) & (word >>> 2) & (word >>> 3) & (word >>> 4);
+        return runs == 0 ? -1 : Long.numberOfLeadingZeros(runs) + 1;
+    }
+
+    // Nombre de '1' consécutifs à la fin des n premiers bits d'un bloc
+    private static int trailingOnes(long word, int n, int ones) {
+        long valid = word >>> (64 - n);
+        int trailing = Long.numberOfTrailingZeros(~valid);
+        return trailing >= n ? ones + n : trailing;
+    }
+
+    /**
+     * Applique le bourrage de bits sur des tampons compactés, 64 bits à la fois. Un même objet peut être
+     * réutilisé pour enchaîner plusieurs morceaux d'une trame : le compte de '1' est conservé entre les appels.
+     */
+    public static final class Stuffer {
+        private int ones; // '1' consécutifs à la fin du dernier morceau
+
+        /**
+         * Remet le compteur à zéro avant une nouvelle trame.
+         */
+        public void reset() {
+            ones = 0;
+        }
+
+        /**
+         * Ajoute les bits [from, to) de {@code src} à {@code dst} en insérant un '0' après cinq '1'.
+         *
+         * @param src Les bits à bourrer
+         * @param from Position du premier bit
+         * @param to Position de fin (exclue)
+         * @param dst Le tampon de sortie, voir {@link #stuffedCapacity(int)}
+         * @param dstPos Position d'écriture dans {@code dst}
+         * @return La nouvelle position d'écriture
+         */
+        public int stuff(long[] src, int from, int to, long[] dst, int dstPos) {
+            int pos = from;
+            while (pos < to) {
+                int n = Math.min(64, to - pos);
+                long word = readBits(src, pos, to);
+                int run = firstRunOfFive(word, n, ones);
+                if (run < 0) {
+                    // Cas courant : le bloc entier est recopié d'un seul coup
+                    writeBits(dst, dstPos, word, n);
+                    dstPos += n;
+                    pos += n;
+                    ones = trailingOnes(word, n, ones);
+                } else {
+                    writeBits(dst, dstPos, word, run);
+                    dstPos += run;
+                    pos += run;
+                    writeBits(dst, dstPos, 0L, 1); // Bit de bourrage
+                    dstPos++;
+                    ones = 0;
+                }
+            }
+            return dstPos;
+        }
+    }
+
+    /**
+     * Retire le bourrage de bits sur des tampons compactés et signale les flags (01111110) et les abandons
+     * (sept '1' ou plus) rencontrés, ce qui permet de délimiter les trames pendant le même parcours.
+     *
+     * L'entrée est fournie par {@link #setInput(long[], int, int)} et peut arriver en plusieurs morceaux.
+     * La sortie est la trame en cours, écrite à partir du bit 0 du tampon de l'appelant.
+     */
+    public static final class Unstuffer {
+        public static final int NEED_INPUT = 0; // Toute l'entrée a été consommée
+        public static final int FLAG = 1;       // Flag rencontré : la sortie contient la trame qui le précède
+        public static final int ABORT = 2;      // Séquence d'abandon : la trame en cours est invalide
+        public static final int OVERFLOW = 3;   // Le tampon de sortie est plein
+
+        private long[] src;
+        private int pos;
+        private int end;
+        private int ones;    // '1' consécutifs lus en entrée
+        private int outBits; // Bits de la trame en cours déjà écrits en sortie
+
+        /**
+         * Fournit le prochain morceau d'entrée.
+         *
+         * @param src Les bits bourrés
+         * @param from Position du premier bit
+         * @param to Position de fin (exclue)
+         */
+        public void setInput(long[] src, int from, int to) {
+            this.src = src;
+            this.pos = from;
+            this.end = to;
+        }
+
+        /**
+         * Retire le bourrage jusqu'au prochain événement.
+         *
+         * @param dst Le tampon de la trame en cours (un mot de réserve est nécessaire)
+         * @return NEED_INPUT, FLAG, ABORT ou OVERFLOW
+         */
+        public int unstuff(long[] dst) {
+            int limit = (dst.length - 1) << 6;
+            while (pos < end) {
+                if (ones >= 5) {
+                    // Après cinq '1', chaque bit est traité individuellement
+                    int bit = (int) (src[pos >>> 6] >>> (63 - (pos & 63))) & 1;
+                    pos++;
+                    if (bit == 0) {
+                        int run = ones;
+                        ones = 0;
+                        if (run == 6) {
+                            // Flag : retire de la sortie le '0' et les cinq '1' qui en font partie
+                            outBits = Math.max(0, outBits - 6);
+                            return FLAG;
+                        }
+                        // run == 5 : bit de bourrage ignoré ; run > 6 : fin d'une séquence d'abandon
+                    } else if (++ones == 7) {
+                        return ABORT;
+                    }
+                    continue;
+                }
+
+                int n = Math.min(64, end - pos);
+                long word = readBits(src, pos, end);
+                int run = firstRunOfFive(word, n, ones);
+                int take = run < 0 ? n : run;
+                if (outBits + take > limit) {
+                    return OVERFLOW;
+                }
+                writeBits(dst, outBits, word, take);
+                outBits += take;
+                pos += take;
+                ones = run < 0 ? trailingOnes(word, n, ones) : 5;
+            }
+            return NEED_INPUT;
+        }
+
+        /**
+         * @return Le nombre de bits de la trame en cours
+         */
+        public int outputBits() {
+            return outBits;
+        }
+
+        /**
+         * Vide la sortie pour commencer une nouvelle trame (après un flag, un abandon ou un débordement).
+         */
+        public void clearOutput() {
+            outBits = 0;
+        }
+
+        /**
+         * Réinitialise complètement l'état (nouvelle connexion).
+         */
+        public void reset() {
+            src = null;
+            pos = 0;
+            end = 0;
+            ones = 0;
+            outBits = 0;
+        }
     }
 }
@@ -1,10 +1,35 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Objects;
 
 public class CRC {
+    private static final Log LOG = Log.get(CRC.class);
+
     // Constantes pour le calcul du CRC-CCITT
     private static final int POLYNOMIAL = 0x1021;  // Polynôme CRC-CCITT (x^16 + x^12 + x^5 + 1)
     private static final int INITIAL_VALUE = 0xFFFF;  // Valeur initiale du registre CRC
 
+    /**
+     * Moteurs de calcul disponibles. Tous produisent exactement le même CRC-CCITT (0x1021, init 0xFFFF),
+     * seule la vitesse change.
+     */
+    public enum Engine {
+        BITWISE,       // Décalage bit à bit (implémentation d'origine)
+        TABLE,         // Une table de 256 entrées, un octet par itération
+        SLICING_BY_8   // Huit tables de 256 entrées, huit octets par itération (gros volumes)
+    }
+
+    // Table classique : TABLES[0][b] est le CRC (registre à 0) de l'octet b.
+    // TABLES[k][b] est le CRC de l'octet b suivi de k octets nuls (utilisé par le slicing-by-8).
+    private static final int[][] TABLES = buildTables();
+    private static final int[] TABLE = TABLES[0];
+
+    // En dessous de cette taille, le slicing-by-8 n'apporte rien par rapport à la table simple
+    private static final int SLICING_THRESHOLD = 16;
+
+    // Moteur courant, sélectionnable à l'exécution (propriété système crc.engine ou setEngine)
+    private static volatile Engine engine = engineFromProperty();
+
     /**
      * Méthode pour calculer le checksum CRC-CCITT pour une chaîne donnée.
      *
@@ -12,9 +37,157 @@ public class CRC {
      * @return Le CRC calculé sous forme de chaîne hexadécimale (4 caractères)
      */
     public static String calculateCRC(String input) {
+        return BitCodec.toHex(crc16(input), 4);  // Retourne le CRC sous forme de chaîne hexadécimale
+    }
+
+    /**
+     * Calcule le CRC-CCITT d'une chaîne avec le moteur courant. Seul l'octet de poids faible de chaque
+     * caractère contribue au résultat, comme dans l'implémentation bit à bit d'origine.
+     *
+     * @param input La chaîne d'entrée
+     * @return Le CRC sur 16 bits
+     */
+    public static int crc16(CharSequence input) {
+        switch (engine) {
+            case BITWISE:
+                return bitwise(input);
+            case SLICING_BY_8:
+                return slicing(INITIAL_VALUE, input, 0, input.length());
+            default:
+                return table(INITIAL_VALUE, input, 0, input.length());
+        }
+    }
+
+    /**
+     * Calcule le CRC-CCITT d'une plage d'octets avec le moteur courant.
+     *
+     * @param buf Le tableau d'octets
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @return Le CRC sur 16 bits
+     */
+    public static int crc16(byte[] buf, int off, int len) {
+        return update(INITIAL_VALUE, buf, off, len);
+    }
+
+    /**
+     * Calcule le CRC-CCITT des octets restants d'un tampon, sans modifier sa position.
+     *
+     * @param buffer Le tampon (tas ou direct)
+     * @return Le CRC sur 16 bits
+     */
+    public static int crc16(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return crc16(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+
+        int crc = INITIAL_VALUE;
+        int i = buffer.position();
+        int end = buffer.limit();
+        if (engine == Engine.SLICING_BY_8) {
+            ByteBuffer view = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+            for (; end - i >= 8; i += 8) {
+                crc = slice8(crc, view.getLong(i));
+            }
+        }
+        for (; i < end; i++) {
+            crc = step(crc, buffer.get(i));
+        }
+        return crc;
+    }
+
+    /**
+     * Poursuit un calcul de CRC-CCITT sur une plage d'octets à partir d'un registre donné.
+     *
+     * @param crc Valeur courante du registre (INITIAL_VALUE pour commencer)
+     * @param buf Le tableau d'octets
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @return La nouvelle valeur du registre
+     */
+    public static int update(int crc, byte[] buf, int off, int len) {
+        Objects.checkFromIndexSize(off, len, buf.length);
+        switch (engine) {
+            case BITWISE:
+                for (int i = off; i < off + len; i++) {
+                    crc = bitwiseStep(crc, buf[i] & 0xFF);
+                }
+                return crc;
+            case SLICING_BY_8:
+                return slicing(crc, buf, off, len);
+            default:
+                return table(crc, buf, off, len);
+        }
+    }
+
+    /**
+     * CRC-CCITT calculé au fil de l'eau avec le moteur courant. Les passes de bourrage et de décodage
+     * l'alimentent au fur et à mesure qu'elles parcourent la trame, sans reconstruire son contenu.
+     */
+    public static final class Accumulator implements java.util.zip.Checksum {
+        private int crc = INITIAL_VALUE;
+
+        /**
+         * Ajoute un octet (seuls les 8 bits de poids faible sont pris).
+         */
+        @Override
+        public void update(int b) {
+            crc = engine == Engine.BITWISE ? bitwiseStep(crc, b & 0xFF) : step(crc, b);
+        }
+
+        @Override
+        public void update(byte[] buf, int off, int len) {
+            crc = CRC.update(crc, buf, off, len);
+        }
+
+        /**
+         * Codec texte : ajoute les huit caractères '0' ou '1' qui représentent un octet.
+         *
+         * @param b L'octet, de 0 à 255
+         */
+        public void updateBits(int b) {
+            for (int i = 7; i >= 0; i--) {
+                update('0' + (b >>> i & 1));
+            }
+        }
+
+        /**
+         * @return Le CRC sur 16 bits des octets ajoutés depuis la création ou le dernier {@link #reset()}
+         */
+        public int value() {
+            return crc;
+        }
+
+        @Override
+        public long getValue() {
+            return crc;
+        }
+
+        @Override
+        public void reset() {
+            crc = INITIAL_VALUE;
+        }
+    }
+
+    /**
+     * Sélectionne le moteur de calcul utilisé par toutes les méthodes de cette classe.
+     *
+     * @param newEngine Le moteur à utiliser
+     */
+    public static void setEngine(Engine newEngine) {
+        engine = Objects.requireNonNull(newEngine);
+    }
+
+    public static Engine getEngine() {
+        return engine;
+    }
+
+    // Implémentation bit à bit d'origine, conservée comme référence
+    private static int bitwise(CharSequence input) {
         int crc = INITIAL_VALUE;  // Initialise le registre CRC avec la valeur initiale
 
-        for (char c : input.toCharArray()) {  // Parcourt chaque caractère de la chaîne
+        for (int k = 0; k < input.length(); k++) {  // Parcourt chaque caractère de la chaîne
+            char c = input.charAt(k);
             crc ^= (c << 8);  // XOR les bits du caractère dans le registre CRC
             for (int i = 0; i < 8; i++) {  // Effectue 8 itérations (1 pour chaque bit du caractère)
                 if ((crc & 0x8000) != 0) {  // Si le bit le plus significatif est 1
@@ -25,8 +198,103 @@ public class CRC {
             }
         }
 
-        crc &= 0xFFFF;  // Garde les 16 bits de poids faible (CRC-16)
-        return String.format("%04X", crc);  // Retourne le CRC sous forme de chaîne hexadécimale
+        return crc & 0xFFFF;  // Garde les 16 bits de poids faible (CRC-16)
+    }
+
+    private static int bitwiseStep(int crc, int b) {
+        crc ^= (b << 8);
+        for (int i = 0; i < 8; i++) {
+            crc = (crc & 0x8000) != 0 ? (crc << 1) ^ POLYNOMIAL : (crc << 1);
+        }
+        return crc & 0xFFFF;
+    }
+
+    // Un octet par itération via la table
+    private static int step(int crc, int b) {
+        return ((crc << 8) ^ TABLE[((crc >>> 8) ^ b) & 0xFF]) & 0xFFFF;
+    }
+
+    private static int table(int crc, byte[] buf, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            crc = step(crc, buf[i]);
+        }
+        return crc;
+    }
+
+    private static int table(int crc, CharSequence input, int from, int to) {
+        for (int i = from; i < to; i++) {
+            crc = step(crc, input.charAt(i));
+        }
+        return crc;
+    }
+
+    // Huit octets par itération : le registre est combiné aux deux premiers octets du bloc,
+    // puis chaque octet passe par la table correspondant à sa distance de la fin du bloc.
+    private static int slice8(int crc, long word) {
+        return TABLES[7][(int) ((word >>> 56) ^ (crc >>> 8)) & 0xFF]
+                ^ TABLES[6][(int) ((word >>> 48) ^ crc) & 0xFF]
+                ^ TABLES[5][(int) (word >>> 40) & 0xFF]
+                ^ TABLES[4][(int) (word >>> 32) & 0xFF]
+                ^ TABLES[3][(int) (word >>> 24) & 0xFF]
+                ^ TABLES[2][(int) (word >>> 16) & 0xFF]
+                ^ TABLES[1][(int) (word >>> 8) & 0xFF]
+                ^ TABLES[0][(int) word & 0xFF];
+    }
+
+    private static int slicing(int crc, byte[] buf, int off, int len) {
+        int i = off;
+        int end = off + len;
+        if (len >= SLICING_THRESHOLD) {
+            for (; end - i >= 8; i += 8) {
+                long word = 0;
+                for (int k = 0; k < 8; k++) {
+                    word = (word << 8) | (buf[i + k] & 0xFF);
+                }
+                crc = slice8(crc, word);
+            }
+        }
+        return table(crc, buf, i, end - i);
+    }
+
+    private static int slicing(int crc, CharSequence input, int from, int to) {
+        int i = from;
+        if (to - from >= SLICING_THRESHOLD) {
+            for (; to - i >= 8; i += 8) {
+                long word = 0;
+                for (int k = 0; k < 8; k++) {
+                    word = (word << 8) | (input.charAt(i + k) & 0xFF);
+                }
+                crc = slice8(crc, word);
+            }
+        }
+        return table(crc, input, i, to);
+    }
+
+    private static int[][] buildTables() {
+        int[][] tables = new int[8][256];
+        for (int b = 0; b < 256; b++) {
+            tables[0][b] = bitwiseStep(0, b);
+        }
+        for (int k = 1; k < 8; k++) {
+            for (int b = 0; b < 256; b++) {
+                int prev = tables[k - 1][b];
+                tables[k][b] = ((prev << 8) ^ tables[0][prev >>> 8]) & 0xFFFF;
+            }
+        }
+        return tables;
+    }
+
+    private static Engine engineFromProperty() {
+        String name = System.getProperty("crc.engine");
+        if (name == null) {
+            return Engine.TABLE;
+        }
+        try {
+            return Engine.valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Unknown CRC engine '" + name + "', using TABLE.");
+            return Engine.TABLE;
+        }
     }
 
     /**
@@ -36,17 +304,22 @@ public class CRC {
      * @return true si le CRC est valide, false sinon
      */
     public static boolean validateCRC(Frame frame) {
-        // Convertit le numéro de la trame en binaire (8 bits avec padding)
-        String numBinary = String.format("%8s", Integer.toBinaryString(frame.getNum())).replace(' ', '0');
-
-        // Construit la chaîne binaire combinée pour le calcul du CRC
-        String binaryData = BitStuffing.stringToBinary(frame.getType()) + numBinary + BitStuffing.stringToBinary(frame.getData());
+        if (frame.getCrcValid() != null) {
+            return frame.getCrcValid(); // Trame décodée : le CRC reçu a été contrôlé pendant le décodage
+        }
 
-        // Calcule le CRC à partir des données combinées
-        String calculatedCRC = calculateCRC(binaryData);
+        // Calcule le CRC de la forme binaire du type, du numéro sur 8 bits et des données, sans la construire
+        Accumulator crc = new Accumulator();
+        for (byte b : frame.getType().getBytes()) {
+            crc.updateBits(b & 0xFF);
+        }
+        crc.updateBits(frame.getNum() & 0xFF);
+        for (byte b : frame.getPayload()) {
+            crc.updateBits(b & 0xFF);
+        }
 
         // Convertit le CRC calculé en binaire pour la comparaison
-        String calculatedCRCBinary = BitStuffing.stringToBinary(calculatedCRC);
+        String calculatedCRCBinary = BitCodec.appendHexBits(new StringBuilder(32), crc.value(), 4).toString();
 
 
         // Compare le CRC calculé avec celui de la trame
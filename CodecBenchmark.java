@@ -0,0 +1,183 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks du codec : CRC, bourrage de bits, encodage et décodage des trames (texte et binaire),
+ * pour des données de 1 o à 64 Ko, aléatoires ou composées uniquement de 1 (pire cas du bourrage).
+ *
+ * Chaque cas est d'abord chauffé puis mesuré sur plusieurs itérations de durée fixe ; le débit est donné en
+ * opérations et en Mo de données par seconde, l'allocation en octets par opération (compteur d'allocation
+ * du thread de la JVM).
+ *
+ * Usage : java CodecBenchmark [filtre]
+ *   -Dbench.warmup=ms       durée de chauffe par cas (200 par défaut)
+ *   -Dbench.time=ms         durée d'une itération mesurée (200 par défaut)
+ *   -Dbench.iterations=n    nombre d'itérations mesurées (3 par défaut)
+ *   -Dcrc.engine=...        moteur CRC à comparer (BITWISE, TABLE, SLICING_BY_8)
+ */
+public class CodecBenchmark {
+    private static final int[] SIZES = {1, 16, 256, 4096, 65536};
+
+    private static volatile long sink; // Empêche la JVM d'éliminer les résultats
+
+    private final long warmupNanos = Long.getLong("bench.warmup", 200) * 1_000_000L;
+    private final long iterationNanos = Long.getLong("bench.time", 200) * 1_000_000L;
+    private final int iterations = Integer.getInteger("bench.iterations", 3);
+    private final com.sun.management.ThreadMXBean threads = allocationCounter();
+
+    /**
+     * Une opération mesurée ; son résultat est consommé pour ne pas être optimisé. Il est rendu en primitif :
+     * un résultat emballé serait une allocation du banc, comptée dans celle de l'opération.
+     */
+    private interface Operation {
+        long run();
+    }
+
+    /**
+     * Un cas de mesure : une opération sur une taille et un type de données.
+     */
+    private static final class Case {
+        final String name;
+        final int size;
+        final String data;
+        final Operation operation;
+
+        Case(String name, int size, String data, Operation operation) {
+            this.name = name;
+            this.size = size;
+            this.data = data;
+            this.operation = operation;
+        }
+    }
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        Log.setLevel(Log.Level.OFF); // Les trames mesurées sont valides : rien ne doit être journalisé
+
+        CodecBenchmark benchmark = new CodecBenchmark();
+        System.out.println(String.format("%-18s %8s %6s %14s %10s %12s", "Benchmark", "Payload", "Data", "ops/s", "MB/s", "B/op"));
+        for (Case c : cases()) {
+            if (c.name.contains(filter)) {
+                benchmark.measure(c);
+            }
+        }
+    }
+
+    private static List<Case> cases() {
+        List<Case> cases = new ArrayList<>();
+        for (int size : SIZES) {
+            for (String data : new String[]{"random", "ones"}) {
+                byte[] payloadBytes = payload(size, data.equals("ones"));
+                String bits = BitCodec.toBits(payloadBytes);
+                String stuffed = BitStuffing.applyBitStuffing(bits);
+                Frame frame = Frame.withPayload("I", 7, payloadBytes, BitCodec.toHex(CRC.crc16(payloadBytes, 0, size), 4));
+                String line = frame.toByteString();
+                byte[] binary = FrameCodec.BINARY.encode(frame);
+                Frame[] decoded = new Frame[1];
+                Deframer deframer = new Deframer(FrameCodec.BINARY, f -> decoded[0] = f);
+                BinaryFrameCodec binaryCodec = BinaryFrameCodec.Checksum.CRC16.getCodec();
+                FrameBuffer frameBuffer = new FrameBuffer();
+                java.nio.ByteBuffer out = java.nio.ByteBuffer.allocate(binaryCodec.maxEncodedLength(size));
+
+                cases.add(new Case("crc.text", size, data, () -> ref(CRC.calculateCRC(bits))));
+                cases.add(new Case("crc.bytes", size, data, () -> CRC.crc16(payloadBytes, 0, payloadBytes.length)));
+                for (BinaryFrameCodec.Checksum checksum : new BinaryFrameCodec.Checksum[]{
+                        BinaryFrameCodec.Checksum.CRC32, BinaryFrameCodec.Checksum.CRC32C}) {
+                    java.util.zip.Checksum engine = checksum.newEngine();
+                    cases.add(new Case("crc." + checksum.getName(), size, data,
+                            () -> checksum.compute(payloadBytes, 0, payloadBytes.length, engine)));
+                }
+                cases.add(new Case("stuff", size, data, () -> ref(BitStuffing.applyBitStuffing(bits))));
+                cases.add(new Case("unstuff", size, data, () -> ref(BitStuffing.removeBitStuffing(stuffed))));
+                cases.add(new Case("text.encode", size, data, () -> ref(frame.toByteString())));
+                cases.add(new Case("text.decode", size, data, () -> ref(Frame.identifyFrame(line, 1))));
+                cases.add(new Case("binary.encode", size, data, () -> ref(FrameCodec.BINARY.encode(frame))));
+                cases.add(new Case("binary.encodeInto", size, data, () -> {
+                    frameBuffer.reset('I', 7).put(payloadBytes, 0, payloadBytes.length);
+                    binaryCodec.encode(frameBuffer, out.clear());
+                    return out.position();
+                }));
+                cases.add(new Case("binary.decode", size, data, () -> {
+                    try {
+                        deframer.feed(binary, 0, binary.length);
+                    } catch (java.io.IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return ref(decoded[0]);
+                }));
+            }
+        }
+        return cases;
+    }
+
+    // Données de la trame : caractères imprimables aléatoires (graine fixe) ou octets 0xFF
+    // Les octets sont donnés tels quels aux codecs : une chaîne passerait par UTF-8 et 0xFF deviendrait C3 BF
+    private static byte[] payload(int size, boolean allOnes) {
+        byte[] payload = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; i++) {
+            payload[i] = allOnes ? (byte) 0xFF : (byte) (' ' + random.nextInt(95));
+        }
+        return payload;
+    }
+
+    private void measure(Case c) {
+        run(c.operation, warmupNanos);
+
+        double opsPerSecond = 0;
+        long allocated = 0;
+        long operations = 0;
+        for (int i = 0; i < iterations; i++) {
+            long before = allocatedBytes();
+            long start = System.nanoTime();
+            long ops = run(c.operation, iterationNanos);
+            long elapsed = System.nanoTime() - start;
+            allocated += allocatedBytes() - before;
+            operations += ops;
+            opsPerSecond += ops * 1e9 / elapsed;
+        }
+        opsPerSecond /= iterations;
+
+        String bytesPerOp = threads != null ? String.format("%12d", allocated / operations) : String.format("%12s", "n/a");
+        System.out.println(String.format("%-18s %8d %6s %14.1f %10.2f", c.name, c.size, c.data, opsPerSecond,
+                opsPerSecond * c.size / 1e6) + " " + bytesPerOp);
+    }
+
+    // Exécute l'opération pendant la durée donnée ; l'horloge n'est lue que toutes les quelques opérations
+    private static long run(Operation operation, long durationNanos) {
+        long deadline = System.nanoTime() + durationNanos;
+        long ops = 0;
+        long hash = 0;
+        do {
+            for (int i = 0; i < 8; i++) {
+                hash += operation.run();
+            }
+            ops += 8;
+        } while (System.nanoTime() < deadline);
+        sink += hash;
+        return ops;
+    }
+
+    // Consomme un résultat objet : l'objet s'échappe et n'est pas éliminé, sans rien allouer de plus
+    private static long ref(Object result) {
+        return result == null ? 0 : System.identityHashCode(result);
+    }
+
+    private long allocatedBytes() {
+        return threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) bean;
+            if (counter.isThreadAllocatedMemorySupported()) {
+                counter.setThreadAllocatedMemoryEnabled(true);
+                return counter;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,23 @@
+import java.io.PrintStream;
+
+/**
+ * Écrit les événements sur la console, de façon synchrone : avertissements et erreurs sur la sortie d'erreur,
+ * le reste sur la sortie standard.
+ */
+public class ConsoleAppender implements LogAppender {
+
+    @Override
+    public void append(LogRecord record) {
+        PrintStream out = record.getLevel().compareTo(Log.Level.WARN) >= 0 ? System.err : System.out;
+        out.println(record.format());
+        if (record.getError() != null) {
+            record.getError().printStackTrace(out);
+        }
+    }
+
+    @Override
+    public void flush() {
+        System.out.flush();
+        System.err.flush();
+    }
+}
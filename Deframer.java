@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reconstitue les trames au fil de l'eau à partir des octets reçus, en un seul passage : détection des flags,
+ * retrait du bourrage et décodage. Les octets peuvent arriver en morceaux quelconques (une trame coupée
+ * entre deux lectures TCP est reprise à la lecture suivante), sans dépendre des fins de ligne.
+ *
+ * En mode texte, chaque caractère '0' ou '1' est un bit ; les autres caractères sont ignorés et une fin de
+ * ligne marque la fin d'une salve. En mode binaire, chaque octet porte huit bits.
+ */
+public class Deframer {
+    private static final int MAX_FRAME_BITS = 1 << 24; // Au-delà, la trame est jetée (2 Mo décodés)
+    private static final int INPUT_WORDS = 64;         // Bits traités par passage : 64 mots de 64 bits
+
+    private final FrameCodec codec;
+    private final FrameListener listener;
+    private final boolean text;
+    private final BitStuffing.Unstuffer unstuffer = new BitStuffing.Unstuffer();
+
+    private final long[] input = new long[INPUT_WORDS + 1];
+    private int inputBits;
+    private long[] frame = new long[64];
+    private boolean hunting = true; // Vrai tant qu'aucun flag d'ouverture n'a été vu
+
+    public Deframer(FrameCodec codec, FrameListener listener) {
+        this.codec = codec;
+        this.listener = listener;
+        this.text = codec.isLineDelimited();
+    }
+
+    /**
+     * Traite un bloc d'octets reçus. Les trames complètes sont transmises au listener au fur et à mesure.
+     *
+     * @param buf Les octets reçus
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @throws IOException Si le listener échoue
+     */
+    public void feed(byte[] buf, int off, int len) throws IOException {
+        if (text) {
+            feedText(buf, off, len);
+            return;
+        }
+
+        int end = off + len;
+        while (off < end) {
+            int count = Math.min(end - off, (INPUT_WORDS << 3) - (inputBits >>> 3));
+            for (int i = 0; i < count; i++) {
+                appendBits(buf[off + i] & 0xFF, 8);
+            }
+            off += count;
+            process();
+        }
+        listener.onBurstEnd();
+    }
+
+    private void feedText(byte[] buf, int off, int len) throws IOException {
+        for (int i = off; i < off + len; i++) {
+            byte c = buf[i];
+            if (c == '0' || c == '1') {
+                appendBits(c - '0', 1);
+                if (inputBits == INPUT_WORDS << 6) {
+                    process();
+                }
+            } else if (c == '\n') {
+                process();
+                listener.onBurstEnd();
+            }
+        }
+        process();
+    }
+
+    private void appendBits(int value, int n) {
+        BitStuffing.writeBits(input, inputBits, (long) value << (64 - n), n);
+        inputBits += n;
+    }
+
+    // Retire le bourrage des bits en attente et délivre les trames délimitées par des flags
+    private void process() throws IOException {
+        unstuffer.setInput(input, 0, inputBits);
+        while (true) {
+            int event = unstuffer.unstuff(frame);
+            if (event == BitStuffing.Unstuffer.NEED_INPUT) {
+                break;
+            }
+            switch (event) {
+                case BitStuffing.Unstuffer.FLAG:
+                    if (!hunting && unstuffer.outputBits() > 0) {
+                        Frame decoded = codec.decodeBody(frame, unstuffer.outputBits());
+                        if (decoded != null) {
+                            listener.onFrame(decoded);
+                        }
+                    }
+                    hunting = false; // Ce flag ouvre la trame suivante
+                    break;
+                case BitStuffing.Unstuffer.ABORT:
+                    hunting = true;
+                    break;
+                default: // OVERFLOW
+                    if (frame.length << 6 < MAX_FRAME_BITS) {
+                        frame = Arrays.copyOf(frame, frame.length * 2);
+                        continue; // La sortie est conservée
+                    }
+                    hunting = true; // Trame trop longue : jetée jusqu'au prochain flag
+                    break;
+            }
+            unstuffer.clearOutput();
+        }
+        inputBits = 0;
+    }
+}
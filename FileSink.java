@@ -0,0 +1,351 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link PayloadSink} qui écrit les données reçues dans un fichier par un {@link FileChannel}.
+ *
+ * Les données sont copiées dans des blocs {@link ByteBuffer} directs ; chaque bloc rempli est écrit par un
+ * thread dédié, si bien que la réception ne paie pas la latence du disque. Le nombre de blocs en attente est
+ * borné : quand le disque ne suit plus, {@link #write} attend, ce qui retarde les ACKs et arrête l'expéditeur.
+ * {@link #offer} n'attend pas : le bloc est mis en attente et le puits se dit plein, l'appelant suspend alors
+ * ses lectures jusqu'à ce que le thread d'écriture libère un bloc. Le dépassement se limite à ce que
+ * l'appelant a déjà lu. La mémoire utilisée ne dépend donc pas de la taille du transfert.
+ *
+ * Sans thread d'écriture (maxPending à 0), chaque bloc rempli est écrit directement par l'appelant.
+ *
+ * Pour une tranche d'un transfert réparti ({@link Shard}), le fichier n'est pas vidé : chaque tranche y
+ * écrit à partir de sa position, par son propre canal, en même temps que les autres. Les bornes annoncées
+ * par l'expéditeur ne sont pas crues sur parole : une écriture au-delà de la tranche est refusée, et une
+ * tranche incomplète est signalée à la fermeture.
+ */
+public class FileSink implements PayloadSink {
+    private static final Log LOG = Log.get(FileSink.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+    public static final int DEFAULT_MAX_PENDING = 4;
+    private static final int MAX_TRANSFERS = 64; // Transferts répartis dont la fabrique retient le fichier
+
+
+    private final Path path;
+    private final Shard shard; // null pour un fichier complet
+    private final FileChannel channel;
+    private final int bufferSize;
+    private final int maxPending;
+    private final Thread writer; // null pour les écritures directes
+
+    // Accès protégés par this : l'appelant remplit, le thread d'écriture vide
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>(); // Blocs prêts à être écrits (en lecture)
+    private final ArrayDeque<ByteBuffer> spare = new ArrayDeque<>();   // Blocs directs réutilisables
+    private boolean writing; // Le thread d'écriture a un bloc en cours
+    private boolean closing;
+    private IOException failure; // Première erreur d'écriture, renvoyée à l'appelant
+    private Runnable onWritable; // Offre refusée : appelée dès qu'un bloc se libère
+
+    private ByteBuffer filling; // Bloc en cours de remplissage, réservé à l'appelant
+    private long written; // Octets confiés au puits
+
+    /**
+     * Écriture avec les tailles par défaut.
+     *
+     * @param path Le fichier à créer (ou remplacer)
+     * @throws IOException Si le fichier ne peut pas être ouvert
+     */
+    public FileSink(Path path) throws IOException {
+        this(path, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_PENDING);
+    }
+
+    /**
+     * @param path Le fichier à créer (ou remplacer)
+     * @param bufferSize La taille d'un bloc, en octets
+     * @param maxPending Le nombre de blocs pleins en attente d'écriture avant que {@link #write} n'attende ;
+     *                   0 pour écrire directement sur le thread de l'appelant
+     * @throws IOException Si le fichier ne peut pas être ouvert
+     */
+    public FileSink(Path path, int bufferSize, int maxPending) throws IOException {
+        this(path, null, bufferSize, maxPending);
+    }
+
+    /**
+     * @param path Le fichier à créer, ou à compléter pour une tranche
+     * @param shard La tranche à écrire, ou null pour un fichier complet (remplacé)
+     * @param bufferSize La taille d'un bloc, en octets
+     * @param maxPending Le nombre de blocs pleins en attente d'écriture avant que {@link #write} n'attende ;
+     *                   0 pour écrire directement sur le thread de l'appelant
+     * @throws IOException Si le fichier ne peut pas être ouvert
+     */
+    public FileSink(Path path, Shard shard, int bufferSize, int maxPending) throws IOException {
+        if (bufferSize < 1 || maxPending < 0) {
+            throw new IllegalArgumentException("Invalid sink buffering: " + bufferSize + " bytes, " + maxPending + " pending");
+        }
+        this.path = path;
+        this.shard = shard;
+        this.bufferSize = bufferSize;
+        this.maxPending = maxPending;
+        if (shard == null) {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } else {
+            // Les autres tranches écrivent peut-être déjà : seule la fin d'un ancien fichier plus long est retirée
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                channel.truncate(shard.getTotal());
+                channel.position(shard.getOffset());
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+        if (maxPending > 0) {
+            writer = new Thread(this::writeLoop, "file-sink");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    /**
+     * Ouvre un fichier par connexion : le premier reçoit le nom donné, les suivants un suffixe ".n".
+     * Les tranches d'un transfert réparti sur plusieurs connexions écrivent toutes dans un même fichier,
+     * numéroté comme une seule connexion.
+     *
+     * @param path Le fichier de la première connexion
+     * @return La fabrique de puits
+     */
+    public static PayloadSink.Factory factory(Path path) {
+        AtomicInteger files = new AtomicInteger(); // Fichiers ouverts : une connexion, ou un transfert réparti
+        Map<String, Path> transfers = new LinkedHashMap<>() { // Fichier de chaque transfert réparti récent
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Path> eldest) {
+                return size() > MAX_TRANSFERS;
+            }
+        };
+        return new PayloadSink.Factory() {
+            @Override
+            public PayloadSink open(int connection) throws IOException {
+                return new FileSink(nextPath());
+            }
+
+            @Override
+            public PayloadSink open(int connection, Shard shard) throws IOException {
+                Path target;
+                synchronized (transfers) {
+                    target = transfers.computeIfAbsent(shard.getTransfer(), transfer -> nextPath());
+                }
+                return new FileSink(target, shard, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_PENDING);
+            }
+
+            private Path nextPath() {
+                int n = files.incrementAndGet();
+                return n == 1 ? path : path.resolveSibling(path.getFileName() + "." + n);
+            }
+        };
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return Le nombre d'octets confiés au puits
+     */
+    public long getWritten() {
+        return written;
+    }
+
+    @Override
+    public void write(byte[] data, int off, int len) throws IOException {
+        append(data, off, len, true);
+    }
+
+    @Override
+    public boolean offer(byte[] data, int off, int len, Runnable onWritable) throws IOException {
+        append(data, off, len, false);
+        if (writer == null) {
+            return true; // Écritures directes : le bloc est déjà sur le disque
+        }
+        synchronized (this) {
+            if (pending.size() < maxPending || failure != null) {
+                return true; // Une erreur sera renvoyée par l'écriture suivante
+            }
+            this.onWritable = onWritable;
+            return false;
+        }
+    }
+
+    // Copie les données dans les blocs ; un bloc plein part au thread d'écriture, en attendant une place ou non
+    private void append(byte[] data, int off, int len, boolean wait) throws IOException {
+        if (shard != null && len > shard.getLength() - written) {
+            // Déborderait sur la tranche suivante : l'erreur ferme la connexion
+            throw new IOException("Data beyond the end of shard " + shard + ": " + (written + len) + " bytes");
+        }
+        written += len;
+        while (len > 0) {
+            if (filling == null) {
+                filling = takeSpare();
+            }
+            int n = Math.min(len, filling.remaining());
+            filling.put(data, off, n);
+            off += n;
+            len -= n;
+            if (!filling.hasRemaining()) {
+                submit(filling.flip(), wait);
+                filling = null;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (filling != null && filling.position() > 0) {
+                submit(filling.flip(), true);
+                filling = null;
+            }
+            if (writer != null) {
+                synchronized (this) {
+                    closing = true;
+                    notifyAll();
+                    while ((!pending.isEmpty() || writing) && failure == null) {
+                        awaitWriter();
+                    }
+                    if (failure != null) {
+                        throw failure;
+                    }
+                }
+            }
+        } finally {
+            if (writer != null) {
+                writer.interrupt(); // Le thread d'écriture peut attendre un bloc qui ne viendra plus
+                awaitWriterExit();
+            }
+            channel.close();
+        }
+        LOG.info("Wrote " + written + " bytes to " + path + (shard != null ? " at offset " + shard.getOffset() : ""));
+        if (shard != null && written != shard.getLength()) {
+            throw new IOException("Incomplete shard " + shard + ": " + written + " of " + shard.getLength() + " bytes written");
+        }
+    }
+
+    // Confie un bloc plein au thread d'écriture, en attendant s'il y en a déjà trop en attente et que wait est vrai
+    private void submit(ByteBuffer block, boolean wait) throws IOException {
+        if (writer == null) {
+            writeFully(block);
+            synchronized (this) {
+                spare.add(block.clear()); // Un seul bloc suffit
+            }
+            return;
+        }
+        synchronized (this) {
+            while (wait && pending.size() >= maxPending && failure == null) {
+                awaitWriter(); // Contre-pression : le disque ne suit pas
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            pending.add(block);
+            notifyAll();
+        }
+    }
+
+    private Runnable takeOnWritable() {
+        Runnable resume = onWritable;
+        onWritable = null;
+        return resume;
+    }
+
+    private synchronized ByteBuffer takeSpare() {
+        return spare.isEmpty() ? ByteBuffer.allocateDirect(bufferSize) : spare.poll();
+    }
+
+    private void awaitWriter() throws IOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing to " + path, e);
+        }
+    }
+
+    // Le puits fermé ne laisse pas de thread derrière lui, sauf s'il est fermé depuis ce thread (reprise d'une offre)
+    private void awaitWriterExit() {
+        if (Thread.currentThread() == writer) {
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                writer.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeFully(ByteBuffer block) throws IOException {
+        while (block.hasRemaining()) {
+            channel.write(block);
+        }
+    }
+
+    // Thread d'écriture : écrit les blocs dans l'ordre jusqu'à la fermeture
+    private void writeLoop() {
+        while (true) {
+            ByteBuffer block;
+            synchronized (this) {
+                while (pending.isEmpty() && !closing) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return; // Fermé et tout est écrit
+                }
+                block = pending.poll();
+                writing = true;
+            }
+            try {
+                writeFully(block);
+            } catch (IOException e) {
+                Runnable resume;
+                synchronized (this) {
+                    failure = e;
+                    writing = false;
+                    resume = takeOnWritable(); // L'appelant reprend et reçoit l'erreur
+                    notifyAll();
+                }
+                LOG.error("Cannot write to " + path + ": " + e.getMessage());
+                if (resume != null) {
+                    resume.run();
+                }
+                return;
+            }
+            Runnable resume;
+            synchronized (this) {
+                block.clear();
+                if (spare.size() < maxPending) {
+                    spare.add(block);
+                }
+                writing = false;
+                resume = pending.size() < maxPending ? takeOnWritable() : null;
+                notifyAll();
+            }
+            if (resume != null) {
+                resume.run(); // Hors du verrou : l'appelant peut offrir aussitôt
+            }
+        }
+    }
+}
@@ -1,13 +1,19 @@
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 public class Frame {
-    private static final String FLAG = "01111110"; // Indique le début et la fin d'une trame
+    private static final Log LOG = Log.get(Frame.class);
+
+    static final String FLAG = "01111110"; // Indique le début et la fin d'une trame
     private String type;  // Type de trame ('I' pour information, 'A' pour ACK, etc.)
     private int num;    // Numéro de séquence de la trame
     private String data;  // Données contenues dans la trame
     private String crc;   // Somme de contrôle CRC pour vérifier l'intégrité
+    private byte[] payload; // Données brutes, telles que reçues en binaire (null pour une trame texte)
+    private Boolean crcValid; // CRC reçu contrôlé pendant le décodage, null pour une trame qui n'a pas été décodée
+    private boolean byteChars; // Données d'une trame texte décodée : un caractère par octet reçu
 
     public Frame(String type, int num, String data, String crc) {
         this.type = type;
@@ -16,6 +22,22 @@ public class Frame {
         this.crc = crc;
     }
 
+    /**
+     * Crée une trame à partir de ses données brutes, qui peuvent être quelconques (fichier binaire).
+     * Les données ne sont décodées en texte (UTF-8) que si {@link #getData()} est appelée.
+     *
+     * @param type Le type de trame
+     * @param num Le numéro de séquence
+     * @param payload Les données brutes
+     * @param crc Le CRC reçu
+     * @return La trame
+     */
+    public static Frame withPayload(String type, int num, byte[] payload, String crc) {
+        Frame frame = new Frame(type, num, null, crc);
+        frame.payload = payload;
+        return frame;
+    }
+
     /**
      * Identifie et extrait une trame spécifique dans une chaîne binaire en fonction de son numéro.
      *
@@ -36,13 +58,13 @@ public class Frame {
 
         // Vérifie s'il y a suffisamment de flags pour former une trame
         if (flagPositions.size() < 2) {
-            System.out.println("Erreur : Pas assez de flags pour former une trame.");
+            LOG.warn("Erreur : Pas assez de flags pour former une trame.");
             return null;
         }
 
         // Vérifie si le numéro de la trame demandé est valide
         if (frameNbr < 1 || frameNbr >= flagPositions.size()) {
-            System.out.println("Erreur : Numéro de trame invalide.");
+            LOG.warn("Erreur : Numéro de trame invalide.");
             return null;
         }
 
@@ -66,36 +88,64 @@ public class Frame {
 
         // Étape 1 : Retire le bourrage de bits (bit stuffing) du contenu
         String unstuffedContent = BitStuffing.removeBitStuffing(frameContent);
+        return decodeContent(unstuffedContent);
+    }
 
+    /**
+     * Décode le contenu d'une trame texte dont les flags et le bourrage de bits ont été retirés.
+     *
+     * @param unstuffedContent Les bits de la trame sous forme de caractères '0' et '1'
+     * @return Une instance de Frame si le contenu est suffisant, sinon null.
+     */
+    static Frame decodeContent(CharSequence unstuffedContent) {
         // Vérifie que le contenu désencapsulé est suffisant
         if (unstuffedContent.length() < 32) { // Minimum requis : type, numéro et CRC
-            System.out.println("Erreur : Contenu de la trame trop court après désencapsulation.");
+            LOG.warn("Erreur : Contenu de la trame trop court après désencapsulation.");
             return null;
         }
 
-        // Étape 3 : Décoder le type de la trame (8 bits)
-        String typeBinary = unstuffedContent.substring(0, 8);
-        String type = String.valueOf((char) Integer.parseInt(typeBinary, 2));
-
-        // Étape 4 : Décoder le numéro de la trame (8 bits)
-        String numBinary = unstuffedContent.substring(8, 16);
-        int num = Integer.parseInt(numBinary, 2);
+        int crcStart = unstuffedContent.length() - 32; // Le CRC : quatre chiffres hexadécimaux en fin de trame
+        if (crcStart < 16) {
+            LOG.warn("Erreur : Contenu de la trame trop court après désencapsulation.");
+            return null;
+        }
 
-        // Étape 5 : Extraire les données (avant les derniers 16 bits pour le CRC)
-        String dataBinary = unstuffedContent.substring(16, unstuffedContent.length() - 32);
-        StringBuilder data = new StringBuilder();
-        for (int i = 0; i < dataBinary.length(); i += 8) {
-            String byteSegment = dataBinary.substring(i, Math.min(i + 8, dataBinary.length()));
-            data.append((char) Integer.parseInt(byteSegment, 2));
+        // Étapes 3 à 5 : un seul parcours décode le type (8 bits), le numéro (8 bits) et les données, et
+        // alimente le CRC avec chaque bit
+        CRC.Accumulator crc = new CRC.Accumulator();
+        int type = 0;
+        int num = 0;
+        StringBuilder data = new StringBuilder((crcStart - 16 + 7) / 8);
+        int value = 0;
+        for (int i = 0; i < crcStart; i++) {
+            char c = unstuffedContent.charAt(i);
+            crc.update(c);
+            value = value << 1 | BitCodec.bitValue(c);
+            int read = i + 1;
+            if (read == 8) {
+                type = value;
+                value = 0;
+            } else if (read == 16) {
+                num = value;
+                value = 0;
+            } else if (read > 16 && ((read - 16) % 8 == 0 || read == crcStart)) {
+                data.append((char) value); // Un dernier groupe incomplet donne un caractère de ses seuls bits
+                value = 0;
+            }
         }
 
-        // Étape 6 : Calculer et valider le CRC
-        String crc = unstuffedContent.substring(0, unstuffedContent.length() - 32);
-        crc = CRC.calculateCRC(crc);
-        crc = BitStuffing.stringToBinary(crc);
+        // Étape 6 : Comparer le CRC calculé à celui reçu
+        String computed = BitCodec.appendHexBits(new StringBuilder(32), crc.value(), 4).toString();
+        boolean valid = true;
+        for (int i = 0; i < 32; i++) {
+            valid &= computed.charAt(i) == unstuffedContent.charAt(crcStart + i);
+        }
 
         // Retourne une nouvelle instance de Frame avec les données extraites
-        return new Frame(type, num, data.toString(), crc);
+        Frame frame = new Frame(String.valueOf((char) type), num, data.toString(), computed);
+        frame.crcValid = valid;
+        frame.byteChars = true;
+        return frame;
     }
 
     /**
@@ -104,34 +154,30 @@ public class Frame {
      * @return La représentation binaire de la trame, prête à être envoyée.
      */
     public String toByteString() {
-        StringBuilder sb = new StringBuilder();
-        sb.append(type);
-
-        // Transforme le numéro en binaire sur 8 bits
-        String numBinary = "00000000";
-        if (type == "I" || type == "A" || type == "F") {
-            numBinary = String.format("%8s", Integer.toBinaryString(num)).replace(' ', '0');
-        }
-
-        // Ajoute les données (si présentes)
-        if (data != null) {
-            sb.append(data);
+        byte[] typeBytes = type.getBytes();
+        byte[] dataBytes = getPayload(); // Ajoute les données (si présentes)
+        int bits = (typeBytes.length + 1 + dataBytes.length + 4) * 8;
+        StringBuilder sb = new StringBuilder(bits + bits / 5 + 2 * FLAG.length());
+        sb.append(FLAG);
+
+        // Un seul parcours : chaque bit alimente le CRC puis est écrit avec le bourrage.
+        // Type, puis le numéro en binaire sur 8 bits, puis les données
+        CRC.Accumulator crc = new CRC.Accumulator();
+        BitStuffing.TextStuffer stuffer = new BitStuffing.TextStuffer(sb);
+        stuffer.append(typeBytes, 0, 1, crc);
+        boolean numbered = type.equals("I") || type.equals("A") || type.equals("F") || type.equals("R");
+        stuffer.append(numbered ? num : 0, crc);
+        stuffer.append(typeBytes, 1, typeBytes.length - 1, crc);
+        stuffer.append(dataBytes, 0, dataBytes.length, crc);
+
+        // Ajoute le CRC, bourré à la suite
+        String hex = BitCodec.toHex(crc.value(), 4);
+        for (int i = 0; i < hex.length(); i++) {
+            stuffer.append(hex.charAt(i), null);
         }
 
-        // Convertit tout en binaire
-        String allBinary = BitStuffing.stringToBinary(sb.toString());
-        allBinary = allBinary.substring(0, 8) + numBinary + allBinary.substring(8);
-
-        // Calcule et ajoute le CRC
-        String crc = CRC.calculateCRC(allBinary);
-        crc = BitStuffing.stringToBinary(crc);
-        allBinary = allBinary + crc;
-
-        // Applique le bourrage de bits
-        allBinary = BitStuffing.applyBitStuffing(allBinary);
-
-        // Ajoute les flags
-        return FLAG + allBinary + FLAG;
+        // Ajoute le flag de fin
+        return sb.append(FLAG).toString();
     }
 
     /**
@@ -149,15 +195,55 @@ public class Frame {
     // Getters
     public String getType() { return type; }
     public int getNum() { return num; }
-    public String getData() { return data; }
+    public String getData() {
+        if (data == null && payload != null) {
+            data = new String(payload, StandardCharsets.UTF_8);
+        }
+        return data;
+    }
     public String getCrc() { return crc; }
 
+    /**
+     * @return Le résultat du contrôle du CRC reçu, fait pendant le décodage ; null si la trame a été construite
+     */
+    Boolean getCrcValid() { return crcValid; }
+
+    void setCrcValid(boolean valid) { crcValid = valid; }
+
+    /**
+     * @return Les données brutes de la trame ; pour une trame texte, ses données encodées en UTF-8, ou les octets
+     *         reçus tels quels si elle a été décodée
+     */
+    public byte[] getPayload() {
+        if (payload != null) {
+            return payload;
+        }
+        if (data == null) {
+            return new byte[0];
+        }
+        return data.getBytes(byteChars ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return La taille des données, sans les convertir
+     */
+    public int getPayloadLength() {
+        if (payload != null) {
+            return payload.length;
+        }
+        return data == null ? 0 : data.length();
+    }
+
     // Setters
     public void setCrc(String crc) {
         this.crc = crc;
+        this.crcValid = null; // Le contrôle fait au décodage ne porte plus sur ce CRC
     }
 
     public void setData(String data) {
         this.data = data;
+        this.payload = null;
+        this.crcValid = null;
+        this.byteChars = false;
     }
 }
@@ -0,0 +1,121 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Trame binaire mutable, réutilisée d'une trame à l'autre pour encoder sans allocation.
+ *
+ * L'appelant remplit le type, le numéro et les données ({@link #reset}, puis {@link #put}), puis
+ * {@link BinaryFrameCodec#encode(FrameBuffer, ByteBuffer)} écrit la trame encodée dans un tampon de sortie.
+ * Le contenu et les tampons de travail du bourrage ne grandissent qu'avec la plus grande trame rencontrée :
+ * en régime établi, l'encodage ne crée aucun objet. Une instance n'est utilisée que par un seul thread.
+ */
+public final class FrameBuffer {
+    static final int HEADER_SIZE = 2; // Type et numéro
+
+    // Utilisés par BinaryFrameCodec
+    byte[] body = new byte[64]; // Type, numéro, données, puis la place du CRC
+    int length = HEADER_SIZE; // Octets de contenu, CRC non compris
+    long[] bits = new long[0]; // Contenu compacté avant bourrage
+    long[] stuffed = new long[0]; // Trame bourrée, flags compris
+    final BitStuffing.Stuffer stuffer = new BitStuffing.Stuffer();
+    private BinaryFrameCodec.Checksum engineChecksum; // Somme pour laquelle engine a été créé
+    private java.util.zip.Checksum engine; // Accumulateur de CRC réutilisé
+
+    /**
+     * Commence une nouvelle trame, sans données.
+     *
+     * @param type Le type de trame
+     * @param num Le numéro de séquence
+     * @return Cette trame
+     */
+    public FrameBuffer reset(char type, int num) {
+        body[0] = (byte) type;
+        body[1] = (byte) num;
+        length = HEADER_SIZE;
+        return this;
+    }
+
+    /**
+     * Ajoute un octet de données.
+     */
+    public FrameBuffer put(byte b) {
+        ensureCapacity(length + 1);
+        body[length++] = b;
+        return this;
+    }
+
+    /**
+     * Ajoute des données lues dans un tableau.
+     */
+    public FrameBuffer put(byte[] src, int off, int len) {
+        ensureCapacity(length + len);
+        System.arraycopy(src, off, body, length, len);
+        length += len;
+        return this;
+    }
+
+    /**
+     * Ajoute des données lues dans un tampon (fichier mappé en mémoire) ; sa position n'est pas modifiée.
+     *
+     * @param src Le tampon qui contient les données
+     * @param offset Position des données dans le tampon
+     * @param len Nombre d'octets
+     * @return Cette trame
+     */
+    public FrameBuffer put(ByteBuffer src, int offset, int len) {
+        ensureCapacity(length + len);
+        src.get(offset, body, length, len);
+        length += len;
+        return this;
+    }
+
+    /**
+     * Remplace un octet de données déjà ajouté, par exemple l'ACK porté par une trame à réencoder.
+     *
+     * @param index Position de l'octet dans les données
+     * @param b La nouvelle valeur
+     * @return Cette trame
+     */
+    public FrameBuffer set(int index, byte b) {
+        if (index < 0 || index >= dataLength()) {
+            throw new IndexOutOfBoundsException("Data index " + index + " out of " + dataLength());
+        }
+        body[HEADER_SIZE + index] = b;
+        return this;
+    }
+
+    /**
+     * @return Le nombre d'octets de données de la trame en cours
+     */
+    public int dataLength() {
+        return length - HEADER_SIZE;
+    }
+
+    // Agrandit le contenu en conservant ce qui est déjà écrit
+    void ensureCapacity(int capacity) {
+        if (capacity > body.length) {
+            byte[] grown = new byte[Math.max(capacity, body.length * 2)];
+            System.arraycopy(body, 0, grown, 0, length);
+            body = grown;
+        }
+    }
+
+    // Prépare les tampons de bits pour un contenu de bodyLength octets, CRC compris
+    void ensureScratch(int bodyLength) {
+        if (bits.length < (bodyLength + 7) / 8) {
+            bits = new long[(bodyLength + 7) / 8];
+        }
+        int stuffedWords = BitStuffing.stuffedCapacity(bodyLength * 8 + 16);
+        if (stuffed.length < stuffedWords) {
+            stuffed = new long[stuffedWords];
+        }
+    }
+
+    // Moteur de CRC réutilisable pour cette somme, créé au premier usage
+    java.util.zip.Checksum engine(BinaryFrameCodec.Checksum checksum) {
+        if (engineChecksum != checksum) {
+            engine = checksum.newEngine();
+            engineChecksum = checksum;
+        }
+        return engine;
+    }
+}
@@ -0,0 +1,83 @@
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Représentation d'une trame sur le lien. Le codec est choisi lors de l'échange de la trame de
+ * connexion "C" ; le codec texte reste celui par défaut pour les pairs qui ne négocient rien.
+ */
+public interface FrameCodec {
+    FrameCodec TEXT = new TextFrameCodec();
+    FrameCodec BINARY = BinaryFrameCodec.Checksum.CRC16.getCodec();
+
+    /**
+     * @return Le nom du codec tel qu'il est annoncé dans la trame de connexion
+     */
+    String getName();
+
+    /**
+     * Encode une trame complète (flags, bourrage de bits et CRC compris).
+     *
+     * @param frame La trame à encoder
+     * @return Les octets à écrire sur le lien
+     */
+    byte[] encode(Frame frame);
+
+    /**
+     * Décode le contenu d'une trame, flags et bourrage de bits déjà retirés.
+     *
+     * @param bits Les bits de la trame, compactés (poids fort en premier)
+     * @param length Nombre de bits
+     * @return La trame décodée, ou null si le contenu est mal formé
+     */
+    Frame decodeBody(long[] bits, int length);
+
+    /**
+     * Lit la prochaine trame du flux, octet par octet pour ne rien consommer au-delà de cette trame.
+     *
+     * @param in Le flux d'entrée (de préférence bufferisé)
+     * @return La trame lue, ou null si le flux est terminé
+     * @throws IOException En cas d'erreur de lecture
+     */
+    default Frame readFrame(InputStream in) throws IOException {
+        Frame[] result = new Frame[1];
+        Deframer deframer = new Deframer(this, frame -> result[0] = frame);
+        byte[] single = new byte[1];
+        int b;
+        while (result[0] == null && (b = in.read()) != -1) {
+            single[0] = (byte) b;
+            deframer.feed(single, 0, 1);
+        }
+        return result[0];
+    }
+
+    /**
+     * Vérifie le CRC d'une trame reçue avec ce codec.
+     *
+     * @param frame La trame à vérifier
+     * @return true si la trame est intacte, false sinon
+     */
+    boolean validate(Frame frame);
+
+    /**
+     * @return true si les salves de trames sont délimitées par des fins de ligne
+     */
+    default boolean isLineDelimited() {
+        return false;
+    }
+
+    /**
+     * Retrouve un codec à partir de son nom.
+     *
+     * @param name Le nom annoncé ("text" ou "binary")
+     * @return Le codec correspondant, ou null s'il est inconnu
+     */
+    static FrameCodec forName(String name) {
+        if (TEXT.getName().equals(name)) {
+            return TEXT;
+        }
+        if (BINARY.getName().equals(name)) {
+            return BINARY;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,23 @@
+import java.io.IOException;
+
+/**
+ * Reçoit les trames reconstituées par un {@link Deframer}.
+ */
+public interface FrameListener {
+
+    /**
+     * Appelée pour chaque trame complète et bien formée, dans l'ordre d'arrivée.
+     *
+     * @param frame La trame reçue (son CRC n'est pas encore vérifié)
+     * @throws IOException Si le traitement de la trame échoue
+     */
+    void onFrame(Frame frame) throws IOException;
+
+    /**
+     * Appelée à la fin d'une salve de trames : fin de ligne en mode texte, fin d'un bloc lu sinon.
+     *
+     * @throws IOException Si le traitement échoue
+     */
+    default void onBurstEnd() throws IOException {
+    }
+}
@@ -0,0 +1,69 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Options du lien échangées dans les données de la trame de connexion "C" et de son ACK,
+ * sous la forme "cle=valeur;cle=valeur". Un pair qui n'envoie aucune option utilise les valeurs par défaut.
+ */
+public class LinkOptions {
+    public static final String CODEC = "codec";
+    public static final String MODE = "mode";     // gbn ou sr
+    public static final String WINDOW = "window"; // Taille de la fenêtre d'émission
+    public static final String MTU = "mtu";       // Taille maximale des données d'une trame : transfert en flux d'octets
+    public static final String FCS = "fcs";       // Somme de contrôle du codec binaire (crc16, crc32 ou crc32c)
+    public static final String DUPLEX = "duplex"; // 1 : données dans les deux sens, ACKs portés par les trames I
+    public static final String SHARD = "shard";   // Tranche d'un fichier réparti sur plusieurs connexions, voir Shard
+
+    public static final int MAX_MTU = 1 << 20; // Au-delà, une trame dépasse ce que le Deframer accepte
+
+    private final Map<String, String> options = new LinkedHashMap<>();
+
+    /**
+     * Analyse les options contenues dans les données d'une trame.
+     *
+     * @param data Les données de la trame (peuvent être null ou vides)
+     * @return Les options lues ; les entrées mal formées sont ignorées
+     */
+    public static LinkOptions parse(String data) {
+        LinkOptions result = new LinkOptions();
+        if (data == null || data.isEmpty()) {
+            return result;
+        }
+        for (String entry : data.split(";")) {
+            int separator = entry.indexOf('=');
+            if (separator > 0) {
+                result.set(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim());
+            }
+        }
+        return result;
+    }
+
+    public LinkOptions set(String key, String value) {
+        options.put(key, value);
+        return this;
+    }
+
+    public String get(String key) {
+        return options.get(key);
+    }
+
+    public String get(String key, String defaultValue) {
+        return options.getOrDefault(key, defaultValue);
+    }
+
+    public boolean isEmpty() {
+        return options.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : options.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(';');
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+}
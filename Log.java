@@ -0,0 +1,132 @@
+import java.util.function.Supplier;
+
+/**
+ * Journal léger, avec niveaux et construction paresseuse des messages.
+ *
+ * Le niveau est global (propriété système log.level, INFO par défaut) : un message sous le niveau courant ne
+ * coûte qu'une comparaison, et sa forme {@link Supplier} n'est jamais évaluée. Les événements sont écrits par
+ * un {@link AsyncAppender} sur la console, ou directement par le {@link ConsoleAppender} avec log.async=false.
+ */
+public final class Log {
+
+    public enum Level {
+        TRACE, DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    private static volatile int threshold = parseLevel(System.getProperty("log.level")).ordinal();
+    private static volatile LogAppender appender = defaultAppender();
+
+    private final String name;
+
+    private Log(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param type La classe qui écrit dans le journal
+     * @return Le journal nommé d'après la classe
+     */
+    public static Log get(Class<?> type) {
+        return new Log(type.getSimpleName());
+    }
+
+    public static void setLevel(Level level) {
+        threshold = level.ordinal();
+    }
+
+    public static Level getLevel() {
+        return Level.values()[threshold];
+    }
+
+    /**
+     * Remplace la destination des événements ; les événements en attente dans l'ancienne sont d'abord écrits.
+     *
+     * @param newAppender La nouvelle destination
+     */
+    public static void setAppender(LogAppender newAppender) {
+        LogAppender previous = appender;
+        appender = newAppender;
+        previous.flush();
+    }
+
+    /**
+     * Attend que les événements émis jusqu'ici soient écrits.
+     */
+    public static void flush() {
+        appender.flush();
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    public boolean isDebugEnabled() {
+        return Level.DEBUG.ordinal() >= threshold;
+    }
+
+    public void trace(Supplier<String> message) {
+        if (Level.TRACE.ordinal() >= threshold) {
+            log(Level.TRACE, message.get(), null);
+        }
+    }
+
+    public void debug(Supplier<String> message) {
+        if (Level.DEBUG.ordinal() >= threshold) {
+            log(Level.DEBUG, message.get(), null);
+        }
+    }
+
+    public void info(String message) {
+        if (Level.INFO.ordinal() >= threshold) {
+            log(Level.INFO, message, null);
+        }
+    }
+
+    public void info(Supplier<String> message) {
+        if (Level.INFO.ordinal() >= threshold) {
+            log(Level.INFO, message.get(), null);
+        }
+    }
+
+    public void warn(String message) {
+        if (Level.WARN.ordinal() >= threshold) {
+            log(Level.WARN, message, null);
+        }
+    }
+
+    public void error(String message) {
+        error(message, null);
+    }
+
+    public void error(String message, Throwable error) {
+        if (Level.ERROR.ordinal() >= threshold) {
+            log(Level.ERROR, message, error);
+        }
+    }
+
+    private void log(Level level, String message, Throwable error) {
+        appender.append(System.currentTimeMillis(), level, Thread.currentThread().getName(), name, message, error);
+    }
+
+    private static Level parseLevel(String value) {
+        if (value == null) {
+            return Level.INFO;
+        }
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown log level '" + value + "', using INFO.");
+            return Level.INFO;
+        }
+    }
+
+    private static LogAppender defaultAppender() {
+        if (!Boolean.parseBoolean(System.getProperty("log.async", "true"))) {
+            return new ConsoleAppender();
+        }
+        AsyncAppender async = new AsyncAppender(new ConsoleAppender(), 8192);
+        // Les événements encore dans le tampon sont écrits avant l'arrêt de la JVM
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+        return async;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * Destination des événements de journal.
+ */
+public interface LogAppender {
+
+    /**
+     * Écrit un événement. L'appender ne doit pas conserver l'objet après le retour de la méthode.
+     *
+     * @param record L'événement
+     */
+    void append(LogRecord record);
+
+    /**
+     * Écrit un événement donné champ par champ. Par défaut, l'événement est rangé dans un nouvel enregistrement ;
+     * un appender qui copie les champs ailleurs évite cette allocation à chaque message.
+     */
+    default void append(long timeMillis, Log.Level level, String thread, String logger, String message, Throwable error) {
+        LogRecord record = new LogRecord();
+        record.set(timeMillis, level, thread, logger, message, error);
+        append(record);
+    }
+
+    /**
+     * Attend que les événements déjà reçus soient écrits.
+     */
+    default void flush() {
+    }
+}
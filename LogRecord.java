@@ -0,0 +1,67 @@
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Un événement de journal : les champs sont copiés à l'émission, la mise en forme est faite par l'appender.
+ * Les instances sont réutilisées par {@link AsyncAppender}.
+ */
+public class LogRecord {
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    long timeMillis;
+    Log.Level level;
+    String thread;
+    String logger;
+    String message;
+    Throwable error;
+
+    void set(long timeMillis, Log.Level level, String thread, String logger, String message, Throwable error) {
+        this.timeMillis = timeMillis;
+        this.level = level;
+        this.thread = thread;
+        this.logger = logger;
+        this.message = message;
+        this.error = error;
+    }
+
+    void copyFrom(LogRecord other) {
+        set(other.timeMillis, other.level, other.thread, other.logger, other.message, other.error);
+    }
+
+    void clear() {
+        set(0, null, null, null, null, null);
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public Log.Level getLevel() {
+        return level;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public String getLogger() {
+        return logger;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return La ligne de journal : heure, niveau, thread, logger et message
+     */
+    public String format() {
+        return TIME.format(Instant.ofEpochMilli(timeMillis)) + " " + String.format("%-5s", level) + " [" + thread + "] "
+                + logger + " - " + message;
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Banc d'essai de bout en bout : un {@link Receiver} et un {@link Sender} dans la même JVM, reliés par la
+ * boucle locale, transfèrent un fichier synthétique pour chaque combinaison de mode, de taille de fenêtre
+ * et de taux de perte.
+ *
+ * Pour chaque transfert sont mesurés le débit utile (octets de données acquittés par seconde), le nombre
+ * de trames par seconde, les percentiles du délai d'acquittement et le nombre de retransmissions. Les pertes
+ * sont simulées côté émetteur par un {@link LossyTransport} à graine fixe (jamais sur la trame de connexion) ;
+ * les ACKs ne sont pas perdus.
+ *
+ * Usage : java LoopbackBenchmark
+ *   -Dbench.size=octets       taille des données à transférer (262144 par défaut)
+ *   -Dbench.line=octets       longueur d'une ligne, donc d'une trame (64 par défaut)
+ *   -Dbench.windows=1,8,32    tailles de fenêtre à mesurer
+ *   -Dbench.loss=0,0.01       taux de perte des trames de données
+ *   -Dbench.modes=gbn,sr      protocoles de retransmission
+ *   -Dbench.seed=n            graine des pertes et des données (42 par défaut)
+ *   -Dcodec=text|binary       codec proposé par l'émetteur (binary par défaut)
+ *   -Dmtu=octets              trames remplies jusqu'à cette taille au lieu d'une trame par ligne
+ *   -Dfcs=crc16|crc32|crc32c  somme de contrôle du codec binaire
+ *   -Dack.delay=ms            attente maximale d'un ACK du récepteur, pour en couvrir plusieurs salves
+ *   -Dtransport=socket|nio    transport des deux côtés
+ *   -Dchannel.delay=ms ...    autres altérations du canal, voir {@link LossyChannel.Config#fromSystemProperties()}
+ */
+public class LoopbackBenchmark {
+    private final int size = Integer.getInteger("bench.size", 262144);
+    private final int lineLength = Integer.getInteger("bench.line", 64);
+    private final long seed = Long.getLong("bench.seed", 42);
+
+    /**
+     * Résultat d'un transfert.
+     */
+    private static final class Result {
+        long elapsedNanos;
+        long payloadBytes;
+        long dropped;
+        TransferStats stats;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("log.level") == null) {
+            Log.setLevel(Log.Level.ERROR); // Les timeouts et REJ attendus avec des pertes ne sont pas journalisés
+        }
+        new LoopbackBenchmark().run();
+        Log.flush();
+    }
+
+    private void run() throws Exception {
+        int[] windows = parseInts(System.getProperty("bench.windows", "1,8,32"));
+        double[] lossRates = parseDoubles(System.getProperty("bench.loss", "0,0.01"));
+        String[] modes = System.getProperty("bench.modes", "gbn,sr").split(",");
+
+        File file = File.createTempFile("loopback-bench", ".txt");
+        file.deleteOnExit();
+        long payloadBytes = writeSyntheticFile(file);
+
+        System.out.println(String.format("%d bytes in lines of %d, codec %s, transport %s", payloadBytes, lineLength,
+                System.getProperty("codec", "binary"), System.getProperty("transport", Transport.SOCKET)));
+        System.out.println(String.format("%-5s %6s %6s %9s %10s %9s %9s %9s %9s %8s %8s %6s",
+                "Mode", "Window", "Loss", "MB/s", "frames/s", "p50 us", "p90 us", "p99 us", "max us", "Dropped", "Resent", "RTOs"));
+        for (String modeName : modes) {
+            SlidingWindow.Mode mode = SlidingWindow.Mode.forName(modeName.trim());
+            if (mode == null) {
+                throw new IllegalArgumentException("Unknown mode: " + modeName);
+            }
+            for (int window : windows) {
+                if (window > mode.maxWindowSize()) {
+                    continue;
+                }
+                for (double loss : lossRates) {
+                    Result result = transfer(file, payloadBytes, mode, window, loss);
+                    print(mode, window, loss, result);
+                }
+            }
+        }
+    }
+
+    // Un transfert complet vers un récepteur neuf, sur un port libre
+    private Result transfer(File file, long payloadBytes, SlidingWindow.Mode mode, int windowSize, double lossRate)
+            throws Exception {
+        Receiver receiver = new Receiver(1, true);
+        Thread server = new Thread(() -> {
+            try {
+                receiver.start(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, "bench-receiver");
+        server.start();
+        int port = receiver.awaitListening(5000);
+        if (port < 0) {
+            throw new IOException("Receiver did not start");
+        }
+
+        LossyChannel.Config channel = LossyChannel.Config.fromSystemProperties().seed(seed).drop(lossRate);
+        LossyTransport[] link = new LossyTransport[1];
+        Sender sender = new Sender(mode, windowSize) {
+            @Override
+            protected Transport openTransport(String host, int port) throws IOException {
+                Transport transport = super.openTransport(host, port);
+                if (channel.isIdentity()) {
+                    return transport; // Mesure du lien seul, sans le thread du canal
+                }
+                link[0] = new LossyTransport(transport, channel);
+                return link[0];
+            }
+        };
+        Result result = new Result();
+        try {
+            sender.connect("localhost", port);
+            long start = System.nanoTime();
+            sender.sendFrames(file.getPath());
+            result.elapsedNanos = System.nanoTime() - start;
+            sender.close();
+        } finally {
+            receiver.shutdown();
+            server.join();
+        }
+        result.payloadBytes = payloadBytes;
+        result.dropped = link[0] != null ? link[0].getChannel().getDropped() : 0;
+        result.stats = sender.getStats();
+        return result;
+    }
+
+    private static void print(SlidingWindow.Mode mode, int window, double loss, Result result) {
+        TransferStats stats = result.stats;
+        LatencyHistogram latency = stats.getAckLatency();
+        double seconds = result.elapsedNanos / 1e9;
+        System.out.println(String.format("%-5s %6d %6.3f %9.2f %10.0f %9d %9d %9d %9d %8d %8d %6d",
+                mode.getName(), window, loss, result.payloadBytes / seconds / 1e6, stats.getFramesAcked() / seconds,
+                latency.percentile(50) / 1000, latency.percentile(90) / 1000, latency.percentile(99) / 1000,
+                latency.getMax() / 1000, result.dropped, stats.getRetransmissions(), stats.getTimeouts()));
+    }
+
+    // Lignes de caractères imprimables aléatoires ; retourne le nombre d'octets de données (hors fins de ligne)
+    private long writeSyntheticFile(File file) throws IOException {
+        Random random = new Random(seed);
+        long written = 0;
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.US_ASCII))) {
+            char[] line = new char[lineLength];
+            while (written < size) {
+                int length = (int) Math.min(lineLength, size - written);
+                for (int i = 0; i < length; i++) {
+                    line[i] = (char) ('!' + random.nextInt(94));
+                }
+                out.write(line, 0, length);
+                out.write('\n');
+                written += length;
+            }
+        }
+        return written;
+    }
+
+    private static int[] parseInts(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    private static double[] parseDoubles(String list) {
+        String[] parts = list.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Double.parseDouble(parts[i].trim());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,418 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Canal simulé à sens unique : les unités écrites (une trame par écriture de l'émetteur, un bloc lu pour le
+ * proxy) sont perdues, corrompues, dupliquées, réordonnées, retardées ou limitées en débit avant d'être
+ * remises au {@link Sink}, depuis un thread dédié.
+ *
+ * Toutes les décisions sont tirées d'un générateur à graine fixe, dans l'ordre des unités : pour une même
+ * suite d'unités, les mêmes unités sont perdues, corrompues, dupliquées et réordonnées d'une exécution à
+ * l'autre. Seuls les instants de remise dépendent de l'horloge.
+ *
+ * La corruption inverse le bit de poids faible d'un octet : un '0' devient '1' en mode texte, un bit du
+ * flux change en binaire. Le réordonnancement retient une unité et la remet juste après la suivante.
+ */
+public class LossyChannel implements Closeable {
+    private static final long REORDER_HOLD_NANOS = 10_000_000L; // Unité retenue remise seule passé ce délai
+    private static final long HIGH_WATER = 4L << 20; // Au-delà, l'écrivain attend que le canal se vide
+
+    private final Config config;
+    private final Sink sink;
+    private final Random random;
+    private final Thread worker;
+
+    // Accès protégés par this
+    private final ArrayDeque<Unit> queue = new ArrayDeque<>();
+    private Unit held; // Unité retenue pour être remise après la suivante
+    private long heldSince;
+    private long queuedBytes;
+    private long linkFreeAt; // Instant où le lien a fini de transmettre l'unité précédente (limite de débit)
+    private long lastDue;
+    private long units;
+    private long delivered;
+    private long dropped;
+    private long corrupted;
+    private long duplicated;
+    private long reordered;
+    private boolean closed;
+    private boolean aborted;
+
+    /**
+     * Réception des unités à la sortie du canal, toujours appelée depuis le thread du canal.
+     */
+    public interface Sink {
+        /**
+         * @param data Une unité remise par le canal
+         * @throws IOException Si la remise échoue ; le canal est alors abandonné
+         */
+        void deliver(byte[] data) throws IOException;
+
+        /**
+         * Appelée quand plus aucune unité n'est due dans l'immédiat.
+         *
+         * @throws IOException Si l'envoi échoue
+         */
+        default void flush() throws IOException {
+        }
+
+        /**
+         * Appelée une fois, après la dernière unité, lorsque le canal est fermé.
+         *
+         * @param cause null après une fermeture normale, l'erreur de remise sinon
+         */
+        void end(IOException cause);
+    }
+
+    /**
+     * Paramètres du canal. Les taux sont des probabilités par unité, entre 0 et 1.
+     */
+    public static final class Config {
+        private long seed = 42;
+        private double drop;
+        private double corrupt;
+        private double duplicate;
+        private double reorder;
+        private long delayMillis;
+        private long jitterMillis;
+        private long bandwidth; // Octets par seconde, 0 pour un débit illimité
+        private int protectFirst = 1; // La trame de connexion et son ACK ne sont jamais altérés
+
+        /**
+         * Lit les paramètres -Dchannel.seed, .drop, .corrupt, .duplicate, .reorder, .delay (ms), .jitter (ms),
+         * .bandwidth (octets/s) et .protect (nombre d'unités initiales laissées intactes).
+         *
+         * @return La configuration lue, valeurs par défaut pour les paramètres absents
+         */
+        public static Config fromSystemProperties() {
+            Config config = new Config();
+            config.seed = Long.getLong("channel.seed", config.seed);
+            config.drop = Double.parseDouble(System.getProperty("channel.drop", "0"));
+            config.corrupt = Double.parseDouble(System.getProperty("channel.corrupt", "0"));
+            config.duplicate = Double.parseDouble(System.getProperty("channel.duplicate", "0"));
+            config.reorder = Double.parseDouble(System.getProperty("channel.reorder", "0"));
+            config.delayMillis = Long.getLong("channel.delay", 0);
+            config.jitterMillis = Long.getLong("channel.jitter", 0);
+            config.bandwidth = Long.getLong("channel.bandwidth", 0);
+            config.protectFirst = Integer.getInteger("channel.protect", config.protectFirst);
+            return config.validate();
+        }
+
+        public Config copy() {
+            Config copy = new Config();
+            copy.seed = seed;
+            copy.drop = drop;
+            copy.corrupt = corrupt;
+            copy.duplicate = duplicate;
+            copy.reorder = reorder;
+            copy.delayMillis = delayMillis;
+            copy.jitterMillis = jitterMillis;
+            copy.bandwidth = bandwidth;
+            copy.protectFirst = protectFirst;
+            return copy;
+        }
+
+        public Config seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public Config drop(double rate) {
+            this.drop = rate;
+            return validate();
+        }
+
+        public Config corrupt(double rate) {
+            this.corrupt = rate;
+            return validate();
+        }
+
+        public Config duplicate(double rate) {
+            this.duplicate = rate;
+            return validate();
+        }
+
+        public Config reorder(double rate) {
+            this.reorder = rate;
+            return validate();
+        }
+
+        /**
+         * @param delayMillis Délai fixe de propagation
+         * @param jitterMillis Délai supplémentaire aléatoire, sans réordonner les unités
+         */
+        public Config delay(long delayMillis, long jitterMillis) {
+            this.delayMillis = delayMillis;
+            this.jitterMillis = jitterMillis;
+            return validate();
+        }
+
+        /**
+         * @param bytesPerSecond Débit du lien, 0 pour un débit illimité
+         */
+        public Config bandwidth(long bytesPerSecond) {
+            this.bandwidth = bytesPerSecond;
+            return validate();
+        }
+
+        /**
+         * @param units Nombre d'unités initiales transmises sans altération
+         */
+        public Config protectFirst(int units) {
+            this.protectFirst = units;
+            return validate();
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * @return true si le canal ne modifie rien (ni perte, ni altération, ni délai, ni limite de débit)
+         */
+        public boolean isIdentity() {
+            return drop == 0 && corrupt == 0 && duplicate == 0 && reorder == 0 && delayMillis == 0
+                    && jitterMillis == 0 && bandwidth == 0;
+        }
+
+        @Override
+        public String toString() {
+            return "seed=" + seed + " drop=" + drop + " corrupt=" + corrupt + " duplicate=" + duplicate
+                    + " reorder=" + reorder + " delay=" + delayMillis + "ms jitter=" + jitterMillis
+                    + "ms bandwidth=" + (bandwidth == 0 ? "unlimited" : bandwidth + "B/s");
+        }
+
+        private Config validate() {
+            for (double rate : new double[]{drop, corrupt, duplicate, reorder}) {
+                if (rate < 0 || rate > 1) {
+                    throw new IllegalArgumentException("Channel rates must be between 0 and 1");
+                }
+            }
+            if (delayMillis < 0 || jitterMillis < 0 || bandwidth < 0 || protectFirst < 0) {
+                throw new IllegalArgumentException("Channel delay, jitter, bandwidth and protected units must not be negative");
+            }
+            return this;
+        }
+    }
+
+    // Une unité en attente de remise
+    private static final class Unit {
+        final byte[] data;
+        final long due;
+
+        Unit(byte[] data, long due) {
+            this.data = data;
+            this.due = due;
+        }
+    }
+
+    /**
+     * @param config Les paramètres du canal (copiés)
+     * @param sink La sortie du canal
+     * @param name Le nom du thread du canal
+     */
+    public LossyChannel(Config config, Sink sink, String name) {
+        this.config = config.copy();
+        this.sink = sink;
+        this.random = new Random(config.seed);
+        this.linkFreeAt = System.nanoTime();
+        this.lastDue = linkFreeAt;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Fait entrer une unité dans le canal. Les octets sont copiés.
+     *
+     * @param data Les octets de l'unité
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @throws IOException Si le canal est fermé
+     */
+    public synchronized void send(byte[] data, int off, int len) throws IOException {
+        while (queuedBytes > HIGH_WATER && !aborted) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while sending", e);
+            }
+        }
+        if (closed) {
+            throw new IOException("Channel closed");
+        }
+        byte[] unit = Arrays.copyOfRange(data, off, off + len);
+        if (units++ < config.protectFirst) {
+            enqueue(unit, due(len));
+            return;
+        }
+
+        // Tirages toujours faits dans le même ordre pour que la suite des décisions ne dépende que de la graine
+        boolean drop = random.nextDouble() < config.drop;
+        boolean corrupt = random.nextDouble() < config.corrupt;
+        int position = len > 0 ? random.nextInt(len) : 0;
+        boolean duplicate = random.nextDouble() < config.duplicate;
+        boolean reorder = random.nextDouble() < config.reorder;
+        long jitter = config.jitterMillis > 0 ? (long) (random.nextDouble() * config.jitterMillis * 1_000_000L) : 0;
+
+        if (drop) {
+            dropped++;
+            return;
+        }
+        if (corrupt && len > 0) {
+            unit[position] ^= 1;
+            corrupted++;
+        }
+        long due = due(len) + jitter;
+        if (reorder && held == null) {
+            held = new Unit(unit, due);
+            heldSince = System.nanoTime();
+            reordered++;
+            notifyAll();
+            return;
+        }
+        enqueue(unit, due);
+        if (duplicate) {
+            enqueue(unit.clone(), due);
+            duplicated++;
+        }
+        if (held != null) {
+            enqueue(held.data, due); // L'unité retenue passe derrière celle-ci
+            held = null;
+        }
+    }
+
+    /**
+     * Ferme l'entrée du canal ; les unités en attente sont remises, puis {@link Sink#end} est appelée.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Ferme le canal sans remettre les unités en attente.
+     */
+    public synchronized void abort() {
+        closed = true;
+        aborted = true;
+        queue.clear();
+        held = null;
+        queuedBytes = 0;
+        notifyAll();
+    }
+
+    public synchronized long getUnits() {
+        return units;
+    }
+
+    public synchronized long getDelivered() {
+        return delivered;
+    }
+
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    public synchronized long getCorrupted() {
+        return corrupted;
+    }
+
+    public synchronized long getDuplicated() {
+        return duplicated;
+    }
+
+    public synchronized long getReordered() {
+        return reordered;
+    }
+
+    // Instant de remise : temps de transmission au débit du lien puis délai de propagation
+    private long due(int len) {
+        long now = System.nanoTime();
+        if (config.bandwidth > 0) {
+            linkFreeAt = (linkFreeAt - now > 0 ? linkFreeAt : now) + len * 1_000_000_000L / config.bandwidth;
+            now = linkFreeAt;
+        }
+        return now + config.delayMillis * 1_000_000L;
+    }
+
+    private void enqueue(byte[] data, long due) {
+        lastDue = due - lastDue > 0 ? due : lastDue; // La gigue retarde sans réordonner
+        queue.add(new Unit(data, lastDue));
+        queuedBytes += data.length;
+        notifyAll();
+    }
+
+    // Boucle du thread du canal : remet les unités à leur échéance, dans l'ordre de la file
+    private void run() {
+        IOException failure = null;
+        try {
+            while (true) {
+                Unit next = poll();
+                if (next != null) {
+                    sink.deliver(next.data);
+                    continue;
+                }
+                sink.flush(); // Rien n'est dû pour l'instant : envoie ce qui vient d'être remis
+                if (!awaitDue()) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            abort();
+        } catch (InterruptedException e) {
+            abort();
+        }
+        sink.end(failure);
+    }
+
+    // Retire l'unité en tête si elle est due, sans attendre
+    private synchronized Unit poll() {
+        long now = System.nanoTime();
+        releaseHeld(now);
+        Unit head = queue.peek();
+        if (head == null || head.due - now > 0) {
+            return null;
+        }
+        queue.poll();
+        queuedBytes -= head.data.length;
+        delivered++;
+        notifyAll();
+        return head;
+    }
+
+    // Attend qu'une unité soit due ; false quand le canal est fermé et vidé
+    private synchronized boolean awaitDue() throws InterruptedException {
+        while (true) {
+            long now = System.nanoTime();
+            releaseHeld(now);
+            Unit head = queue.peek();
+            if (head == null && held == null) {
+                if (closed) {
+                    return false;
+                }
+                wait();
+                continue;
+            }
+            long remaining = (head != null ? head.due : heldSince + REORDER_HOLD_NANOS) - now;
+            if (remaining <= 0) {
+                return true;
+            }
+            wait(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+        }
+    }
+
+    // Remet l'unité retenue quand aucune autre n'est venue la dépasser à temps
+    private void releaseHeld(long now) {
+        if (held != null && (closed || now - heldSince >= REORDER_HOLD_NANOS)) {
+            enqueue(held.data, held.due);
+            held = null;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Proxy TCP local qui fait passer chaque sens de chaque connexion par un {@link LossyChannel}. Il se place
+ * entre un {@link Sender} et un {@link Receiver} non modifiés.
+ *
+ * Le proxy ne connaît pas les trames : une unité du canal est un bloc tel qu'il a été lu sur le socket.
+ * Une perte ou une corruption peut donc toucher plusieurs trames d'une salve ; le récepteur les rejette par
+ * le CRC ou se resynchronise sur le flag suivant.
+ *
+ * Usage : java LossyProxy <ListenPort> <Host> <Port>
+ *   -Dchannel.drop=0.01 ... : voir {@link LossyChannel.Config#fromSystemProperties()}
+ */
+public class LossyProxy implements Closeable {
+    private static final Log LOG = Log.get(LossyProxy.class);
+
+    private static final int CHUNK_SIZE = 16384;
+
+    private final String host;
+    private final int port;
+    private final LossyChannel.Config config;
+    private final AtomicInteger connections = new AtomicInteger();
+    private ServerSocket serverSocket;
+    private volatile boolean running = true;
+
+    /**
+     * @param host L'hôte vers lequel relayer les connexions
+     * @param port Le port vers lequel relayer les connexions
+     * @param config Les paramètres du canal ; le sens retour utilise la graine suivante
+     */
+    public LossyProxy(String host, int port, LossyChannel.Config config) {
+        this.host = host;
+        this.port = port;
+        this.config = config.copy();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.out.println("Usage: java LossyProxy <ListenPort> <Host> <Port>");
+            System.out.println("  -Dchannel.drop, .corrupt, .duplicate, .reorder: rates between 0 and 1");
+            System.out.println("  -Dchannel.delay, .jitter: milliseconds; -Dchannel.bandwidth: bytes per second");
+            System.out.println("  -Dchannel.seed: random seed; -Dchannel.protect: leading units left intact");
+            System.exit(1);
+        }
+        LossyChannel.Config config = LossyChannel.Config.fromSystemProperties();
+        LossyProxy proxy = new LossyProxy(args[1], Integer.parseInt(args[2]), config);
+        proxy.bind(Integer.parseInt(args[0]));
+        LOG.info("Proxying port " + proxy.getLocalPort() + " to " + args[1] + ":" + args[2] + " (" + config + ")");
+        proxy.serve();
+    }
+
+    /**
+     * @param listenPort Le port d'écoute, 0 pour un port libre
+     * @throws IOException Si le port ne peut pas être ouvert
+     */
+    public void bind(int listenPort) throws IOException {
+        serverSocket = new ServerSocket(listenPort);
+    }
+
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepte les connexions jusqu'à {@link #close()}.
+     */
+    public void serve() {
+        while (running) {
+            Socket client;
+            try {
+                client = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    LOG.error("Error accepting connection: " + e.getMessage());
+                }
+                break;
+            }
+            try {
+                relay(client);
+            } catch (IOException e) {
+                LOG.error("Cannot reach " + host + ":" + port + ": " + e.getMessage());
+                closeQuietly(client);
+            }
+        }
+    }
+
+    /**
+     * Lance le proxy sur un thread démon.
+     */
+    public void start() {
+        Thread acceptor = new Thread(this::serve, "lossy-proxy");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    // Relie le client à une nouvelle connexion vers la destination, un canal par sens
+    private void relay(Socket client) throws IOException {
+        Socket upstream = new Socket(host, port);
+        client.setTcpNoDelay(true);
+        upstream.setTcpNoDelay(true);
+        int id = connections.incrementAndGet();
+        LOG.info("Relaying connection " + id + " from " + client.getInetAddress());
+
+        AtomicInteger open = new AtomicInteger(2); // Les deux sockets sont fermés quand les deux sens sont finis
+        Runnable finished = () -> {
+            if (open.decrementAndGet() == 0) {
+                closeQuietly(client);
+                closeQuietly(upstream);
+                LOG.info("Connection " + id + " closed");
+            }
+        };
+        pump(client, upstream, config, "lossy-proxy-" + id + "-forward", finished);
+        pump(upstream, client, config.copy().seed(config.getSeed() + 1), "lossy-proxy-" + id + "-backward", finished);
+    }
+
+    // Lit un sens de la connexion et le fait passer par son canal
+    private static void pump(Socket from, Socket to, LossyChannel.Config config, String name, Runnable finished)
+            throws IOException {
+        InputStream in = from.getInputStream();
+        OutputStream out = to.getOutputStream();
+        LossyChannel channel = new LossyChannel(config, new LossyChannel.Sink() {
+            @Override
+            public void deliver(byte[] data) throws IOException {
+                out.write(data);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void end(IOException cause) {
+                try {
+                    to.shutdownOutput(); // Transmet la fin de flux
+                } catch (IOException ignored) {
+                    // La connexion est déjà fermée
+                }
+                finished.run();
+            }
+        }, name);
+
+        Thread reader = new Thread(() -> {
+            byte[] buf = new byte[CHUNK_SIZE];
+            try {
+                int n;
+                while ((n = in.read(buf)) != -1) {
+                    channel.send(buf, 0, n);
+                }
+                channel.close();
+            } catch (IOException e) {
+                channel.abort();
+            }
+        }, name + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private static void closeQuietly(Closeable connection) {
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+            // La connexion est déjà inutilisable
+        }
+    }
+}
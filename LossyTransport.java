@@ -0,0 +1,179 @@
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link Transport} dont les écritures traversent un {@link LossyChannel} : chaque appel à write() est une
+ * unité du canal, soit une trame pour l'émetteur et le récepteur (plus la fin de ligne d'une salve en mode
+ * texte).
+ *
+ * Deux usages : en décorateur d'un transport réel, seul le sens émission est altéré ; en paire en mémoire
+ * ({@link #pair}), les deux extrémités sont reliées sans socket, chaque sens par son propre canal.
+ */
+public class LossyTransport implements Transport {
+    private final Transport delegate; // null pour une extrémité en mémoire
+    private final LossyChannel outgoing;
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final AtomicBoolean ended = new AtomicBoolean(); // onClosed n'est signalé qu'une fois
+    private volatile TransportListener listener;
+    private volatile boolean closed = false;
+    private LossyTransport peer;
+
+    /**
+     * Altère les écritures d'un transport existant ; les lectures lui sont confiées telles quelles.
+     *
+     * @param delegate Le transport réel
+     * @param config Les paramètres du canal en émission
+     */
+    public LossyTransport(Transport delegate, LossyChannel.Config config) {
+        this.delegate = delegate;
+        this.outgoing = new LossyChannel(config, new LossyChannel.Sink() {
+            @Override
+            public void deliver(byte[] data) throws IOException {
+                delegate.write(data);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                delegate.flush();
+            }
+
+            @Override
+            public void end(IOException cause) {
+                if (cause == null && delegate.isOpen()) {
+                    try {
+                        delegate.shutdownOutput();
+                    } catch (IOException ignored) {
+                        // Le pair a déjà fermé la connexion
+                    }
+                }
+            }
+        }, "lossy-channel");
+    }
+
+    // Extrémité en mémoire : les unités remises sont passées au listener du pair
+    private LossyTransport(LossyChannel.Config config, String name) {
+        this.delegate = null;
+        this.outgoing = new LossyChannel(config, new LossyChannel.Sink() {
+            @Override
+            public void deliver(byte[] data) throws IOException {
+                peer.receive(data);
+            }
+
+            @Override
+            public void end(IOException cause) {
+                peer.signalClosed(cause); // Fin de flux vue par le pair
+            }
+        }, name);
+    }
+
+    /**
+     * Relie deux extrémités en mémoire.
+     *
+     * @param forward Les paramètres du canal de la première extrémité vers la seconde
+     * @param backward Les paramètres du canal de la seconde vers la première
+     * @return Les deux extrémités
+     */
+    public static LossyTransport[] pair(LossyChannel.Config forward, LossyChannel.Config backward) {
+        LossyTransport first = new LossyTransport(forward, "lossy-channel-forward");
+        LossyTransport second = new LossyTransport(backward, "lossy-channel-backward");
+        first.peer = second;
+        second.peer = first;
+        return new LossyTransport[]{first, second};
+    }
+
+    /**
+     * @return Le canal en émission, pour ses compteurs
+     */
+    public LossyChannel getChannel() {
+        return outgoing;
+    }
+
+    @Override
+    public void write(byte[] data, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Transport closed");
+        }
+        outgoing.send(data, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (closed) {
+            throw new IOException("Transport closed");
+        }
+        // Le canal envoie de lui-même dès qu'il n'a plus d'unité due
+    }
+
+    @Override
+    public void start(TransportListener listener) throws IOException {
+        if (delegate != null) {
+            delegate.start(listener);
+            return;
+        }
+        this.listener = listener;
+        started.countDown();
+    }
+
+    @Override
+    public void shutdownOutput() {
+        outgoing.close(); // Les unités en attente sont remises avant la fin de flux
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed && (delegate == null || delegate.isOpen());
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return delegate != null ? delegate.getRemoteAddress() : "memory";
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        outgoing.abort();
+        if (delegate != null) {
+            delegate.close();
+            return;
+        }
+        signalClosed(null);
+        peer.signalClosed(null); // Comme une connexion fermée : le pair voit la fin de flux
+    }
+
+    // Appelée par le canal du pair pour chaque unité remise
+    private void receive(byte[] data) throws IOException {
+        try {
+            started.await(); // Les unités arrivées avant start() attendent le listener
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while delivering", e);
+        }
+        if (ended.get()) {
+            return;
+        }
+        try {
+            listener.onData(data, 0, data.length);
+        } catch (IOException e) {
+            closed = true;
+            outgoing.abort();
+            signalClosed(e);
+        }
+    }
+
+    private void signalClosed(IOException cause) {
+        if (!ended.compareAndSet(false, true)) {
+            return;
+        }
+        closed = true;
+        outgoing.abort();
+        TransportListener current = listener;
+        if (current != null) {
+            current.onClosed(cause);
+        }
+    }
+}
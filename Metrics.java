@@ -0,0 +1,96 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Publication des statistiques du lien : chaque source est enregistrée comme MBean JMX dans le domaine
+ * {@value #DOMAIN} (visible avec jconsole ou VisualVM) et, avec -Dmetrics.interval=secondes, un instantané de
+ * toutes les sources est écrit périodiquement dans le journal.
+ */
+public final class Metrics {
+    private static final Log LOG = Log.get(Metrics.class);
+
+    public static final String DOMAIN = "tp2.link";
+
+    private static final Map<ObjectName, Object> sources = new ConcurrentSkipListMap<>();
+    private static ScheduledExecutorService reporter;
+
+    private Metrics() {
+    }
+
+    /**
+     * Enregistre une source de statistiques.
+     *
+     * @param type Le type de la source ("Sender", "Receiver")
+     * @param name Le nom qui distingue les sources du même type
+     * @param mbean La source, qui implémente son interface MBean
+     * @return Le nom JMX de la source, ou null si elle n'a pas pu être enregistrée
+     */
+    public static ObjectName register(String type, String name, Object mbean) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+            sources.put(objectName, mbean);
+            startReporter();
+            return objectName;
+        } catch (JMException e) {
+            LOG.warn("Cannot register " + type + " metrics: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Retire une source enregistrée par {@link #register}.
+     *
+     * @param objectName Le nom JMX de la source (null est ignoré)
+     */
+    public static void unregister(ObjectName objectName) {
+        if (objectName == null || sources.remove(objectName) == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            LOG.warn("Cannot unregister " + objectName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Une ligne par source enregistrée : son nom JMX puis ses compteurs
+     */
+    public static String snapshot() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<ObjectName, Object> source : sources.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(source.getKey().getKeyProperty("type")).append(' ')
+                    .append(ObjectName.unquote(source.getKey().getKeyProperty("name")))
+                    .append(": ").append(source.getValue());
+        }
+        return sb.toString();
+    }
+
+    // Démarre l'écriture périodique au premier enregistrement, si un intervalle est configuré
+    private static synchronized void startReporter() {
+        long interval = Long.getLong("metrics.interval", 0);
+        if (interval <= 0 || reporter != null) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> {
+            if (!sources.isEmpty()) {
+                LOG.info("Metrics snapshot\n" + snapshot());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+}
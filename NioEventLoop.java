@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Boucle d'événements NIO : un seul thread attend sur un {@link Selector} et traite les lectures, les écritures
+ * et les acceptations de tous les liens qui lui sont rattachés. Les autres threads lui confient du travail
+ * avec {@link #execute(Runnable)}.
+ */
+public class NioEventLoop implements Runnable {
+    private static final Log LOG = Log.get(NioEventLoop.class);
+
+    private static final int READ_BUFFER_SIZE = 65536;
+    private static NioEventLoop shared;
+
+    private final Selector selector;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Partagés par tous les liens : les lectures se font l'une après l'autre sur le thread de la boucle
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private final byte[] readArray = new byte[READ_BUFFER_SIZE];
+    private volatile boolean running = true;
+
+    /**
+     * Crée la boucle et démarre son thread (démon).
+     *
+     * @param name Le nom du thread
+     * @throws IOException Si le sélecteur ne peut pas être ouvert
+     */
+    public NioEventLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return La boucle partagée par tous les liens NIO du processus
+     * @throws IOException Si elle ne peut pas être créée
+     */
+    public static synchronized NioEventLoop shared() throws IOException {
+        if (shared == null) {
+            shared = new NioEventLoop("nio-event-loop");
+        }
+        return shared;
+    }
+
+    /**
+     * @return true si l'appelant est le thread de la boucle
+     */
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Exécute une tâche sur le thread de la boucle, après les tâches déjà soumises.
+     *
+     * @param task La tâche
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Accepte les connexions d'un socket serveur ; chaque nouvelle connexion, non bloquante, est passée au callback
+     * sur le thread de la boucle.
+     *
+     * @param server Le socket serveur, déjà lié à son port
+     * @param onAccept Le traitement des connexions acceptées
+     * @throws IOException Si le socket serveur ne peut pas passer en mode non bloquant
+     */
+    public void listen(ServerSocketChannel server, Consumer<SocketChannel> onAccept) throws IOException {
+        server.configureBlocking(false);
+        execute(() -> {
+            try {
+                server.register(selector, SelectionKey.OP_ACCEPT, onAccept);
+            } catch (ClosedChannelException e) {
+                LOG.warn("Server channel closed before it could be registered");
+            }
+        });
+    }
+
+    // Appelée sur le thread de la boucle par les liens qui s'y rattachent
+    SelectionKey register(SelectableChannel channel, int ops, NioTransport transport) throws ClosedChannelException {
+        return channel.register(selector, ops, transport);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                // Les tâches soumises depuis la boucle elle-même ne la réveillent pas : pas d'attente s'il en reste
+                if (tasks.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.selectNow();
+                }
+            } catch (IOException e) {
+                LOG.error("Selector failure: " + e.getMessage());
+                break;
+            }
+            runTasks();
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                if (key.isValid()) {
+                    handle(key);
+                }
+            }
+        }
+        runTasks();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handle(SelectionKey key) {
+        Object attachment = key.attachment();
+        if (attachment instanceof NioTransport) {
+            NioTransport transport = (NioTransport) attachment;
+            if (key.isReadable()) {
+                transport.handleRead(readBuffer, readArray);
+            }
+            if (key.isValid() && key.isWritable()) {
+                transport.handleWrite();
+            }
+            return;
+        }
+
+        // Socket serveur : accepte toutes les connexions en attente
+        ServerSocketChannel server = (ServerSocketChannel) key.channel();
+        try {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                channel.configureBlocking(false);
+                ((Consumer<SocketChannel>) attachment).accept(channel);
+            }
+        } catch (IOException e) {
+            LOG.error("Error accepting connection: " + e.getMessage());
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.error("Event loop task failed", e);
+            }
+        }
+    }
+
+    /**
+     * Arrête la boucle après les tâches en attente. Les liens ne sont pas fermés.
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+}
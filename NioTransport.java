@@ -0,0 +1,299 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Transport non bloquant sur un {@link SocketChannel}, piloté par une {@link NioEventLoop}.
+ *
+ * Les écritures sont copiées dans des blocs {@link ByteBuffer} directs ; {@link #flush()} confie les blocs
+ * remplis à la boucle, qui les envoie en une seule écriture groupée (gathering write). Plusieurs flush
+ * rapprochés ne coûtent donc qu'un appel système. Les octets lus sont passés au listener sur le thread
+ * de la boucle : pour ralentir son seul lien, il suspend les lectures avec {@link #setReadPaused(boolean)}
+ * au lieu d'attendre.
+ */
+public class NioTransport implements Transport {
+    private static final int CHUNK_SIZE = 16384;
+    private static final int MAX_SPARE_CHUNKS = 4;
+    private static final long HIGH_WATER = 4L << 20; // Au-delà, flush() attend que la boucle ait vidé la file
+
+    private final NioEventLoop loop;
+    private final SocketChannel channel;
+
+    // Accès protégés par this : les écrivains remplissent, la boucle vide
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>(); // Blocs prêts à l'envoi (en lecture)
+    private final ArrayDeque<ByteBuffer> spare = new ArrayDeque<>();   // Blocs directs réutilisables
+    private ByteBuffer filling; // Bloc en cours de remplissage
+    private long pendingBytes;
+    private boolean flushScheduled;
+    private boolean shutdownRequested;
+    private boolean outputShut;
+
+    // Accès réservés au thread de la boucle
+    private SelectionKey key;
+    private boolean readPaused; // Lectures suspendues par le listener : OP_READ est retiré de la clé
+    private ByteBuffer[] gather = new ByteBuffer[8];
+    private volatile TransportListener listener;
+    private volatile boolean closed = false;
+
+    /**
+     * Rattache un canal connecté à une boucle d'événements.
+     *
+     * @param loop La boucle qui pilote le lien
+     * @param channel Le canal, en mode non bloquant
+     */
+    public NioTransport(NioEventLoop loop, SocketChannel channel) {
+        this.loop = loop;
+        this.channel = channel;
+        loop.execute(this::register);
+    }
+
+    /**
+     * Ouvre une connexion pilotée par la boucle partagée.
+     *
+     * @param host Adresse IP ou nom d'hôte du pair
+     * @param port Port du pair
+     * @return Le transport connecté
+     * @throws IOException En cas d'erreur de connexion
+     */
+    public static NioTransport connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true); // Les écritures sont déjà regroupées
+        return new NioTransport(NioEventLoop.shared(), channel);
+    }
+
+    @Override
+    public synchronized void write(byte[] data, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Transport closed");
+        }
+        while (len > 0) {
+            if (filling == null) {
+                filling = spare.isEmpty() ? ByteBuffer.allocateDirect(CHUNK_SIZE) : spare.poll();
+            }
+            int n = Math.min(len, filling.remaining());
+            filling.put(data, off, n);
+            off += n;
+            len -= n;
+            pendingBytes += n;
+            if (!filling.hasRemaining()) {
+                pending.add(filling.flip());
+                filling = null;
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Transport closed");
+            }
+            if (filling != null && filling.position() > 0) {
+                pending.add(filling.flip());
+                filling = null;
+            }
+            if (pending.isEmpty() && !shutdownRequested) {
+                return;
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                loop.execute(this::writePending);
+            }
+            if (!loop.inEventLoop()) {
+                // Contre-pression : l'écrivain attend si le pair ne lit pas assez vite
+                while (pendingBytes > HIGH_WATER && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while flushing", e);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void start(TransportListener listener) {
+        this.listener = listener;
+        loop.execute(this::updateInterest);
+    }
+
+    @Override
+    public void shutdownOutput() throws IOException {
+        synchronized (this) {
+            shutdownRequested = true;
+        }
+        flush();
+    }
+
+    @Override
+    public boolean isEventDriven() {
+        return true;
+    }
+
+    /**
+     * Appelée depuis la boucle, la suspension prend effet aussitôt ; depuis un autre thread, le changement
+     * passe par la file de la boucle et s'applique donc après le traitement en cours du listener.
+     */
+    @Override
+    public void setReadPaused(boolean paused) {
+        if (loop.inEventLoop()) {
+            applyReadPaused(paused);
+        } else {
+            loop.execute(() -> applyReadPaused(paused));
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed && channel.isOpen();
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        try {
+            return String.valueOf(channel.getRemoteAddress());
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    @Override
+    public void close() {
+        if (loop.inEventLoop()) {
+            close(null);
+        } else {
+            loop.execute(() -> close(null));
+        }
+    }
+
+    // Les méthodes suivantes s'exécutent sur le thread de la boucle
+
+    private void register() {
+        try {
+            key = loop.register(channel, 0, this);
+            updateInterest();
+            writePending();
+        } catch (ClosedChannelException e) {
+            close(e);
+        }
+    }
+
+    private void applyReadPaused(boolean paused) {
+        if (readPaused != paused) {
+            readPaused = paused;
+            updateInterest();
+        }
+    }
+
+    private void updateInterest() {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        int ops = listener != null && !readPaused ? SelectionKey.OP_READ : 0;
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+        }
+        key.interestOps(ops);
+    }
+
+    void handleRead(ByteBuffer buffer, byte[] array) {
+        try {
+            buffer.clear();
+            int n = channel.read(buffer);
+            if (n < 0) {
+                close(null); // Fin de flux : le pair a fermé la connexion
+                return;
+            }
+            if (n > 0) {
+                buffer.flip();
+                buffer.get(array, 0, n);
+                listener.onData(array, 0, n);
+            }
+        } catch (IOException e) {
+            close(e);
+        }
+    }
+
+    void handleWrite() {
+        writePending();
+    }
+
+    private void writePending() {
+        if (key == null || closed) {
+            return; // Le lien n'est pas encore enregistré : register() s'en chargera
+        }
+        int count;
+        synchronized (this) {
+            flushScheduled = false;
+            count = pending.size();
+            if (gather.length < count) {
+                gather = new ByteBuffer[Math.max(count, gather.length * 2)];
+            }
+            pending.toArray(gather);
+        }
+
+        try {
+            if (count > 0) {
+                channel.write(gather, 0, count);
+            }
+            boolean drained;
+            synchronized (this) {
+                for (int i = 0; i < count && !gather[i].hasRemaining(); i++) {
+                    ByteBuffer done = pending.poll();
+                    pendingBytes -= done.limit();
+                    if (spare.size() < MAX_SPARE_CHUNKS) {
+                        spare.add(done.clear());
+                    }
+                }
+                drained = pending.isEmpty();
+                if (drained && shutdownRequested && !outputShut && (filling == null || filling.position() == 0)) {
+                    channel.shutdownOutput();
+                    outputShut = true;
+                }
+                notifyAll();
+            }
+            updateInterest();
+        } catch (IOException e) {
+            close(e);
+        } finally {
+            Arrays.fill(gather, 0, count, null);
+        }
+    }
+
+    private void close(IOException cause) {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Le canal est déjà inutilisable
+        }
+        synchronized (this) {
+            pending.clear();
+            spare.clear();
+            filling = null;
+            pendingBytes = 0;
+            notifyAll();
+        }
+        TransportListener current = listener;
+        if (current != null) {
+            current.onClosed(cause);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Envoi d'un fichier par plusieurs connexions en parallèle : le fichier est découpé en tranches contiguës
+ * ({@link Shard}) et chaque tranche part par son propre {@link Sender}, sur son propre thread, avec sa fenêtre,
+ * son timer de retransmission et son lecteur d'ACKs. Le récepteur écrit chaque tranche à sa position dans le
+ * même fichier.
+ *
+ * Le débit n'est plus borné par la fenêtre et le temps d'aller-retour d'un seul lien, et l'encodage des trames
+ * se répartit sur plusieurs cœurs. Les tranches sont envoyées en flux d'octets avec le codec binaire ; le
+ * récepteur doit servir au moins autant de connexions simultanées qu'il y a de tranches, sans quoi les
+ * connexions en trop attendent, par les tentatives de connexion du Sender, que les premières se terminent.
+ */
+public class ParallelSender {
+    private static final Log LOG = Log.get(ParallelSender.class);
+
+    public static final int DEFAULT_MTU = 4096; // Taille des trames si aucune MTU n'est donnée
+
+    private final SlidingWindow.Mode mode;
+    private final int windowSize;
+    private final int streams;
+    private int mtu = Integer.getInteger("mtu", 0); // 0 : DEFAULT_MTU
+    private BinaryFrameCodec.Checksum checksum = BinaryFrameCodec.Checksum.forName(System.getProperty("fcs")); // null : CRC-CCITT
+    private final List<Sender> senders = new ArrayList<>(); // Un émetteur par tranche du dernier transfert
+
+    /**
+     * @param mode Le protocole de retransmission de chaque connexion
+     * @param windowSize La taille de la fenêtre d'émission de chaque connexion
+     * @param streams Le nombre de connexions, donc de tranches (moins pour un petit fichier)
+     */
+    public ParallelSender(SlidingWindow.Mode mode, int windowSize, int streams) {
+        if (streams < 1) {
+            throw new IllegalArgumentException("Stream count must be at least 1");
+        }
+        if (windowSize < 1 || windowSize > mode.maxWindowSize()) {
+            throw new IllegalArgumentException("Window size must be between 1 and " + mode.maxWindowSize() + " for " + mode);
+        }
+        this.mode = mode;
+        this.windowSize = windowSize;
+        this.streams = streams;
+    }
+
+    /**
+     * @param mtu La taille maximale des données d'une trame, 0 pour {@link #DEFAULT_MTU}. Par défaut -Dmtu.
+     */
+    public void setMtu(int mtu) {
+        if (mtu < 0 || mtu > LinkOptions.MAX_MTU) {
+            throw new IllegalArgumentException("MTU must be between 0 and " + LinkOptions.MAX_MTU + " bytes (0 for the default " + DEFAULT_MTU + ")");
+        }
+        this.mtu = mtu;
+    }
+
+    /**
+     * @param checksum La somme de contrôle proposée sur chaque connexion, ou null pour le CRC-CCITT. Par défaut -Dfcs.
+     */
+    public void setChecksum(BinaryFrameCodec.Checksum checksum) {
+        this.checksum = checksum;
+    }
+
+    /**
+     * Envoie un fichier : chaque tranche est connectée, envoyée et fermée sur son propre thread.
+     *
+     * @param host Adresse IP ou nom d'hôte du récepteur
+     * @param port Port du récepteur
+     * @param fileName Nom du fichier à envoyer
+     * @throws IOException Si une tranche n'a pas pu être envoyée ; les autres vont jusqu'au bout, et leurs
+     *                     erreurs sont jointes à la première
+     */
+    public void send(String host, int port, String fileName) throws IOException {
+        long size = Files.size(Paths.get(fileName));
+        int frameSize = mtu > 0 ? mtu : DEFAULT_MTU;
+        String transfer = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+        List<Shard> shards = Shard.split(transfer, size, streams, frameSize);
+        LOG.info("Sending " + fileName + " (" + size + " bytes) over " + shards.size() + " connection(s) as transfer " + transfer);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(shards.size(),
+                task -> new Thread(task, "sender-stream-" + threadCount.incrementAndGet()));
+        List<Future<?>> results = new ArrayList<>();
+        senders.clear();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < shards.size(); i++) {
+                Sender sender = newSender(i);
+                sender.setMtu(frameSize);
+                sender.setChecksum(checksum);
+                sender.setDuplex(false);
+                sender.setShard(shards.get(i));
+                senders.add(sender);
+                results.add(executor.submit(() -> {
+                    sendShard(sender, host, port, fileName);
+                    return null;
+                }));
+            }
+            IOException failure = null;
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    IOException cause = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                    if (failure == null) {
+                        failure = cause;
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow(); // Réveille les émetteurs en attente d'un ACK
+            throw new IOException("Interrupted while sending " + fileName, e);
+        } finally {
+            executor.shutdown();
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        LOG.info("Sent " + size + " bytes over " + shards.size() + " connection(s) in " + elapsedMillis + " ms ("
+                + String.format("%.2f", size / 1e3 / elapsedMillis) + " MB/s)");
+    }
+
+    /**
+     * Crée l'émetteur d'une tranche ; redéfinie par les tests pour intercaler un transport simulé.
+     *
+     * @param stream L'indice de la tranche, à partir de 0
+     * @return Un émetteur non connecté
+     */
+    protected Sender newSender(int stream) {
+        return new Sender(mode, windowSize);
+    }
+
+    /**
+     * @return Les statistiques de chaque connexion du dernier transfert, dans l'ordre des tranches
+     */
+    public List<TransferStats> getStats() {
+        List<TransferStats> stats = new ArrayList<>();
+        for (Sender sender : senders) {
+            stats.add(sender.getStats());
+        }
+        return stats;
+    }
+
+    // Une connexion : négocie la tranche, l'envoie et ferme
+    private static void sendShard(Sender sender, String host, int port, String fileName) throws IOException {
+        sender.connect(host, port);
+        try {
+            sender.sendFrames(fileName);
+        } finally {
+            sender.close();
+        }
+    }
+}
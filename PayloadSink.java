@@ -0,0 +1,82 @@
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destination des données reçues : le {@link ReceiverSession} y écrit les données de chaque trame acceptée,
+ * dans l'ordre, avant de l'acquitter.
+ *
+ * Une écriture peut bloquer quand la destination ne suit pas : les ACKs sont alors retardés, la fenêtre de
+ * l'expéditeur se remplit et il attend. C'est la contre-pression du lien. Sur un transport NIO, dont le thread
+ * sert toutes les connexions, la session utilise plutôt {@link #offer} et suspend les lectures de sa seule
+ * connexion tant que la destination est pleine.
+ */
+public interface PayloadSink extends Closeable {
+
+    /**
+     * Puits qui ignore les données (comportement historique du récepteur).
+     */
+    PayloadSink DISCARD = (data, off, len) -> {
+    };
+
+    /**
+     * Écrit les données d'une trame.
+     *
+     * @param data Le tampon qui contient les données
+     * @param off Position des données dans le tampon
+     * @param len Nombre d'octets
+     * @throws IOException Si la destination est en erreur ; la connexion est alors fermée
+     */
+    void write(byte[] data, int off, int len) throws IOException;
+
+    /**
+     * Écrit les données d'une trame sans attendre la destination : elles sont toujours acceptées, mais le
+     * puits signale qu'il est plein. L'appelant cesse alors de lui fournir des données jusqu'à l'appel de
+     * onWritable, faite depuis un autre thread. Par défaut, l'écriture est celle de {@link #write}.
+     *
+     * @param data Le tampon qui contient les données
+     * @param off Position des données dans le tampon
+     * @param len Nombre d'octets
+     * @param onWritable Appelée une fois quand le puits peut de nouveau recevoir, si la méthode rend false
+     * @return true si le puits peut recevoir la suite tout de suite
+     * @throws IOException Si la destination est en erreur ; la connexion est alors fermée
+     */
+    default boolean offer(byte[] data, int off, int len, Runnable onWritable) throws IOException {
+        write(data, off, len);
+        return true;
+    }
+
+    /**
+     * Termine l'écriture : les données en attente sont écrites avant le retour.
+     *
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    @Override
+    default void close() throws IOException {
+    }
+
+    /**
+     * Ouvre un puits pour chaque connexion acceptée.
+     */
+    interface Factory {
+
+        /**
+         * @param connection Le numéro de la connexion, à partir de 1
+         * @return Le puits des données de cette connexion
+         * @throws IOException Si la destination ne peut pas être ouverte ; la connexion est refusée
+         */
+        PayloadSink open(int connection) throws IOException;
+
+        /**
+         * Ouvre le puits d'une tranche d'un transfert réparti sur plusieurs connexions : les tranches d'un
+         * même transfert écrivent dans la même destination, chacune à sa position.
+         *
+         * @param connection Le numéro de la connexion, à partir de 1
+         * @param shard La tranche portée par la connexion
+         * @return Le puits de la tranche, ou null si la fabrique ne sait pas recoller les tranches
+         * @throws IOException Si la destination ne peut pas être ouverte ; la connexion est refusée
+         */
+        default PayloadSink open(int connection, Shard shard) throws IOException {
+            return null;
+        }
+    }
+}
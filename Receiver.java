@@ -1,24 +1,80 @@
 import java.io.*;
 import java.net.*;
-import java.util.Scanner;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import javax.management.ObjectName;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Receiver {
+    private static final Log LOG = Log.get(Receiver.class);
 
-    private int nbrFrames = 0; // Nombre de trames détectées dans une communication
-    private int endt = 0; // Indicateur de fin de communication
-    private int expectedFrameNum = 0; // Numéro de trame attendu (Go-Back-N ARQ)
-    private int windowSize = 1; // Taille de la fenêtre (Go-Back-N ARQ)
+    private static final long SHUTDOWN_GRACE_MILLIS = 10000; // Délai laissé aux transferts en cours lors de l'arrêt
+
+    private final int maxConnections; // Nombre maximal de connexions traitées simultanément
+    private final boolean serverMode; // Mode serveur : ne s'arrête pas après la première communication terminée
+    private final Semaphore connectionSlots; // Places libres pour de nouvelles connexions
+    private final Set<ReceiverSession> activeSessions = ConcurrentHashMap.newKeySet(); // Sessions en cours
+    private final ReceiverStats stats = new ReceiverStats(); // Compteurs de toutes les sessions
+    private final AtomicInteger connectionCount = new AtomicInteger(); // Numérote les puits de données
+    private volatile PayloadSink.Factory sinkFactory; // null : les données reçues sont ignorées
+    private volatile String replyFile; // Fichier renvoyé aux expéditeurs en duplex (null : sens retour vide)
+    private ObjectName metricsName; // Nom JMX des statistiques, une fois le port ouvert
+    private ExecutorService workers; // Threads de traitement des sessions en mode serveur (transport bloquant)
+    private NioEventLoop eventLoop; // Boucle qui pilote toutes les connexions (transport NIO)
+    private final CountDownLatch stopped = new CountDownLatch(1); // Libéré par shutdown()
+    private final CountDownLatch listening = new CountDownLatch(1); // Libéré une fois le port ouvert
+    private volatile boolean running = true; // Passe à false lors de l'arrêt du serveur
 
     private ServerSocket serverSocket; // Socket serveur pour accepter les connexions des expéditeurs
 
+    /**
+     * Récepteur historique : une connexion à la fois, arrêt après la première communication terminée.
+     */
+    public Receiver() {
+        this(1, false);
+    }
+
+    /**
+     * @param maxConnections Le nombre maximal de connexions simultanées
+     * @param serverMode true pour servir des expéditeurs successifs jusqu'à l'arrêt explicite
+     */
+    public Receiver(int maxConnections, boolean serverMode) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("Connection limit must be at least 1");
+        }
+        this.maxConnections = maxConnections;
+        this.serverMode = serverMode;
+        this.connectionSlots = new Semaphore(maxConnections);
+    }
+
     public static void main(String[] args) throws IOException {
         // Vérifie que le port est passé en argument
-        if (args.length != 1) {
-            System.out.println("Usage: java Receiver <port>");
+        if (args.length != 1 && args.length != 2) {
+            System.out.println("Usage: java Receiver <port> [MaxConnections]");
+            System.out.println("  [MaxConnections]: serve up to this many senders at once until stopped");
+            System.out.println("  -Dtransport=nio: drive every connection from a single selector thread");
+            System.out.println("  -Doutput=<file>: write the received file to <file> (<file>.n for the n-th connection)");
+            System.out.println("  Shards of a parallel transfer (Sender -Dstreams=<n>, [MaxConnections] >= n) are written back into one file");
+            System.out.println("  -Dreply=<file>: send <file> back to senders that offer a duplex link");
+            System.out.println("  -Dack.delay=<ms>: wait up to <ms> to coalesce acknowledgements (default 0, 5 in duplex)");
             System.exit(1);
         }
         int port = Integer.parseInt(args[0]); // Récupère le port à utiliser
-        Receiver receiver = new Receiver();
+        Receiver receiver;
+        if (args.length == 2) {
+            receiver = new Receiver(Integer.parseInt(args[1]), true);
+            Runtime.getRuntime().addShutdownHook(new Thread(receiver::shutdown, "receiver-shutdown"));
+        } else {
+            receiver = new Receiver();
+        }
+        String output = System.getProperty("output");
+        if (output != null) {
+            receiver.setSinkFactory(FileSink.factory(Paths.get(output)));
+        }
+        receiver.setReplyFile(System.getProperty("reply"));
         receiver.start(port); // Démarre le serveur sur le port donné
     }
 
@@ -29,30 +85,47 @@ public class Receiver {
      * @throws IOException En cas d'erreur de communication
      */
     public void start(int port) throws IOException {
+        try {
+            listen(port);
+        } finally {
+            Metrics.unregister(metricsName);
+            LOG.info("Receiver statistics: " + stats);
+        }
+    }
+
+    private void listen(int port) throws IOException {
+        if (Transport.NIO.equals(System.getProperty("transport", Transport.SOCKET))) {
+            serveNio(port);
+            return;
+        }
+
         serverSocket = new ServerSocket(port);
-        serverSocket.setSoTimeout(60000); // Timeout après 60 secondes sans connexion
-        System.out.println("Receiver listening on port " + port);
+        onListening();
+        LOG.info("Receiver listening on port " + serverSocket.getLocalPort());
+
+        if (serverMode) {
+            serve();
+            return;
+        }
 
+        serverSocket.setSoTimeout(60000); // Timeout après 60 secondes sans connexion
         while (true) {
             try (Socket clientSocket = serverSocket.accept()) { // Accepte une connexion client
-                System.out.println("Connection accepted from " + clientSocket.getInetAddress());
+                LOG.info("Connection accepted from " + clientSocket.getInetAddress());
 
-                // Traitement de la trame de connexion (type "C")
-                if (!processConnectionFrame(clientSocket)) {
-                    System.err.println("Invalid connection frame. Closing connection.");
-                    clientSocket.close();
-                    continue; // Passe à la prochaine connexion
+                SocketTransport transport = new SocketTransport(clientSocket);
+                ReceiverSession session = newSession(transport, null);
+                transport.readLoop(session); // Traite la connexion sur ce thread
+                if (session.getFailure() != null) {
+                    throw session.getFailure();
                 }
 
-                // Traite les données envoyées par l'expéditeur
-                processIncomingData(clientSocket);
-
                 // Si fin de communication, arrête le serveur
-                if (endt == 1) {
+                if (session.isEnded()) {
                     break;
                 }
             } catch (IOException e) {
-                System.err.println("Error handling client connection: " + e.getMessage());
+                LOG.error("Error handling client connection: " + e.getMessage());
                 serverSocket.close();
                 break;
             }
@@ -60,180 +133,224 @@ public class Receiver {
     }
 
     /**
-     * Traite la trame de connexion initiale envoyée par l'expéditeur.
-     *
-     * @param clientSocket Le socket client
-     * @return true si la trame est valide, false sinon
+     * Mode serveur : chaque connexion est traitée par sa propre session sur un pool borné de threads.
+     * Une connexion qui dépasse la limite est refusée aussitôt ; l'expéditeur réessaie plus tard.
      */
-    private boolean processConnectionFrame(Socket clientSocket) throws IOException {
-        InputStream in = clientSocket.getInputStream();
-        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
-        String line = reader.readLine();
-
-        if (line != null) {
-            Frame frame = Frame.identifyFrame(line, 1); // Identifie la trame reçue
-            if (frame != null && "C".equals(frame.getType()) && CRC.validateCRC(frame)) {
-                System.out.println("Received valid connection frame.");
-                sendAck(clientSocket, frame.getNum()); // Envoie un ACK pour la trame
-                return true;
+    private void serve() throws IOException {
+        AtomicInteger sessionCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(maxConnections,
+                task -> new Thread(task, "receiver-session-" + sessionCount.incrementAndGet()));
+
+        while (running) {
+            Socket clientSocket;
+            try {
+                clientSocket = serverSocket.accept();
+            } catch (IOException e) {
+                if (running) {
+                    LOG.error("Error accepting connection: " + e.getMessage());
+                    shutdown();
+                }
+                break; // Socket serveur fermé par shutdown()
+            }
+
+            if (!connectionSlots.tryAcquire()) {
+                LOG.warn("Connection limit of " + maxConnections + " reached. Rejecting " + clientSocket.getInetAddress());
+                closeQuietly(clientSocket);
+                continue;
+            }
+            LOG.info("Connection accepted from " + clientSocket.getInetAddress());
+            SocketTransport transport = new SocketTransport(clientSocket);
+            ReceiverSession session = newSession(transport, null);
+            activeSessions.add(session);
+            try {
+                workers.execute(() -> {
+                    transport.readLoop(session); // Traite la session sur un thread du pool
+                    release(session);
+                });
+            } catch (RejectedExecutionException e) {
+                // Arrêt en cours entre l'acceptation et la soumission
+                release(session);
             }
         }
-        return false;
     }
 
     /**
-     * Traite les données envoyées par l'expéditeur.
-     *
-     * @param clientSocket Le socket client
+     * Transport NIO : une seule boucle d'événements accepte les connexions et pilote toutes les sessions.
+     * Sans mode serveur, le récepteur s'arrête après la première communication terminée, comme en bloquant.
      */
-    private void processIncomingData(Socket clientSocket) throws IOException {
-        InputStream in = clientSocket.getInputStream();
-        Scanner scanner = new Scanner(in); // Scanner pour lire les données
-        System.out.println("Receiving data from sender...");
-
-        // Traite chaque ligne reçue
-        while (scanner.hasNext()) {
-            String line = scanner.nextLine(); // Lit une ligne de données
-            System.out.println("line: " + line);
-
-            // Compte les trames détectées dans la ligne
-            nbrFrames = countFlags(line, "01111110") / 2;
-            System.out.println("Detected " + nbrFrames + " frames.");
-
-            // Traite chaque trame détectée
-            for (int frameNbr = 1; frameNbr <= nbrFrames; frameNbr++) {
-                Frame frame = Frame.identifyFrame(line, frameNbr); // Identifie la trame
-                if (frame == null) {
-                    System.err.println("Frame " + frameNbr + " is invalid. Skipping...");
-                    continue;
-                }
-
-                // Vérifie si c'est une trame de fin de communication (type "F")
-                if ("F".equals(frame.getType())) {
-                    System.out.println("Received End of Communication (F) frame.");
-                    String unstuffedData = BitStuffing.removeBitStuffing(frame.getData());
-                    Frame unstuffedFrame = new Frame(frame.getType(), frame.getNum(), unstuffedData, frame.getCrc());
-
-                    if (CRC.validateCRC(unstuffedFrame)) {
-                        System.out.println("End of Communication frame is valid. Closing connection.");
-                        endt = 1;
-                        return;
-                    } else {
-                        System.err.println("CRC mismatch for End of Communication frame. Closing connection.");
-                    }
-                }
-
-                // Vérifie si c'est une trame de P-bit
-                if ("P".equals(frame.getType())) {
-                    System.out.println("Received P-bit frame.");
-                    String unstuffedData = BitStuffing.removeBitStuffing(frame.getData());
-                    Frame unstuffedFrame = new Frame(frame.getType(), frame.getNum(), unstuffedData, frame.getCrc());
-
-                    if (CRC.validateCRC(unstuffedFrame)) {
-                        System.out.println("P-bit frame is valid.");
-                        // Handle the P-bit frame as needed
-                    } else {
-                        System.err.println("CRC mismatch for P-bit frame.");
-                    }
-                }
+    private void serveNio(int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        serverSocket = server.socket();
+        eventLoop = new NioEventLoop("receiver-event-loop");
+        onListening();
+        LOG.info("Receiver listening on port " + serverSocket.getLocalPort() + " (nio)");
 
-                // Vérifie si la trame est la bonne
-                if (frame.getNum() == expectedFrameNum) {
-                    if (checkErrors(frame)) {
-                        System.out.println("Received valid frame: " + frame.getNum());
-                        expectedFrameNum = (expectedFrameNum + 1); // Avance la fenêtre
-                    } else {
-                        sendRejection(clientSocket, frame.getNum());
-                    }
-                } else {
-                    sendRejection(clientSocket, frame.getNum()); // Rejette les trames hors de la fenêtre
-                }
-            }
+        eventLoop.listen(server, this::acceptNio);
+        try {
+            stopped.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        eventLoop.shutdown();
+    }
 
-            sendAck(clientSocket, expectedFrameNum); // Envoie un ACK cumulatif
-            if (endt == 1) {
-                break;
-            }
+    // Appelée sur le thread de la boucle pour chaque connexion acceptée
+    private void acceptNio(SocketChannel channel) {
+        if (!running) {
+            LOG.info("Receiver is shutting down. Rejecting " + channel.socket().getInetAddress());
+            closeQuietly(channel);
+            return;
+        }
+        if (!connectionSlots.tryAcquire()) {
+            LOG.warn("Connection limit of " + maxConnections + " reached. Rejecting " + channel.socket().getInetAddress());
+            closeQuietly(channel);
+            return;
+        }
+        LOG.info("Connection accepted from " + channel.socket().getInetAddress());
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true); // Chaque ACK part dès qu'il est écrit
+        } catch (IOException e) {
+            LOG.warn("Cannot disable Nagle's algorithm: " + e.getMessage());
         }
+        NioTransport transport = new NioTransport(eventLoop, channel);
+        ReceiverSession[] session = new ReceiverSession[1];
+        session[0] = newSession(transport, () -> {
+            release(session[0]);
+            if (!serverMode && session[0].isEnded()) {
+                new Thread(this::shutdown, "receiver-shutdown").start(); // Fin de la communication
+            }
+        });
+        activeSessions.add(session[0]);
+        transport.start(session[0]);
+    }
 
-        System.out.println("All frames received and processed.");
+    /**
+     * Écrit les données reçues de chaque connexion dans le puits que la fabrique lui ouvre, une fois sa trame
+     * de connexion acceptée ; les tranches d'un transfert réparti sur plusieurs connexions y sont recollées.
+     * À appeler avant {@link #start(int)}.
+     *
+     * @param sinkFactory La fabrique de puits, ou null pour ignorer les données
+     */
+    public void setSinkFactory(PayloadSink.Factory sinkFactory) {
+        this.sinkFactory = sinkFactory;
     }
 
     /**
-     * Compte les occurrences d'un flag dans une ligne.
+     * Renvoie un fichier aux expéditeurs qui proposent un lien duplex, pendant qu'ils envoient le leur.
+     * À appeler avant {@link #start(int)}.
      *
-     * @param line La ligne à analyser
-     * @param flag Le flag à rechercher
-     * @return Le nombre de flags trouvés
+     * @param replyFile Le fichier à renvoyer, ou null pour ne rien renvoyer
      */
-    public int countFlags(String line, String flag) {
-        int count = 0;
-        int index = 0;
+    public void setReplyFile(String replyFile) {
+        this.replyFile = replyFile;
+    }
 
-        // Cherche le flag jusqu'à la fin de la ligne
-        while ((index = line.indexOf(flag, index)) != -1) {
-            count++;
-            index += flag.length();
+    private ReceiverSession newSession(Transport transport, Runnable onClosed) {
+        ReceiverSession session = new ReceiverSession(transport, onClosed, stats);
+        session.setReplyFile(replyFile);
+        PayloadSink.Factory factory = sinkFactory;
+        if (factory != null) {
+            session.setSinkFactory(factory, connectionCount.incrementAndGet()); // Ouvert après la trame de connexion
         }
+        return session;
+    }
 
-        return count;
+    // Le port est ouvert : publie les statistiques et libère awaitListening()
+    private void onListening() {
+        metricsName = Metrics.register("Receiver", "port " + serverSocket.getLocalPort(), stats);
+        listening.countDown();
     }
 
-    /**
-     * Vérifie les erreurs d'une trame via le CRC.
-     *
-     * @param frame La trame à vérifier
-     * @return true si la trame est valide, false sinon
-     */
-    private boolean checkErrors(Frame frame) {
-        boolean isValid = CRC.validateCRC(frame);
-        if (!isValid) {
-            System.err.println("CRC mismatch for frame: " + frame.getNum());
+    private void release(ReceiverSession session) {
+        if (activeSessions.remove(session)) {
+            closeQuietly(session.getTransport());
+            connectionSlots.release();
         }
-        return isValid;
     }
 
     /**
-     * Envoie un ACK (accusé de réception) pour une trame donnée.
-     *
-     * @param clientSocket Le socket client
-     * @param frameNum Le numéro de trame à confirmer
+     * Arrête le serveur : plus aucune connexion n'est acceptée, les transferts en cours disposent d'un délai
+     * pour se terminer, puis les connexions restantes sont fermées.
      */
-    private void sendAck(Socket clientSocket, int frameNum) {
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LOG.info("Shutting down receiver...");
+        if (serverSocket != null) {
+            try {
+                serverSocket.close(); // Débloque accept()
+            } catch (IOException e) {
+                LOG.error("Error closing server socket: " + e.getMessage());
+            }
+        }
         try {
-            if (clientSocket.isClosed() || clientSocket.isOutputShutdown()) {
-                System.err.println("Cannot send ACK. Socket is closed or output is shut down.");
-                return;
+            if (workers != null) {
+                workers.shutdown();
+                if (!workers.awaitTermination(SHUTDOWN_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+                    closeActiveSessions();
+                    workers.awaitTermination(SHUTDOWN_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            } else if (eventLoop != null) {
+                long deadline = System.currentTimeMillis() + SHUTDOWN_GRACE_MILLIS;
+                while (!activeSessions.isEmpty() && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(50);
+                }
+                closeActiveSessions();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped.countDown();
+        }
+    }
 
-            Frame ackFrame = new Frame("A", frameNum, "", "");
-            OutputStream out = clientSocket.getOutputStream();
-            ackFrame.setCrc(CRC.calculateFrameCRC(ackFrame));
-            String outputFrame = ackFrame.toByteString() + "\n"; // Prépare la trame
-            out.write(outputFrame.getBytes());
-            out.flush();
-            frameNum--; // Décrémente le numéro de trame pour l'affichage
-            System.out.println("Sent ACK for frame " + frameNum);
-        } catch (IOException e) {
-            System.err.println("Error sending ACK for frame " + frameNum + ": " + e.getMessage());
+    // Ferme les connexions qui n'ont pas terminé dans le délai imparti
+    private void closeActiveSessions() {
+        if (activeSessions.isEmpty()) {
+            return;
+        }
+        LOG.warn("Closing " + activeSessions.size() + " unfinished connection(s).");
+        for (ReceiverSession session : activeSessions) {
+            closeQuietly(session.getTransport()); // Débloque la lecture de la session
         }
     }
 
     /**
-     * Envoie un rejet (REJ) pour une trame donnée.
+     * Attend que le serveur démarré par {@link #start} sur un autre thread soit prêt à accepter des connexions.
      *
-     * @param clientSocket Le socket client
-     * @param frameNum Le numéro de trame rejetée
-     * @throws IOException En cas d'erreur d'écriture
+     * @param timeoutMillis Le délai d'attente
+     * @return Le port d'écoute effectif (utile avec le port 0), ou -1 si le serveur n'écoute pas à temps
+     * @throws InterruptedException Si l'attente est interrompue
+     */
+    public int awaitListening(long timeoutMillis) throws InterruptedException {
+        if (!listening.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+            return -1;
+        }
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Les statistiques de toutes les sessions de ce récepteur
+     */
+    public ReceiverStats getStats() {
+        return stats;
+    }
+
+    /**
+     * @return Le nombre de connexions en cours de traitement
      */
-    private void sendRejection(Socket clientSocket, int frameNum) throws IOException {
-        Frame rejFrame = new Frame("R", frameNum, null, "");
-        OutputStream out = clientSocket.getOutputStream();
-
-        rejFrame.setCrc(CRC.calculateFrameCRC(rejFrame));
-        String outputFrame = rejFrame.toByteString() + "\n";
-        out.write(outputFrame.getBytes());
-        out.flush();
-        System.out.println("Sent REJ for frame " + frameNum);
+    public int getActiveConnections() {
+        return activeSessions.size();
+    }
+
+    private static void closeQuietly(Closeable connection) {
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+            // La connexion est déjà inutilisable
+        }
     }
 }
@@ -0,0 +1,803 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * État et traitement d'une connexion avec un expéditeur : négociation, fenêtre de réception et ACKs.
+ * Chaque connexion acceptée par le Receiver dispose de sa propre session, qui reçoit les octets de son
+ * {@link Transport} au fil de l'eau.
+ *
+ * Un ACK peut être retardé (-Dack.delay) pour en couvrir plusieurs salves ; il part dès que la moitié de la
+ * fenêtre attend d'être acquittée. En duplex, l'expéditeur reçoit aussi un fichier : l'ACK en attente part
+ * alors dans la prochaine trame de données du sens retour, et chaque trame reçue porte l'acquittement des
+ * trames renvoyées.
+ *
+ * Sur un transport NIO, la session s'exécute sur le thread qui sert toutes les connexions : elle n'y attend
+ * jamais le puits. Quand il est plein, elle suspend les lectures de sa seule connexion jusqu'à ce qu'il se
+ * libère, et sa fermeture, qui attend le disque, se fait sur un autre thread.
+ */
+public class ReceiverSession implements TransportListener {
+    private static final Log LOG = Log.get(ReceiverSession.class);
+
+    private static final byte[] NEWLINE = {'\n'};
+    private static final long DUPLEX_ACK_DELAY_MILLIS = 5; // En duplex, laisse au sens retour le temps de porter l'ACK
+    private static final ScheduledExecutorService ACK_SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "delayed-ack");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService SINK_CLOSER = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "sink-close");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Transport transport; // Lien avec l'expéditeur
+    private final Runnable onClosed; // Prévient le Receiver de la fin de la session (peut être null)
+    private final ReceiverStats stats; // Compteurs partagés avec les autres sessions du Receiver
+    private PayloadSink sink; // Destination des données reçues dans l'ordre
+    private PayloadSink.Factory sinkFactory; // Ouvre le puits une fois la connexion acceptée (null : puits fourni)
+    private int connection; // Numéro de la connexion, passé à sinkFactory
+    private boolean sinkClosed;
+    private volatile CompletableFuture<Void> sinkClosing; // Fermeture du puits hors de la boucle NIO, null sinon
+    private final Runnable resumeReads = () -> getTransport().setReadPaused(false); // Le puits a de nouveau de la place
+    private int mtu; // Taille maximale des données négociée, 0 pour un transfert ligne à ligne
+    private Deframer connectionDeframer = new Deframer(FrameCodec.TEXT, this::onConnectionFrame); // null une fois connecté
+    private Deframer deframer; // Trames de données, avec le codec négocié
+    private boolean pendingAck; // Des trames ont été reçues depuis le dernier ACK
+    private IOException failure; // Erreur à l'origine de la fermeture, s'il y en a une
+    private int endt = 0; // Indicateur de fin de communication
+    private int expectedFrameNum = 0; // Numéro de trame attendu (modulo 256)
+    private int windowSize = 4; // Taille de la fenêtre négociée (celle des anciens expéditeurs par défaut)
+    private SlidingWindow.Mode mode = SlidingWindow.Mode.GO_BACK_N; // Mode de retransmission négocié
+    private final Frame[] outOfOrder = new Frame[SlidingWindow.SEQUENCE_MODULUS]; // Selective Repeat : trames reçues en avance
+    private boolean rejectSent = false; // Un REJ a déjà été envoyé pour la trame attendue
+    private FrameCodec codec = FrameCodec.TEXT; // Codec négocié avec l'expéditeur
+    private long ackDelayMillis; // Attente maximale d'un ACK, 0 pour acquitter chaque salve
+    private int unacked; // Trames livrées depuis le dernier ACK
+    private ScheduledFuture<?> delayedAck; // ACK retardé en attente, s'il y en a un
+    private boolean duplex; // Données dans les deux sens : les trames I portent un ACK en tête
+    private String replyFile; // Fichier renvoyé en duplex (null : sens retour vide)
+    private Sender outbound; // Duplex : émetteur du sens retour, null du côté de l'expéditeur
+    private AckReader outboundAcks; // Duplex : reçoit les acquittements des trames du sens retour
+    private boolean replyPending; // Duplex : le sens retour attend la première trame de l'expéditeur
+    private boolean replyDone; // Le sens retour a envoyé sa trame F
+    private final FrameBuffer control = new FrameBuffer(); // ACK et REJ binaires, encodés sans allocation
+    private ByteBuffer controlOut; // Tampon d'envoi des ACK et REJ binaires, créé au premier envoi
+
+    /**
+     * @param transport Le lien avec l'expéditeur
+     * @param onClosed Appelée une fois la connexion fermée, ou null
+     */
+    public ReceiverSession(Transport transport, Runnable onClosed) {
+        this(transport, onClosed, new ReceiverStats());
+    }
+
+    /**
+     * @param transport Le lien avec l'expéditeur
+     * @param onClosed Appelée une fois la connexion fermée, ou null
+     * @param stats Les statistiques du Receiver, mises à jour par la session
+     */
+    public ReceiverSession(Transport transport, Runnable onClosed, ReceiverStats stats) {
+        this(transport, onClosed, stats, PayloadSink.DISCARD);
+    }
+
+    /**
+     * @param transport Le lien avec l'expéditeur
+     * @param onClosed Appelée une fois la connexion fermée, ou null
+     * @param stats Les statistiques du Receiver, mises à jour par la session
+     * @param sink La destination des données reçues, fermée à la fin de la session
+     */
+    public ReceiverSession(Transport transport, Runnable onClosed, ReceiverStats stats, PayloadSink sink) {
+        this.transport = transport;
+        this.onClosed = onClosed;
+        this.stats = stats;
+        this.sink = sink;
+        stats.onSessionOpened();
+    }
+
+    @Override
+    public void onData(byte[] buf, int off, int len) throws IOException {
+        stats.onBytesReceived(len);
+        int end = off + len;
+        // Trame de connexion : octet par octet, les octets qui la suivent reviennent au deframer de données
+        while (connectionDeframer != null && off < end && transport.isOpen()) {
+            connectionDeframer.feed(buf, off++, 1);
+        }
+        if (deframer != null && (endt == 0 || duplex) && off < end) {
+            deframer.feed(buf, off, end - off);
+        }
+    }
+
+    @Override
+    public void onClosed(IOException cause) {
+        failure = cause;
+        stats.onSessionClosed();
+        synchronized (this) {
+            cancelDelayedAck();
+        }
+        if (outbound != null) {
+            outboundAcks.onClosed(cause); // Réveille l'émetteur du sens retour
+        }
+        if (cause != null) {
+            LOG.error("Error handling client connection: " + cause.getMessage());
+        }
+        if (deframer != null) {
+            LOG.info("All frames received and processed.");
+        }
+        if (!sinkClosed && endt == 0 && sink != PayloadSink.DISCARD) {
+            LOG.warn("Connection closed before the end of the transfer: received data is incomplete.");
+        }
+        try {
+            closeSink();
+        } catch (IOException e) {
+            LOG.error("Error closing payload sink: " + e.getMessage());
+        }
+        CompletableFuture<Void> closing = sinkClosing;
+        if (onClosed != null) {
+            if (closing != null) {
+                closing.thenRun(onClosed); // Le Receiver est prévenu une fois les données écrites
+            } else {
+                onClosed.run();
+            }
+        }
+    }
+
+    /**
+     * @return true si la communication s'est terminée par une trame F valide ; les données reçues sont alors
+     * toutes écrites et la destination fermée, ou en cours de fermeture sur un transport NIO (voir
+     * {@link #awaitSinkClosed()})
+     */
+    public synchronized boolean isEnded() {
+        return endt == 1;
+    }
+
+    /**
+     * Attend la fin de la fermeture du puits, faite hors de la boucle sur un transport NIO ; ne fait rien si
+     * elle n'a pas commencé.
+     */
+    void awaitSinkClosed() {
+        CompletableFuture<Void> closing = sinkClosing;
+        if (closing != null) {
+            closing.join();
+        }
+    }
+
+    /**
+     * @return L'erreur à l'origine de la fermeture, ou null
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Renvoie un fichier à l'expéditeur s'il propose un lien duplex. À appeler avant le début de la session.
+     *
+     * @param replyFile Le fichier à renvoyer, ou null pour ne rien renvoyer
+     */
+    public void setReplyFile(String replyFile) {
+        this.replyFile = replyFile;
+    }
+
+    /**
+     * Ouvre le puits des données une fois la trame de connexion acceptée, plutôt que d'utiliser celui du
+     * constructeur : un expéditeur qui n'envoie qu'une tranche d'un transfert réparti y écrit alors à sa
+     * position. Si le puits ne peut pas être ouvert, la connexion est refusée. À appeler avant le début de
+     * la session.
+     *
+     * @param sinkFactory La fabrique de puits du Receiver
+     * @param connection Le numéro de la connexion
+     */
+    public void setSinkFactory(PayloadSink.Factory sinkFactory, int connection) {
+        this.sinkFactory = sinkFactory;
+        this.connection = connection;
+    }
+
+    /**
+     * Session du sens retour d'un lien duplex, côté expéditeur : les options sont celles négociées par
+     * l'expéditeur, et les trames arrivent par son {@link AckReader} plutôt que par le transport.
+     *
+     * @param transport Le lien avec le récepteur, sur lequel partent les ACKs
+     * @param stats Les statistiques du sens retour
+     * @param sink La destination des données reçues
+     * @param codec Le codec négocié
+     * @param mode Le mode de retransmission négocié
+     * @param windowSize La taille de fenêtre négociée
+     * @param mtu La MTU négociée, 0 pour une trame par ligne
+     * @param acks Le lecteur de réponses de l'expéditeur, qui reçoit les ACKs portés par les trames
+     * @return La session, prête à recevoir
+     */
+    static ReceiverSession inbound(Transport transport, ReceiverStats stats, PayloadSink sink, FrameCodec codec,
+                                   SlidingWindow.Mode mode, int windowSize, int mtu, AckReader acks) {
+        ReceiverSession session = new ReceiverSession(transport, null, stats, sink);
+        session.connectionDeframer = null;
+        session.codec = codec;
+        session.mode = mode;
+        session.windowSize = windowSize;
+        session.mtu = mtu;
+        session.duplex = true;
+        session.ackDelayMillis = Long.getLong("ack.delay", DUPLEX_ACK_DELAY_MILLIS);
+        session.outboundAcks = acks;
+        return session;
+    }
+
+    /**
+     * Traite la trame de connexion initiale envoyée par l'expéditeur : la connexion est acceptée si elle est
+     * valide, fermée sinon.
+     *
+     * @param frame La première trame reçue
+     */
+    private void onConnectionFrame(Frame frame) throws IOException {
+        connectionDeframer = null;
+        if (!processConnectionFrame(frame)) {
+            LOG.warn("Invalid connection frame. Closing connection.");
+            transport.close();
+            return;
+        }
+
+        // Les données envoyées par l'expéditeur sont traitées à leur arrivée
+        LOG.info("Receiving data from sender...");
+        replyPending = duplex;
+        deframer = new Deframer(codec, new FrameListener() {
+            @Override
+            public void onFrame(Frame frame) throws IOException {
+                receiveFrame(frame);
+            }
+
+            @Override
+            public void onBurstEnd() {
+                endBurst();
+            }
+        });
+    }
+
+    /**
+     * Traite une trame de données reçue. En duplex, les ACK et REJ du sens retour sont transmis à son
+     * émetteur.
+     *
+     * @param frame La trame identifiée
+     * @throws IOException Si la trame ne peut pas être traitée
+     */
+    synchronized void receiveFrame(Frame frame) throws IOException {
+        if (replyPending) {
+            // Avant sa première trame, l'expéditeur peut encore lire ses réponses en texte
+            replyPending = false;
+            startReply();
+        }
+        if (outbound != null && ("A".equals(frame.getType()) || "R".equals(frame.getType()))) {
+            outboundAcks.onReply(frame);
+            return;
+        }
+        if (endt == 1) {
+            return; // Communication terminée : le reste du bloc est ignoré
+        }
+        handleFrame(frame);
+        pendingAck = endt == 0;
+        if (endt == 1) {
+            cancelDelayedAck();
+            closeSink(); // Toutes les données sont écrites avant la fermeture
+            if (!duplex) {
+                transport.close();
+            } else if (replyDone) {
+                transport.shutdownOutput(); // Les deux sens sont terminés : l'expéditeur ferme à son tour
+            }
+        }
+    }
+
+    /**
+     * Fin d'une salve de trames : envoie l'ACK cumulatif, tout de suite ou après le délai d'acquittement.
+     * Sans nouvelle trame livrée (doublon, erreur), l'ACK part aussitôt : l'expéditeur a pu perdre le précédent.
+     */
+    synchronized void endBurst() {
+        if (!pendingAck) {
+            return;
+        }
+        if (ackDelayMillis == 0 || unacked == 0 || unacked >= Math.max(1, windowSize / 2)) {
+            flushAck();
+        } else if (delayedAck == null) {
+            delayedAck = ACK_SCHEDULER.schedule(this::onAckDelay, ackDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Prend l'ACK en attente pour le porter dans une trame de données du sens retour.
+     *
+     * @return Le numéro de la prochaine trame attendue
+     */
+    synchronized int piggybackAck() {
+        if (pendingAck) {
+            cancelDelayedAck();
+            pendingAck = false;
+            unacked = 0;
+            stats.onAckPiggybacked();
+        }
+        return expectedFrameNum;
+    }
+
+    // Délai d'acquittement écoulé sans trame du sens retour pour porter l'ACK
+    private synchronized void onAckDelay() {
+        delayedAck = null;
+        if (pendingAck) {
+            flushAck();
+        }
+    }
+
+    private void flushAck() {
+        cancelDelayedAck();
+        sendAck(expectedFrameNum); // Envoie un ACK cumulatif
+        pendingAck = false;
+        unacked = 0;
+    }
+
+    private void cancelDelayedAck() {
+        if (delayedAck != null) {
+            delayedAck.cancel(false);
+            delayedAck = null;
+        }
+    }
+
+    // Duplex : envoie le sens retour sur son propre thread, avec les options négociées
+    private void startReply() {
+        Thread thread = new Thread(this::sendReply, "reply-sender");
+        thread.setDaemon(true);
+        outbound = new Sender(mode, windowSize);
+        outbound.attach(transport, codec, mtu, thread, this);
+        outboundAcks = outbound.getAckReader();
+        thread.start();
+    }
+
+    private void sendReply() {
+        try {
+            if (replyFile != null) {
+                LOG.info("Sending " + replyFile + " back to sender...");
+                outbound.sendFrames(replyFile);
+            } else {
+                outbound.sendEnd();
+            }
+        } catch (IOException e) {
+            if (transport.isOpen()) {
+                LOG.error("Error sending reply: " + e.getMessage());
+            }
+        }
+        LOG.info("Reply statistics: " + outbound.getStats());
+        synchronized (this) {
+            replyDone = true;
+            if (endt == 1 && transport.isOpen()) {
+                try {
+                    transport.shutdownOutput(); // Les deux sens sont terminés : l'expéditeur ferme à son tour
+                } catch (IOException e) {
+                    LOG.warn("Cannot shut down reply: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Traite la trame de connexion initiale envoyée par l'expéditeur.
+     *
+     * @param frame La trame reçue
+     * @return true si la trame est valide, false sinon
+     */
+    private boolean processConnectionFrame(Frame frame) {
+        codec = FrameCodec.TEXT; // La trame de connexion et son ACK sont toujours en texte
+
+        if ("C".equals(frame.getType()) && CRC.validateCRC(frame)) {
+            LOG.info("Received valid connection frame.");
+
+            // Accepte le codec proposé s'il est connu ; un ancien expéditeur ne propose rien
+            LinkOptions options = LinkOptions.parse(frame.getData());
+            LinkOptions accepted = new LinkOptions();
+            FrameCodec offered = FrameCodec.forName(options.get(LinkOptions.CODEC));
+            if (offered != null) {
+                accepted.set(LinkOptions.CODEC, offered.getName());
+            }
+            BinaryFrameCodec.Checksum checksum = BinaryFrameCodec.Checksum.forName(options.get(LinkOptions.FCS));
+            if (offered == FrameCodec.BINARY && checksum != null) {
+                offered = checksum.getCodec();
+                accepted.set(LinkOptions.FCS, checksum.getName());
+            }
+            negotiateWindow(options, accepted);
+            negotiateMtu(options, accepted);
+            negotiateDuplex(options, accepted, offered);
+            if (!negotiateShard(options, accepted, offered)) {
+                return false;
+            }
+            sendAck(frame.getNum(), accepted.toString()); // Envoie un ACK pour la trame
+            if (offered != null) {
+                codec = offered;
+                LOG.info("Using " + codec.getName() + " codec.");
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adopte le mode et la taille de fenêtre proposés par l'expéditeur, dans les limites du numéro sur 8 bits.
+     *
+     * @param options Les options proposées
+     * @param accepted Les options renvoyées dans l'ACK, complétées par cette méthode
+     */
+    private void negotiateWindow(LinkOptions options, LinkOptions accepted) {
+        mode = SlidingWindow.Mode.GO_BACK_N;
+        windowSize = 4;
+        expectedFrameNum = 0;
+        rejectSent = false;
+        Arrays.fill(outOfOrder, null);
+
+        SlidingWindow.Mode offeredMode = SlidingWindow.Mode.forName(options.get(LinkOptions.MODE));
+        if (offeredMode != null) {
+            mode = offeredMode;
+            accepted.set(LinkOptions.MODE, mode.getName());
+        }
+        String offeredWindow = options.get(LinkOptions.WINDOW);
+        if (offeredWindow != null) {
+            try {
+                windowSize = Math.max(1, Math.min(Integer.parseInt(offeredWindow), mode.maxWindowSize()));
+            } catch (NumberFormatException e) {
+                LOG.warn("Invalid window size offered: " + offeredWindow);
+            }
+            accepted.set(LinkOptions.WINDOW, Integer.toString(windowSize));
+        }
+    }
+
+    /**
+     * Accepte un transfert en flux d'octets si l'expéditeur propose une MTU : les données des trames sont
+     * alors mises bout à bout, sans fin de ligne entre elles.
+     *
+     * @param options Les options proposées
+     * @param accepted Les options renvoyées dans l'ACK, complétées par cette méthode
+     */
+    private void negotiateMtu(LinkOptions options, LinkOptions accepted) {
+        mtu = 0;
+        String offeredMtu = options.get(LinkOptions.MTU);
+        if (offeredMtu == null) {
+            return;
+        }
+        try {
+            mtu = Math.max(0, Math.min(Integer.parseInt(offeredMtu), LinkOptions.MAX_MTU));
+        } catch (NumberFormatException e) {
+            LOG.warn("Invalid MTU offered: " + offeredMtu);
+        }
+        if (mtu > 0) {
+            accepted.set(LinkOptions.MTU, Integer.toString(mtu));
+        }
+    }
+
+    /**
+     * Accepte un lien duplex si l'expéditeur le propose avec le codec binaire : chaque trame de données porte
+     * alors en tête un octet d'acquittement, ce que le codec texte ne permet pas.
+     *
+     * @param options Les options proposées
+     * @param accepted Les options renvoyées dans l'ACK, complétées par cette méthode
+     * @param offered Le codec accepté, ou null
+     */
+    private void negotiateDuplex(LinkOptions options, LinkOptions accepted, FrameCodec offered) {
+        duplex = "1".equals(options.get(LinkOptions.DUPLEX)) && offered instanceof BinaryFrameCodec;
+        if (duplex) {
+            accepted.set(LinkOptions.DUPLEX, "1");
+        }
+        ackDelayMillis = Long.getLong("ack.delay", duplex ? DUPLEX_ACK_DELAY_MILLIS : 0);
+    }
+
+    /**
+     * Ouvre le puits de la connexion : celui d'une tranche si l'expéditeur n'envoie qu'une partie d'un
+     * transfert réparti, celui d'un fichier complet sinon. Une tranche n'est acceptée qu'en flux d'octets
+     * avec le codec binaire, où la position de chaque octet est connue, et si elle tient dans le fichier ;
+     * une tranche refusée n'est écrite nulle part, et l'expéditeur abandonne en voyant l'option absente de l'ACK.
+     *
+     * @param options Les options proposées
+     * @param accepted Les options renvoyées dans l'ACK, complétées par cette méthode
+     * @param offered Le codec accepté, ou null
+     * @return false si le puits ne peut pas être ouvert : la connexion est refusée
+     */
+    private boolean negotiateShard(LinkOptions options, LinkOptions accepted, FrameCodec offered) {
+        String offeredShard = options.get(LinkOptions.SHARD);
+        Shard shard = Shard.parse(offeredShard);
+        if (offeredShard != null && shard == null) {
+            // Tranche mal formée ou hors du fichier : refusée, sans ouvrir le fichier de la connexion
+            LOG.warn("Invalid shard offered: " + offeredShard + ". Refusing it.");
+            return true;
+        }
+        boolean positional = shard != null && mtu > 0 && offered instanceof BinaryFrameCodec;
+        try {
+            if (shard == null) {
+                if (sinkFactory != null) {
+                    sink = sinkFactory.open(connection);
+                }
+            } else if (positional && sinkFactory != null) {
+                PayloadSink opened = sinkFactory.open(connection, shard);
+                if (opened != null) {
+                    sink = opened;
+                    accepted.set(LinkOptions.SHARD, shard.toString());
+                    LOG.info("Receiving " + shard.getLength() + " bytes at offset " + shard.getOffset()
+                            + " of transfer " + shard.getTransfer() + ".");
+                }
+            } else if (positional && sink == PayloadSink.DISCARD) {
+                accepted.set(LinkOptions.SHARD, shard.toString()); // Données ignorées : la position importe peu
+            }
+        } catch (IOException e) {
+            LOG.error("Cannot open payload sink, rejecting connection: " + e.getMessage());
+            return false;
+        }
+        if (shard != null && accepted.get(LinkOptions.SHARD) == null) {
+            LOG.warn("Cannot reassemble shard " + shard + ". Refusing it.");
+        }
+        return true;
+    }
+
+    /**
+     * Traite une trame reçue : fin de communication, trame P ou trame d'information.
+     *
+     * @param frame La trame identifiée
+     * @return true si la communication est terminée
+     */
+    private boolean handleFrame(Frame frame) throws IOException {
+        // Vérifie si c'est une trame de fin de communication (type "F")
+        if ("F".equals(frame.getType())) {
+            LOG.info("Received End of Communication (F) frame.");
+
+            if (validateControlFrame(frame)) {
+                LOG.info("End of Communication frame is valid. Closing connection.");
+                endt = 1;
+                return true;
+            } else {
+                LOG.warn("CRC mismatch for End of Communication frame. Closing connection.");
+            }
+        }
+
+        // Vérifie si c'est une trame de P-bit
+        if ("P".equals(frame.getType())) {
+            LOG.debug(() -> "Received P-bit frame.");
+
+            if (validateControlFrame(frame)) {
+                LOG.debug(() -> "P-bit frame is valid.");
+                // Handle the P-bit frame as needed
+            } else {
+                LOG.warn("CRC mismatch for P-bit frame.");
+            }
+        }
+
+        // Vérifie si la trame est la bonne
+        if (!checkErrors(frame)) {
+            requestRetransmission();
+            return false;
+        }
+        if (duplex && "I".equals(frame.getType())) {
+            frame = takeAck(frame);
+        }
+
+        int distance = Math.floorMod(frame.getNum() - expectedFrameNum, SlidingWindow.SEQUENCE_MODULUS);
+        if (distance == 0) {
+            deliver(frame);
+            // Selective Repeat : les trames déjà reçues en avance deviennent livrables
+            while (outOfOrder[expectedFrameNum] != null) {
+                Frame next = outOfOrder[expectedFrameNum];
+                outOfOrder[expectedFrameNum] = null;
+                deliver(next);
+            }
+        } else if (distance < windowSize) {
+            // Trame en avance dans la fenêtre : au moins une trame précédente manque
+            stats.onOutOfOrderFrame();
+            if (mode == SlidingWindow.Mode.SELECTIVE_REPEAT) {
+                outOfOrder[frame.getNum()] = frame;
+            }
+            requestRetransmission();
+        } else {
+            stats.onDuplicateFrame(); // Trame déjà reçue (retransmission) : l'ACK cumulatif suffit
+        }
+        return false;
+    }
+
+    /**
+     * Duplex : transmet l'acquittement porté en tête d'une trame valide et le retire des données.
+     *
+     * @param frame La trame reçue, CRC vérifié
+     * @return La trame sans son octet d'acquittement
+     */
+    private Frame takeAck(Frame frame) {
+        byte[] payload = frame.getPayload();
+        if (payload.length == 0) {
+            return frame;
+        }
+        outboundAcks.acknowledge(payload[0] & 0xFF);
+        return Frame.withPayload(frame.getType(), frame.getNum(), Arrays.copyOfRange(payload, 1, payload.length), frame.getCrc());
+    }
+
+    /**
+     * Accepte une trame reçue dans l'ordre et avance la fenêtre.
+     *
+     * @param frame La trame à livrer
+     */
+    private void deliver(Frame frame) throws IOException {
+        LOG.debug(() -> "Received valid frame: " + frame.getNum());
+        if (sink != PayloadSink.DISCARD && transport.isEventDriven()) {
+            // Boucle NIO partagée : seule cette connexion cesse de lire tant que la destination est pleine
+            byte[] payload = frame.getPayload();
+            boolean writable = sink.offer(payload, 0, payload.length, resumeReads);
+            if (mtu == 0) {
+                writable &= sink.offer(NEWLINE, 0, 1, resumeReads);
+            }
+            if (!writable) {
+                transport.setReadPaused(true);
+            }
+        } else if (sink != PayloadSink.DISCARD) {
+            byte[] payload = frame.getPayload();
+            sink.write(payload, 0, payload.length); // Peut attendre que la destination suive
+            if (mtu == 0) {
+                sink.write(NEWLINE, 0, 1); // Une trame par ligne : la fin de ligne n'est pas transmise
+            }
+        }
+        stats.onFrameDelivered(frame.getPayloadLength());
+        unacked++;
+        expectedFrameNum = (expectedFrameNum + 1) % SlidingWindow.SEQUENCE_MODULUS; // Avance la fenêtre
+        rejectSent = false;
+    }
+
+    // Ferme le puits une seule fois, à la fin du transfert ou de la connexion ; sur un transport NIO, la
+    // fermeture attend le disque sur un autre thread
+    private void closeSink() throws IOException {
+        if (sinkClosed) {
+            return;
+        }
+        sinkClosed = true;
+        if (!transport.isEventDriven()) {
+            sink.close();
+            return;
+        }
+        PayloadSink closing = sink;
+        sinkClosing = CompletableFuture.runAsync(() -> {
+            try {
+                closing.close();
+            } catch (IOException e) {
+                LOG.error("Error closing payload sink: " + e.getMessage());
+            }
+        }, SINK_CLOSER);
+    }
+
+    /**
+     * Demande la retransmission de la trame attendue, une seule fois tant qu'elle n'est pas arrivée.
+     * En Go-Back-N l'expéditeur reprend à partir de cette trame ; en Selective Repeat il ne renvoie qu'elle.
+     *
+     */
+    private void requestRetransmission() throws IOException {
+        if (!rejectSent) {
+            sendRejection(expectedFrameNum);
+            rejectSent = true;
+        }
+    }
+
+    /**
+     * Valide une trame F ou P. En mode texte, le bourrage résiduel de ses données est retiré avant le contrôle.
+     *
+     * @param frame La trame à valider
+     * @return true si le CRC est valide
+     */
+    private boolean validateControlFrame(Frame frame) {
+        if (!codec.isLineDelimited()) {
+            return codec.validate(frame);
+        }
+        String unstuffedData = BitStuffing.removeBitStuffing(frame.getData());
+        if (unstuffedData.equals(frame.getData())) {
+            return CRC.validateCRC(frame); // Rien à retirer : le CRC reçu a été contrôlé au décodage
+        }
+        Frame unstuffedFrame = new Frame(frame.getType(), frame.getNum(), unstuffedData, frame.getCrc());
+        return CRC.validateCRC(unstuffedFrame);
+    }
+
+    /**
+     * Vérifie les erreurs d'une trame via le CRC.
+     *
+     * @param frame La trame à vérifier
+     * @return true si la trame est valide, false sinon
+     */
+    private boolean checkErrors(Frame frame) {
+        boolean isValid = codec.validate(frame);
+        if (!isValid) {
+            stats.onCrcError();
+            LOG.warn("CRC mismatch for frame: " + frame.getNum());
+        }
+        return isValid;
+    }
+
+    /**
+     * Envoie un ACK (accusé de réception) pour une trame donnée.
+     *
+     * @param frameNum Le numéro de trame à confirmer
+     */
+    private void sendAck(int frameNum) {
+        sendAck(frameNum, "");
+    }
+
+    /**
+     * Envoie un ACK portant des données (options acceptées lors de la connexion).
+     *
+     * @param frameNum Le numéro de trame à confirmer
+     * @param data Les données de l'ACK
+     */
+    private void sendAck(int frameNum, String data) {
+        try {
+            if (!transport.isOpen()) {
+                LOG.warn("Cannot send ACK. Connection is closed.");
+                return;
+            }
+
+            if (data.isEmpty() && codec instanceof BinaryFrameCodec) {
+                writeControl('A', frameNum); // Cas courant : aucune allocation
+            } else {
+                Frame ackFrame = new Frame("A", frameNum, data, "");
+                ackFrame.setCrc(CRC.calculateFrameCRC(ackFrame));
+                transport.write(encode(ackFrame)); // Prépare la trame
+            }
+            transport.flush();
+            stats.onAckSent();
+            int acknowledged = frameNum - 1; // Dernière trame confirmée, pour l'affichage
+            LOG.debug(() -> "Sent ACK for frame " + acknowledged);
+        } catch (IOException e) {
+            LOG.error("Error sending ACK for frame " + frameNum + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Envoie un rejet (REJ) pour une trame donnée.
+     *
+     * @param frameNum Le numéro de trame rejetée
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    private void sendRejection(int frameNum) throws IOException {
+        if (codec instanceof BinaryFrameCodec) {
+            writeControl('R', frameNum);
+        } else {
+            Frame rejFrame = new Frame("R", frameNum, null, "");
+
+            rejFrame.setCrc(CRC.calculateFrameCRC(rejFrame));
+            transport.write(encode(rejFrame));
+        }
+        transport.flush();
+        stats.onRejectSent();
+        LOG.warn("Sent REJ for frame " + frameNum);
+    }
+
+    /**
+     * Codec binaire : encode une trame de contrôle sans données dans un tampon réutilisé et l'écrit, sans
+     * passer par une {@link Frame}.
+     *
+     * @param type Le type de trame (A ou R)
+     * @param frameNum Le numéro porté par la trame
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    private void writeControl(char type, int frameNum) throws IOException {
+        BinaryFrameCodec binary = (BinaryFrameCodec) codec;
+        if (controlOut == null) {
+            controlOut = ByteBuffer.allocate(binary.maxEncodedLength(0));
+        }
+        binary.encode(control.reset(type, frameNum), controlOut.clear());
+        transport.write(controlOut.array(), 0, controlOut.position());
+    }
+
+    /**
+     * Encode une trame de contrôle avec le codec courant, suivie d'une fin de ligne en mode texte.
+     *
+     * @param frame La trame à encoder
+     * @return Les octets à envoyer
+     */
+    private byte[] encode(Frame frame) {
+        byte[] encoded = codec.encode(frame);
+        if (!codec.isLineDelimited()) {
+            return encoded;
+        }
+        byte[] line = Arrays.copyOf(encoded, encoded.length + 1);
+        line[encoded.length] = '\n';
+        return line;
+    }
+}
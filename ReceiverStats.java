@@ -0,0 +1,133 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques d'un récepteur, partagées par toutes ses sessions : chaque session incrémente des compteurs
+ * {@link LongAdder} sans verrou, la lecture fait la somme à la demande.
+ */
+public class ReceiverStats implements ReceiverStatsMBean {
+    private final LongAdder sessionsOpened = new LongAdder();
+    private final LongAdder sessionsClosed = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder payloadBytesReceived = new LongAdder();
+    private final LongAdder crcErrors = new LongAdder();
+    private final LongAdder outOfOrderFrames = new LongAdder();
+    private final LongAdder duplicateFrames = new LongAdder();
+    private final LongAdder acksSent = new LongAdder();
+    private final LongAdder acksPiggybacked = new LongAdder();
+    private final LongAdder rejectsSent = new LongAdder();
+
+    public void onSessionOpened() {
+        sessionsOpened.increment();
+    }
+
+    public void onSessionClosed() {
+        sessionsClosed.increment();
+    }
+
+    /**
+     * @param bytes Octets lus sur le lien, trames et flags compris
+     */
+    public void onBytesReceived(int bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    /**
+     * @param payloadBytes Taille des données de la trame livrée
+     */
+    public void onFrameDelivered(int payloadBytes) {
+        framesReceived.increment();
+        payloadBytesReceived.add(payloadBytes);
+    }
+
+    public void onCrcError() {
+        crcErrors.increment();
+    }
+
+    public void onOutOfOrderFrame() {
+        outOfOrderFrames.increment();
+    }
+
+    public void onDuplicateFrame() {
+        duplicateFrames.increment();
+    }
+
+    public void onAckSent() {
+        acksSent.increment();
+    }
+
+    /**
+     * Un ACK en attente est parti dans une trame de données du sens retour (mode duplex).
+     */
+    public void onAckPiggybacked() {
+        acksPiggybacked.increment();
+    }
+
+    public void onRejectSent() {
+        rejectsSent.increment();
+    }
+
+    @Override
+    public long getConnections() {
+        return sessionsOpened.sum();
+    }
+
+    @Override
+    public long getActiveConnections() {
+        return sessionsOpened.sum() - sessionsClosed.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public long getFramesReceived() {
+        return framesReceived.sum();
+    }
+
+    @Override
+    public long getPayloadBytesReceived() {
+        return payloadBytesReceived.sum();
+    }
+
+    @Override
+    public long getCrcErrors() {
+        return crcErrors.sum();
+    }
+
+    @Override
+    public long getOutOfOrderFrames() {
+        return outOfOrderFrames.sum();
+    }
+
+    @Override
+    public long getDuplicateFrames() {
+        return duplicateFrames.sum();
+    }
+
+    @Override
+    public long getAcksSent() {
+        return acksSent.sum();
+    }
+
+    @Override
+    public long getAcksPiggybacked() {
+        return acksPiggybacked.sum();
+    }
+
+    @Override
+    public long getRejectsSent() {
+        return rejectsSent.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "connections=" + getConnections() + " active=" + getActiveConnections()
+                + " bytes=" + getBytesReceived() + " frames=" + getFramesReceived()
+                + " payload=" + getPayloadBytesReceived() + " crcErrors=" + getCrcErrors()
+                + " outOfOrder=" + getOutOfOrderFrames() + " duplicates=" + getDuplicateFrames()
+                 + " acks=" + getAcksSent() + " piggybacked=" + getAcksPiggybacked() + " rejects=" + getRejectsSent();
+    }
+}
@@ -0,0 +1,26 @@
+/**
+ * Vue JMX des statistiques d'un récepteur ({@link ReceiverStats}).
+ */
+public interface ReceiverStatsMBean {
+    long getConnections();
+
+    long getActiveConnections();
+
+    long getBytesReceived();
+
+    long getFramesReceived();
+
+    long getPayloadBytesReceived();
+
+    long getCrcErrors();
+
+    long getOutOfOrderFrames();
+
+    long getDuplicateFrames();
+
+    long getAcksSent();
+
+    long getAcksPiggybacked();
+
+    long getRejectsSent();
+}
@@ -0,0 +1,154 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Tampon circulaire des trames en vol, déjà encodées, pour les retransmettre sans les réencoder.
+ *
+ * La capacité est celle de la fenêtre : la trame d'indice i occupe la case i % capacité, ce qui ne crée
+ * aucune collision tant qu'au plus une fenêtre de trames est en vol. La mémoire utilisée ne dépend donc
+ * que de la fenêtre, pas de la taille du fichier. Le tampon n'est utilisé que par le thread émetteur.
+ *
+ * Chaque case garde son tampon d'octets après libération : avec {@link #reserve}, la trame suivante de la
+ * case est encodée dans le même tampon et l'envoi n'alloue rien en régime établi. Elle peut aussi garder la
+ * trame non encodée ({@link #content}), pour la réencoder sans la décoder quand elle doit changer.
+ */
+public class RetransmissionBuffer {
+    private final ByteBuffer[] frames; // Trame rangée dans chaque case, prête à être lue, null si la case est libre
+    private final ByteBuffer[] pool; // Tampon réutilisable de chaque case, conservé après libération
+    private final FrameBuffer[] contents; // Trame non encodée de chaque case, créée au premier usage et conservée
+    private final long[] indices; // Indice absolu de la trame rangée dans chaque case, -1 si la case est libre
+    private long releasedUpTo = 0; // Toutes les trames d'indice inférieur ont été libérées
+    private int size = 0;
+
+    public RetransmissionBuffer(int capacity) {
+        frames = new ByteBuffer[capacity];
+        pool = new ByteBuffer[capacity];
+        contents = new FrameBuffer[capacity];
+        indices = new long[capacity];
+        Arrays.fill(indices, -1);
+    }
+
+    /**
+     * Range une trame encodée.
+     *
+     * @param index L'indice absolu de la trame
+     * @param encoded Les octets de la trame, tels qu'envoyés
+     */
+    public void put(long index, byte[] encoded) {
+        frames[occupy(index)] = ByteBuffer.wrap(encoded);
+    }
+
+    /**
+     * Réserve la case d'une trame et rend son tampon, vidé, pour y encoder la trame. L'appelant le
+     * prépare à la lecture ({@link ByteBuffer#flip()}) une fois la trame écrite.
+     *
+     * @param index L'indice absolu de la trame
+     * @param capacity La taille maximale de la trame encodée
+     * @return Le tampon de la case, d'au moins {@code capacity} octets
+     */
+    public ByteBuffer reserve(long index, int capacity) {
+        int slot = occupy(index);
+        if (pool[slot] == null || pool[slot].capacity() < capacity) {
+            pool[slot] = ByteBuffer.allocate(capacity); // Tampon sur le tas : ses octets s'écrivent sans copie
+        }
+        frames[slot] = pool[slot].clear();
+        return frames[slot];
+    }
+
+    /**
+     * Rend la trame non encodée de la case d'une trame, réutilisée d'une trame à l'autre de la case : remplie
+     * avant {@link #reserve}, elle reste intacte jusqu'à la libération et peut être réencodée à chaque envoi.
+     *
+     * @param index L'indice absolu de la trame
+     * @return La trame de la case
+     */
+    public FrameBuffer content(long index) {
+        int slot = slot(index);
+        if (contents[slot] == null) {
+            contents[slot] = new FrameBuffer();
+        }
+        return contents[slot];
+    }
+
+    /**
+     * @param index L'indice absolu de la trame
+     * @return La trame encodée, entre la position et la limite du tampon, ou null si elle a été libérée
+     */
+    public ByteBuffer frame(long index) {
+        int slot = slot(index);
+        return indices[slot] == index ? frames[slot] : null;
+    }
+
+    /**
+     * @param index L'indice absolu de la trame
+     * @return Les octets de la trame, ou null si elle a été libérée
+     */
+    public byte[] get(long index) {
+        ByteBuffer frame = frame(index);
+        if (frame == null) {
+            return null;
+        }
+        if (frame.arrayOffset() == 0 && frame.position() == 0 && frame.limit() == frame.array().length) {
+            return frame.array(); // Trame rangée par put
+        }
+        return Arrays.copyOfRange(frame.array(), frame.arrayOffset() + frame.position(), frame.arrayOffset() + frame.limit());
+    }
+
+    /**
+     * Libère les trames couvertes par un ACK cumulatif.
+     *
+     * @param base La base de la fenêtre : toutes les trames d'indice inférieur sont acquittées
+     */
+    public void release(long base) {
+        if (base - releasedUpTo >= frames.length) {
+            // Au-delà d'une capacité, il est plus simple de parcourir toutes les cases
+            for (int slot = 0; slot < frames.length; slot++) {
+                if (indices[slot] >= 0 && indices[slot] < base) {
+                    free(slot);
+                }
+            }
+        } else {
+            for (long i = releasedUpTo; i < base; i++) {
+                int slot = slot(i);
+                if (indices[slot] == i) {
+                    free(slot);
+                }
+            }
+        }
+        releasedUpTo = Math.max(releasedUpTo, base);
+    }
+
+    /**
+     * @return Le nombre de trames conservées
+     */
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return frames.length;
+    }
+
+    // Attribue la case d'une trame, qui doit être libre ou déjà à elle
+    private int occupy(long index) {
+        int slot = slot(index);
+        if (indices[slot] >= releasedUpTo && indices[slot] != index) {
+            throw new IllegalStateException("Frame " + indices[slot] + " is still outstanding");
+        }
+        if (indices[slot] < 0) {
+            size++;
+        }
+        indices[slot] = index;
+        return slot;
+    }
+
+    private void free(int slot) {
+        frames[slot] = null;
+        indices[slot] = -1;
+        size--;
+    }
+
+    private int slot(long index) {
+        return (int) (index % frames.length);
+    }
+}
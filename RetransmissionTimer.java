@@ -0,0 +1,136 @@
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Timer de retransmission d'une connexion, piloté par un ordonnanceur plutôt que par des lectures bloquantes.
+ *
+ * Le timer couvre la plus ancienne trame non acquittée : il est armé au premier envoi, relancé à chaque ACK
+ * qui fait avancer la fenêtre et arrêté quand tout est acquitté. À l'expiration, le RTO est doublé et
+ * l'émetteur est prévenu pour retransmettre. Les ACK servent aussi à mesurer le temps d'aller-retour.
+ *
+ * Relancer le timer ne fait que reculer son échéance : la tâche déjà programmée la reporte quand elle
+ * s'exécute trop tôt. Un ACK ne crée donc pas de nouvelle tâche, au plus une par RTO écoulé.
+ */
+public class RetransmissionTimer {
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "retransmission-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final RttEstimator estimator;
+    private final Runnable onExpire; // Réveille l'émetteur
+    private final AtomicLongArray sendTimes = new AtomicLongArray(SlidingWindow.SEQUENCE_MODULUS); // 0 : pas de mesure
+    private final Runnable check = this::check;
+    private final AtomicBoolean expired = new AtomicBoolean(false);
+    // Protégés par this : relancé par l'émetteur et par le lecteur d'ACKs
+    private ScheduledFuture<?> task; // Tâche programmée, null quand aucune n'est en attente
+    private long deadline; // Échéance (System.nanoTime()) si le timer est armé
+    private boolean armed;
+
+    public RetransmissionTimer(RttEstimator estimator, Runnable onExpire) {
+        this.estimator = estimator;
+        this.onExpire = onExpire;
+    }
+
+    /**
+     * Enregistre l'envoi d'une trame et arme le timer s'il ne tourne pas.
+     *
+     * @param index L'indice absolu de la trame
+     * @param retransmission true si la trame a déjà été envoyée (elle ne sera pas mesurée)
+     */
+    public void onSend(long index, boolean retransmission) {
+        sendTimes.set(SlidingWindow.sequenceNumber(index), retransmission ? 0 : System.nanoTime());
+        synchronized (this) {
+            if (!armed) {
+                restart();
+            }
+        }
+    }
+
+    /**
+     * Traite un ACK qui vient de faire avancer la fenêtre : le timer est relancé, ou arrêté si plus aucune
+     * trame n'est en vol. La fenêtre est examinée sous le verrou de {@link #onSend} : une trame mise en vol
+     * avant l'examen relance le timer, une trame mise en vol après le trouve arrêté et le réarme.
+     *
+     * @param window La fenêtre d'émission, dont seul l'appelant fait avancer la base
+     */
+    public void onAck(SlidingWindow window) {
+        // La dernière trame acquittée donne la mesure la plus récente
+        long sentAt = sendTimes.getAndSet(SlidingWindow.sequenceNumber(window.getBase() - 1), 0);
+        if (sentAt != 0) {
+            estimator.sample(System.nanoTime() - sentAt);
+        }
+        synchronized (this) {
+            if (window.isEmpty()) {
+                stop();
+            } else {
+                restart();
+            }
+        }
+    }
+
+    /**
+     * Relance le timer avec le RTO courant.
+     */
+    public synchronized void restart() {
+        long rto = TimeUnit.MILLISECONDS.toNanos(estimator.getRtoMillis());
+        deadline = System.nanoTime() + rto;
+        armed = true;
+        if (task != null && task.getDelay(TimeUnit.NANOSECONDS) > rto) {
+            task.cancel(false); // Le RTO a diminué : la tâche en attente s'exécuterait trop tard
+            task = null;
+        }
+        if (task == null) {
+            task = SCHEDULER.schedule(check, rto, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Désarme le timer ; la tâche en attente est conservée pour une prochaine relance.
+     */
+    public synchronized void stop() {
+        armed = false;
+    }
+
+    /**
+     * Consomme une expiration du timer.
+     *
+     * @return true si le timer a expiré depuis le dernier appel
+     */
+    public boolean takeExpired() {
+        return expired.getAndSet(false);
+    }
+
+    public boolean isExpired() {
+        return expired.get();
+    }
+
+    public long getRtoMillis() {
+        return estimator.getRtoMillis();
+    }
+
+    // Exécution de la tâche programmée : expiration, ou report si l'échéance a reculé entre-temps
+    private void check() {
+        synchronized (this) {
+            task = null;
+            if (!armed) {
+                return;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                task = SCHEDULER.schedule(check, remaining, TimeUnit.NANOSECONDS);
+                return;
+            }
+            // Désarme avant de prévenir l'émetteur : ses retransmissions doivent relancer le timer
+            armed = false;
+        }
+        estimator.backoff();
+        expired.set(true);
+        onExpire.run();
+    }
+}
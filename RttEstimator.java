@@ -0,0 +1,77 @@
+/**
+ * Estimation du temps d'aller-retour et du délai de retransmission (RTO) d'une connexion, selon la RFC 6298 :
+ * SRTT et RTTVAR lissés à chaque mesure, RTO = SRTT + 4 * RTTVAR, doublé à chaque expiration.
+ */
+public class RttEstimator {
+    private static final double ALPHA = 1.0 / 8; // Poids d'une nouvelle mesure dans SRTT
+    private static final double BETA = 1.0 / 4;  // Poids d'une nouvelle mesure dans RTTVAR
+    private static final int K = 4;
+
+    private final long minRtoMillis;
+    private final long maxRtoMillis;
+    private double srtt = -1;   // Temps d'aller-retour lissé (ms), -1 avant la première mesure
+    private double rttvar;      // Variation du temps d'aller-retour (ms)
+    private long rtoMillis;     // Délai de retransmission courant
+    private int backoffs = 0;   // Expirations consécutives depuis la dernière mesure
+
+    public RttEstimator() {
+        this(1000, 200, 60000);
+    }
+
+    /**
+     * @param initialRtoMillis RTO utilisé avant la première mesure
+     * @param minRtoMillis RTO minimal
+     * @param maxRtoMillis RTO maximal, y compris après les doublements
+     */
+    public RttEstimator(long initialRtoMillis, long minRtoMillis, long maxRtoMillis) {
+        this.minRtoMillis = minRtoMillis;
+        this.maxRtoMillis = maxRtoMillis;
+        this.rtoMillis = clamp(initialRtoMillis);
+    }
+
+    /**
+     * Intègre une mesure. Seules les trames qui n'ont jamais été retransmises doivent être mesurées
+     * (algorithme de Karn), puisqu'on ne saurait pas à quel envoi correspond l'ACK.
+     *
+     * @param rttNanos Le temps entre l'envoi de la trame et son acquittement
+     */
+    public synchronized void sample(long rttNanos) {
+        double rtt = rttNanos / 1_000_000.0;
+        if (srtt < 0) {
+            srtt = rtt;
+            rttvar = rtt / 2;
+        } else {
+            rttvar = (1 - BETA) * rttvar + BETA * Math.abs(srtt - rtt);
+            srtt = (1 - ALPHA) * srtt + ALPHA * rtt;
+        }
+        backoffs = 0;
+        rtoMillis = clamp((long) Math.ceil(srtt + Math.max(1, K * rttvar)));
+    }
+
+    /**
+     * Double le RTO après une expiration du timer. Il reste doublé jusqu'à la prochaine mesure valide.
+     */
+    public synchronized void backoff() {
+        backoffs++;
+        rtoMillis = clamp(rtoMillis * 2);
+    }
+
+    public synchronized long getRtoMillis() {
+        return rtoMillis;
+    }
+
+    /**
+     * @return Le temps d'aller-retour lissé en millisecondes, ou -1 sans mesure
+     */
+    public synchronized double getSrttMillis() {
+        return srtt;
+    }
+
+    public synchronized int getBackoffs() {
+        return backoffs;
+    }
+
+    private long clamp(long rto) {
+        return Math.max(minRtoMillis, Math.min(maxRtoMillis, rto));
+    }
+}
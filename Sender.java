@@ -1,19 +1,117 @@
 import java.io.*;
-import java.net.*;
-import java.util.*;
-import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import javax.management.ObjectName;
 
 public class Sender {
-    private Socket socket; // Socket pour établir la connexion avec le récepteur
+    private static final Log LOG = Log.get(Sender.class);
+
+    private static final byte[] NEWLINE = {'\n'};
+    private static final long MAX_MAPPED_REGION = 64L << 20; // Taille des régions du fichier mappées tour à tour
+    private static final long INBOUND_IDLE_MILLIS = 30000; // Duplex : silence après lequel le sens retour est abandonné
+    private static final AtomicInteger CONNECTIONS = new AtomicInteger(); // Distingue les émetteurs d'une même JVM
+
+    private Transport transport; // Lien avec le récepteur (socket bloquant par défaut, NIO avec -Dtransport=nio)
     private BufferedReader fileReader; // Lecture des données du fichier à envoyer
-    private List<Frame> sentFrames = new ArrayList<>(); // Liste des trames envoyées
-    private final int windowSize = 4; // Taille de la fenêtre pour le protocole Go-Back-N
-    private int base = 0; // Base de la fenêtre (première trame non acquittée)
-    private int nextSeqNum = 0; // Numéro de la prochaine trame à envoyer
-    private Timer timer; // Timer pour gérer les délais d'attente des ACKs (non utilisé ici mais prévu)
+    private RetransmissionBuffer retransmissions; // Trames en vol déjà encodées, une case par place dans la fenêtre
+    private final FrameBuffer frameBuffer = new FrameBuffer(); // Trame binaire en cours d'encodage, réutilisée
+    private final SlidingWindow.Mode mode; // Go-Back-N ou Selective Repeat
+    private final int windowSize; // Taille de fenêtre demandée au récepteur
+    private SlidingWindow window; // Fenêtre d'émission, créée une fois les options négociées
+    private RetransmissionTimer timer; // Timer de retransmission, RTO adapté au temps d'aller-retour mesuré
+    private FrameCodec codec = FrameCodec.TEXT; // Codec négocié avec le récepteur (texte tant que rien n'est négocié)
+    private AckReader ackReader; // Lecture asynchrone des réponses du récepteur
+    private WriteBatcher batcher; // Regroupe les trames d'une salve en une seule écriture
+    private int mtu = Integer.getInteger("mtu", 0); // Taille maximale des données proposée (0 : une trame par ligne)
+    private BinaryFrameCodec.Checksum checksum = BinaryFrameCodec.Checksum.forName(System.getProperty("fcs")); // null : CRC-CCITT
+    private int streamMtu; // Taille maximale acceptée par le récepteur, 0 pour un transfert ligne à ligne
+    private boolean duplex = Boolean.getBoolean("duplex"); // Propose de recevoir aussi un fichier du récepteur
+    private Shard shard; // Tranche du fichier à envoyer (transfert réparti), null pour tout le fichier
+    private boolean shardAccepted; // Le récepteur écrit la tranche à sa position
+    private PayloadSink sink = PayloadSink.DISCARD; // Destination des données du sens retour
+    private ReceiverSession inbound; // Duplex : sens retour, dont l'ACK part dans nos trames I
+    private ReceiverStats inboundStats; // Statistiques du sens retour
+    private final TransferStats stats = new TransferStats(); // Compteurs et délais d'acquittement du transfert
+    private ObjectName metricsName; // Nom JMX des statistiques, une fois connecté
+
+    public Sender() {
+        this(SlidingWindow.Mode.GO_BACK_N, 4);
+    }
+
+    /**
+     * @param mode Le protocole de retransmission
+     * @param windowSize La taille de la fenêtre d'émission
+     */
+    public Sender(SlidingWindow.Mode mode, int windowSize) {
+        if (windowSize < 1 || windowSize > mode.maxWindowSize()) {
+            throw new IllegalArgumentException("Window size must be between 1 and " + mode.maxWindowSize() + " for " + mode);
+        }
+        this.mode = mode;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Propose un transfert en flux d'octets : le fichier est découpé en trames d'au plus {@code mtu} octets
+     * (caractères avec le codec texte), sans tenir compte des lignes. Les longues lignes sont fragmentées et
+     * les courtes regroupées ; le récepteur reconstitue le fichier en mettant les données bout à bout.
+     * À appeler avant {@link #connect}. Par défaut -Dmtu, ou une trame par ligne.
+     *
+     * @param mtu La taille maximale des données d'une trame, 0 pour une trame par ligne
+     */
+    public void setMtu(int mtu) {
+        if (mtu < 0 || mtu > LinkOptions.MAX_MTU) {
+            throw new IllegalArgumentException("MTU must be between 0 and " + LinkOptions.MAX_MTU + " bytes (0 for one frame per line)");
+        }
+        this.mtu = mtu;
+    }
+
+    /**
+     * Propose une somme de contrôle pour le codec binaire, par exemple un CRC-32C pour de grandes trames.
+     * À appeler avant {@link #connect}. Par défaut -Dfcs, ou le CRC-CCITT.
+     *
+     * @param checksum La somme de contrôle, ou null pour le CRC-CCITT sans négociation
+     */
+    public void setChecksum(BinaryFrameCodec.Checksum checksum) {
+        this.checksum = checksum;
+    }
+
+    /**
+     * Propose un lien duplex : le récepteur peut renvoyer un fichier pendant le transfert, et chaque trame
+     * de données porte l'acquittement de l'autre sens. Codec binaire seulement. À appeler avant
+     * {@link #connect}. Par défaut -Dduplex.
+     *
+     * @param duplex true pour proposer un lien duplex
+     */
+    public void setDuplex(boolean duplex) {
+        this.duplex = duplex;
+    }
+
+    /**
+     * N'envoie qu'une tranche du fichier, que le récepteur écrit à sa position dans le fichier du transfert :
+     * les autres tranches partent par d'autres connexions (voir {@link ParallelSender}). Demande une MTU et le
+     * codec binaire. À appeler avant {@link #connect}.
+     *
+     * @param shard La tranche à envoyer, ou null pour tout le fichier
+     */
+    public void setShard(Shard shard) {
+        this.shard = shard;
+    }
 
     /**
-     * Connecte l'émetteur au récepteur via un socket.
+     * @param sink La destination des données renvoyées par le récepteur en duplex, fermée à la fin du sens retour
+     */
+    public void setSink(PayloadSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Connecte l'émetteur au récepteur.
      *
      * @param host Adresse IP ou nom d'hôte du récepteur
      * @param port Port du récepteur
@@ -25,15 +123,44 @@ public class Sender {
 
         while (retries > 0) {
             try {
-                socket = new Socket(host, port); // Tente d'établir une connexion
-                Frame connectFrame = new Frame("C", 0, "", ""); // Trame de demande de connexion
+                transport = openTransport(host, port); // Tente d'établir une connexion
+                ackReader = new AckReader(Thread.currentThread());
+                transport.start(ackReader);
+                batcher = new WriteBatcher(transport);
+                codec = FrameCodec.TEXT; // La trame de connexion est toujours envoyée en texte
+
+                // Propose un codec au récepteur ; un ancien récepteur l'ignore et on reste en texte
+                LinkOptions offer = new LinkOptions()
+                        .set(LinkOptions.CODEC, System.getProperty("codec", "binary"))
+                        .set(LinkOptions.MODE, mode.getName())
+                        .set(LinkOptions.WINDOW, Integer.toString(windowSize));
+                if (mtu > 0) {
+                    offer.set(LinkOptions.MTU, Integer.toString(mtu));
+                }
+                if (checksum != null) {
+                    offer.set(LinkOptions.FCS, checksum.getName());
+                }
+                if (duplex) {
+                    offer.set(LinkOptions.DUPLEX, "1");
+                }
+                if (shard != null) {
+                    offer.set(LinkOptions.SHARD, shard.toString());
+                }
+                Frame connectFrame = new Frame("C", 0, offer.toString(), ""); // Trame de demande de connexion
                 String crc = CRC.calculateFrameCRC(connectFrame); // Calcul du CRC pour la trame
                 connectFrame.setCrc(crc);
                 sendFrame(connectFrame, true); // Envoie la trame de connexion
-                System.out.println("Connected to receiver at " + host + ":" + port);
+                negotiate();
+                LOG.info("Connected to receiver at " + host + ":" + port + " using " + codec.getName() + " codec"
+                        + (codec instanceof BinaryFrameCodec ? " with " + ((BinaryFrameCodec) codec).getChecksum().getName() : "")
+                        + ", " + window.getMode().getName() + " window of " + window.getSize()
+                        + (streamMtu > 0 ? ", MTU " + streamMtu : "") + (inbound != null ? ", duplex" : "")
+                        + (shardAccepted ? ", shard " + shard : ""));
+                metricsName = Metrics.register("Sender", host + ":" + port + " #" + CONNECTIONS.incrementAndGet(), stats);
                 return; // Connexion réussie
             } catch (IOException e) {
-                System.err.println("Failed to connect to receiver. Retrying in " + backoff / 1000 + " seconds...");
+                closeQuietly();
+                LOG.warn("Failed to connect to receiver. Retrying in " + backoff / 1000 + " seconds...");
                 retries--; // Décrémente le nombre de tentatives restantes
                 try {
                     Thread.sleep(backoff); // Attente avant la prochaine tentative
@@ -46,58 +173,399 @@ public class Sender {
         throw new IOException("Failed to connect to receiver after multiple attempts."); // Échec après toutes les tentatives
     }
 
+    // Ferme le lien d'une tentative de connexion échouée
+    private void closeQuietly() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (IOException ignored) {
+                // Le lien est déjà inutilisable
+            }
+        }
+    }
+
     /**
-     * Envoie les trames à partir d'un fichier texte en utilisant le protocole Go-Back-N.
+     * Ouvre le lien vers le récepteur ; redéfinie par les bancs d'essai pour intercaler un canal simulé.
+     *
+     * @param host Adresse IP ou nom d'hôte du récepteur
+     * @param port Port du récepteur
+     * @return Le transport connecté
+     * @throws IOException En cas d'erreur de connexion
+     */
+    protected Transport openTransport(String host, int port) throws IOException {
+        return Transport.connect(host, port);
+    }
+
+    /**
+     * Attend l'ACK de la trame de connexion et adopte le codec accepté par le récepteur.
+     *
+     * @throws IOException Si l'ACK n'arrive pas ou est invalide
+     */
+    private void negotiate() throws IOException {
+        Frame ack = ackReader.awaitConnectionAck(3000);
+        if (ack == null || !"A".equals(ack.getType()) || !codec.validate(ack)) {
+            throw new IOException("No valid ACK for connection frame");
+        }
+
+        LinkOptions options = LinkOptions.parse(ack.getData());
+        FrameCodec accepted = FrameCodec.forName(options.get(LinkOptions.CODEC));
+        codec = accepted != null ? accepted : FrameCodec.TEXT;
+        BinaryFrameCodec.Checksum acceptedChecksum = BinaryFrameCodec.Checksum.forName(options.get(LinkOptions.FCS));
+        if (codec == FrameCodec.BINARY && acceptedChecksum != null) {
+            codec = acceptedChecksum.getCodec();
+        }
+
+        // Un récepteur qui ne renvoie pas de MTU ne sait pas recoller un flux : une trame par ligne
+        streamMtu = 0;
+        if (mtu > 0) {
+            try {
+                streamMtu = Math.max(0, Math.min(Integer.parseInt(options.get(LinkOptions.MTU, "0")), mtu));
+            } catch (NumberFormatException e) {
+                streamMtu = 0;
+            }
+            if (streamMtu == 0) {
+                LOG.warn("Receiver does not support an MTU. Sending one frame per line.");
+            }
+        }
+
+        // Un récepteur qui ne renvoie pas la tranche l'écrirait comme un fichier complet : l'envoi est refusé
+        shardAccepted = shard != null && shard.toString().equals(options.get(LinkOptions.SHARD));
+
+        // Un ancien récepteur ne renvoie ni mode ni fenêtre : il accepte tout en Go-Back-N
+        SlidingWindow.Mode acceptedMode = SlidingWindow.Mode.forName(options.get(LinkOptions.MODE));
+        if (acceptedMode == null) {
+            acceptedMode = SlidingWindow.Mode.GO_BACK_N;
+        }
+        int acceptedWindow;
+        try {
+            acceptedWindow = Integer.parseInt(options.get(LinkOptions.WINDOW, Integer.toString(windowSize)));
+        } catch (NumberFormatException e) {
+            acceptedWindow = windowSize;
+        }
+        acceptedWindow = Math.max(1, Math.min(acceptedWindow, Math.min(windowSize, acceptedMode.maxWindowSize())));
+        window = new SlidingWindow(acceptedMode, acceptedWindow);
+        retransmissions = new RetransmissionBuffer(acceptedWindow);
+
+        inbound = null;
+        if (duplex && "1".equals(options.get(LinkOptions.DUPLEX)) && codec instanceof BinaryFrameCodec) {
+            inboundStats = new ReceiverStats();
+            inbound = ReceiverSession.inbound(transport, inboundStats, sink, codec, acceptedMode, acceptedWindow, streamMtu, ackReader);
+            ackReader.setInbound(inbound);
+        } else if (duplex) {
+            LOG.warn("Receiver does not support a duplex link. Sending only.");
+        }
+
+        // Les réponses suivantes font avancer la fenêtre dès leur arrivée
+        Thread senderThread = Thread.currentThread();
+        timer = new RetransmissionTimer(new RttEstimator(), () -> LockSupport.unpark(senderThread));
+        ackReader.attach(codec, window, timer, stats);
+    }
+
+    /**
+     * Prépare l'émetteur du sens retour d'un lien duplex, du côté du récepteur : les options sont déjà
+     * négociées, et les réponses lui sont transmises par la session qui reçoit les trames du lien.
+     *
+     * @param transport Le lien avec l'expéditeur
+     * @param codec Le codec négocié
+     * @param mtu La MTU négociée, 0 pour une trame par ligne
+     * @param thread Le thread qui enverra les trames, réveillé à chaque réponse
+     * @param inbound La session du lien, dont l'ACK part dans les trames envoyées
+     */
+    void attach(Transport transport, FrameCodec codec, int mtu, Thread thread, ReceiverSession inbound) {
+        this.transport = transport;
+        this.codec = codec;
+        this.streamMtu = mtu;
+        this.inbound = inbound;
+        batcher = new WriteBatcher(transport);
+        window = new SlidingWindow(mode, windowSize);
+        retransmissions = new RetransmissionBuffer(windowSize);
+        timer = new RetransmissionTimer(new RttEstimator(), () -> LockSupport.unpark(thread));
+        ackReader = new AckReader(thread);
+        ackReader.attach(codec, window, timer, stats);
+    }
+
+    AckReader getAckReader() {
+        return ackReader;
+    }
+
+    /**
+     * Envoie un fichier avec la fenêtre glissante négociée (Go-Back-N ou Selective Repeat) : une trame par
+     * ligne, ou des trames d'au plus la MTU négociée. En flux avec le codec binaire, le fichier est mappé en
+     * mémoire et peut contenir des octets quelconques ; seule la tranche demandée est envoyée s'il y en a une.
      *
      * @param fileName Nom du fichier à lire
-     * @throws IOException En cas d'erreur d'entrée/sortie
+     * @throws IOException En cas d'erreur d'entrée/sortie, ou si le récepteur n'a pas accepté la tranche
      */
     public void sendFrames(String fileName) throws IOException {
-        fileReader = new BufferedReader(new FileReader(fileName));
-        String line = fileReader.readLine();
+        if (shard != null && !shardAccepted) {
+            throw new IOException("Receiver cannot reassemble shard " + shard);
+        }
+        if (streamMtu > 0 && codec instanceof BinaryFrameCodec) {
+            try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+                long start = shard != null ? shard.getOffset() : 0;
+                long end = shard != null ? start + shard.getLength() : channel.size();
+                if (end > channel.size()) {
+                    throw new IOException("Shard " + shard + " is beyond the end of " + fileName);
+                }
+                send(new MappedSource(channel, streamMtu, start, end));
+            }
+            return;
+        }
+        fileReader = new BufferedReader(new FileReader(fileName, StandardCharsets.UTF_8));
+        try {
+            send(streamMtu > 0 ? new TextChunkSource(fileReader, streamMtu) : new LineSource(fileReader));
+        } finally {
+            fileReader.close();
+        }
+    }
+
+    /**
+     * Source des trames de données d'un transfert, encodées au fur et à mesure de l'envoi.
+     */
+    private interface FrameSource {
+        boolean hasNext();
+
+        /**
+         * @param index L'indice absolu de la trame, qui donne son numéro de séquence
+         * @return La trame suivante, encodée avec le codec négocié et rangée pour les retransmissions
+         * @throws IOException En cas d'erreur de lecture
+         */
+        ByteBuffer next(long index) throws IOException;
+    }
+
+    /**
+     * Une trame par ligne d'un fichier texte.
+     */
+    private final class LineSource implements FrameSource {
+        private final BufferedReader reader;
+        private String line; // Prochaine ligne à envoyer, null en fin de fichier
+
+        LineSource(BufferedReader reader) throws IOException {
+            this.reader = reader;
+            this.line = reader.readLine();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return line != null;
+        }
+
+        @Override
+        public ByteBuffer next(long index) throws IOException {
+            int num = SlidingWindow.sequenceNumber(index);
+            if (codec instanceof BinaryFrameCodec) { // Données brutes : le CRC texte serait inutile
+                byte[] data = line.getBytes(StandardCharsets.UTF_8);
+                String sent = line;
+                line = reader.readLine();
+                LOG.debug(() -> "Sent: " + sent);
+                startData(index).put(data, 0, data.length);
+                return seal(index);
+            }
+            Frame frame = new Frame("I", num, line, ""); // Crée une trame avec les données
+            String crc = CRC.calculateFrameCRC(frame); // Calcul du CRC
+            frame.setCrc(crc);
+            line = reader.readLine(); // Lit la ligne suivante
+            LOG.debug(() -> "Sent: " + frame.getData());
+            LOG.trace(() -> "CRC: " + frame.getCrc());
+            return keep(index, codec.encode(frame));
+        }
+    }
+
+    /**
+     * Morceaux d'au plus {@code mtu} caractères d'un fichier texte, fins de ligne comprises (codec texte).
+     */
+    private final class TextChunkSource implements FrameSource {
+        private final BufferedReader reader;
+        private final char[] chunk;
+        private int length; // Caractères du prochain morceau, 0 en fin de fichier
+
+        TextChunkSource(BufferedReader reader, int mtu) throws IOException {
+            this.reader = reader;
+            this.chunk = new char[mtu];
+            fill();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return length > 0;
+        }
+
+        @Override
+        public ByteBuffer next(long index) throws IOException {
+            Frame frame = new Frame("I", SlidingWindow.sequenceNumber(index), new String(chunk, 0, length), "");
+            frame.setCrc(CRC.calculateFrameCRC(frame));
+            fill();
+            int sent = frame.getPayloadLength();
+            LOG.debug(() -> "Sent: " + sent + " characters");
+            return keep(index, codec.encode(frame));
+        }
+
+        // Remplit le morceau autant que possible : read() peut rendre moins que demandé
+        private void fill() throws IOException {
+            length = 0;
+            int n;
+            while (length < chunk.length && (n = reader.read(chunk, length, chunk.length - length)) != -1) {
+                length += n;
+            }
+        }
+    }
+
+    /**
+     * Morceaux de taille fixe d'une plage d'un fichier mappée en mémoire par régions successives ; chaque
+     * morceau est encodé directement depuis la région mappée.
+     */
+    private final class MappedSource implements FrameSource {
+        private final FileChannel channel;
+        private final int chunkSize;
+        private final long size; // Fin de la plage envoyée
+        private final long regionSize; // Multiple de la taille d'un morceau : aucun morceau n'est à cheval
+        private MappedByteBuffer region;
+        private long regionStart;
+        private long position; // Position du prochain morceau dans le fichier
+
+        MappedSource(FileChannel channel, int chunkSize, long start, long end) {
+            this.channel = channel;
+            this.chunkSize = chunkSize;
+            this.size = end;
+            this.position = start;
+            this.regionSize = Math.max(1, MAX_MAPPED_REGION / chunkSize) * chunkSize;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < size;
+        }
+
+        @Override
+        public ByteBuffer next(long index) throws IOException {
+            if (region == null || position >= regionStart + region.capacity()) {
+                regionStart = position;
+                region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(regionSize, size - position));
+            }
+            long start = position;
+            int length = (int) Math.min(chunkSize, size - position);
+            position += length;
+            LOG.debug(() -> "Sent: " + length + " bytes at offset " + start);
+            startData(index).put(region, (int) (start - regionStart), length);
+            return seal(index);
+        }
+    }
+
+    /**
+     * Termine l'envoi sans données : seule la trame de fin est envoyée (sens retour vide d'un lien duplex).
+     *
+     * @throws IOException En cas d'erreur d'envoi
+     */
+    void sendEnd() throws IOException {
+        send(new FrameSource() {
+            @Override
+            public boolean hasNext() {
+                return false;
+            }
+
+            @Override
+            public ByteBuffer next(long index) {
+                throw new IllegalStateException("No data to send");
+            }
+        });
+    }
+
+    // Duplex : numéro de la prochaine trame attendue dans l'autre sens, à placer en tête des données (-1 sinon)
+    private int piggyback() {
+        return inbound != null ? inbound.piggybackAck() : -1;
+    }
+
+    // Trame binaire d'un indice : en duplex, celle de sa case de retransmission, gardée pour changer son ACK
+    private FrameBuffer frameBuffer(long index) {
+        return inbound != null ? retransmissions.content(index) : frameBuffer;
+    }
+
+    // Commence une trame I binaire, précédée en duplex de l'ACK du sens retour
+    private FrameBuffer startData(long index) {
+        FrameBuffer frame = frameBuffer(index).reset('I', SlidingWindow.sequenceNumber(index));
+        int ack = piggyback();
+        if (ack >= 0) {
+            frame.put((byte) ack);
+        }
+        return frame;
+    }
+
+    // Codec binaire : encode la trame en cours dans le tampon de sa case de retransmission, sans allocation
+    private ByteBuffer seal(long index) {
+        BinaryFrameCodec binary = (BinaryFrameCodec) codec;
+        FrameBuffer frame = frameBuffer(index);
+        ByteBuffer out = retransmissions.reserve(index, binary.maxEncodedLength(frame.dataLength()));
+        binary.encode(frame, out);
+        return out.flip();
+    }
+
+    // Codec texte : range la trame encodée telle quelle
+    private ByteBuffer keep(long index, byte[] encoded) {
+        retransmissions.put(index, encoded);
+        return retransmissions.frame(index);
+    }
+
+    // Duplex : remplace l'ACK porté par la trame gardée dans sa case par l'ACK courant, qui a pu avancer
+    // depuis, et la réencode dans la même case, sans décodage ni allocation
+    private ByteBuffer refreshAck(long index) {
+        retransmissions.content(index).set(0, (byte) piggyback());
+        return seal(index);
+    }
+
+    // Boucle d'envoi commune : fenêtre glissante, retransmissions et trame de fin
+    private void send(FrameSource source) throws IOException {
+        while (source.hasNext() || !window.isEmpty()) { // Continue tant qu'il y a des données ou des trames non acquittées
+            retransmissions.release(window.getBase()); // Libère les trames couvertes par les ACKs reçus
 
-        while ((line) != null || base < nextSeqNum) { // Continue tant qu'il y a des données ou des trames non acquittées
             // Envoie les trames tant que la fenêtre n'est pas pleine
-            while (nextSeqNum < base + windowSize && line != null) {
-                String data = line;
-                Frame frame = new Frame("I", nextSeqNum, data, ""); // Crée une trame avec les données
-                String crc = CRC.calculateFrameCRC(frame); // Calcul du CRC
-                frame.setCrc(crc);
-                line = fileReader.readLine(); // Lit la ligne suivante
-                if (line == null) {
-                    sendFrame(frame, true); // Envoie la dernière trame
-                } else {
-                    sendFrame(frame, false); // Envoie une trame normale
-                }
-                nextSeqNum++; // Incrémente le numéro de trame
+            while (window.canSend() && source.hasNext()) {
+                long index = window.next();
+                retransmissions.release(window.getBase()); // La base a pu avancer depuis le début de la salve
+                ByteBuffer encoded = source.next(index); // Encodée une seule fois, conservée pour les retransmissions
+                // Envoi enregistré avant l'écriture : sur un lien rapide, l'ACK peut arriver avant le retour de flush()
+                timer.onSend(index, false);
+                stats.onSend(index, false);
+                stats.onWindowOccupancy(window.getNextSeq() - window.getBase());
+                writeFrame(encoded, !source.hasNext() || !window.canSend()); // La dernière trame de la salve termine la ligne
             }
 
-            int biggestFrame = -1; // Indique la plus grande trame acquittée
-            for (int i = nextSeqNum; i > base; i--) {
-                if (waitForAck(i)) { // Attente d'un ACK
-                    biggestFrame = i;
-                    break;
+            // Réenvoie les trames rejetées signalées par le lecteur d'ACKs
+            Long rejected;
+            while ((rejected = ackReader.pollRejected()) != null) {
+                if (window.isOutstanding(rejected)) {
+                    resendFrames(rejected);
+                    timer.restart(); // La trame renvoyée dispose d'un RTO complet
                 }
             }
 
-            if (biggestFrame == -1) { // Timeout pour toutes les trames
-                System.out.println("Timeout! Resending frames starting from " + base);
-                resendFrames(base); // Réenvoie les trames à partir de la base
-            } else if (biggestFrame == nextSeqNum) { // Toutes les trames dans la fenêtre sont acquittées
-                base = biggestFrame;
-            } else { // Réenvoie les trames partiellement acquittées
-                while (!waitForAck(nextSeqNum)) {
-                    resendFrames(biggestFrame + 1);
-                }
+            // Base lue avant les tests : un ACK arrivé entre les tests et l'attente la change, et l'attente rend
+            // aussitôt la main au lieu d'attendre l'ACK suivant ou le timer avec de la place dans la fenêtre
+            long base = window.getBase();
+            if (timer.takeExpired() && !window.isEmpty()) { // Timeout : retransmission à partir de la base
+                LOG.warn("Timeout! Resending frames starting from " + SlidingWindow.sequenceNumber(window.getBase())
+                        + " (RTO now " + timer.getRtoMillis() + " ms)");
+                stats.onTimeout();
+                resendFrames(window.getBase());
+            } else if ((!source.hasNext() || !window.canSend()) && !window.isEmpty()) {
+                // Fenêtre pleine ou fichier terminé : attend un ACK, un REJ ou l'expiration du timer
+                ackReader.awaitProgress(base);
             }
         }
 
         // Envoie la trame de fin de communication
-        Frame endFrame = new Frame("F", nextSeqNum, null, "");
+        Frame endFrame = new Frame("F", SlidingWindow.sequenceNumber(window.getNextSeq()), null, "");
         String endCrc = CRC.calculateFrameCRC(endFrame);
         endFrame.setCrc(endCrc);
-        sendFrame(endFrame, false);
-        System.out.println("Sent End of Communication (F) frame");
+        timer.stop();
+        try {
+            sendFrame(endFrame, false);
+        } catch (IOException e) {
+            if (transport.isOpen()) {
+                throw e;
+            }
+            // Toutes les trames sont acquittées : le récepteur a reçu F et fermé avant la fin de l'écriture
+        }
+        LOG.info("Sent End of Communication (F) frame");
     }
 
     /**
@@ -107,92 +575,130 @@ public class Sender {
      * @throws IOException En cas d'erreur d'envoi
      */
     public void sendPFrame(String data) throws IOException {
+        int nextSeqNum = SlidingWindow.sequenceNumber(window.getNextSeq());
         Frame pFrame = new Frame("P", nextSeqNum, data, "");
         String crc = CRC.calculateFrameCRC(pFrame);
         pFrame.setCrc(crc);
         String stuffedData = BitStuffing.applyBitStuffing(pFrame.toByteString());
         sendFrame(new Frame("P", nextSeqNum, stuffedData, crc), false);
-        System.out.println("Sent P frame with data: " + data);
+        LOG.debug(() -> "Sent P frame with data: " + data);
     }
 
     /**
      * Envoie une trame au récepteur.
      *
      * @param frame  La trame à envoyer
-     * @param isLast Indique si c'est la dernière trame d'un lot
+     * @param isLast Indique si c'est la dernière trame d'une salve
      * @throws IOException En cas d'erreur d'envoi
      */
 
-    //private int frame2drop = 2;
     protected void sendFrame(Frame frame, boolean isLast) throws IOException {
-        /*if (frame.getNum() == frame2drop) {
-            System.out.println("Dropping frame " + frame2drop);
-            return;
-        }*/
+        writeFrame(codec.encode(frame), frame.getType().equals("F") || isLast);
+
+        LOG.debug(() -> "Sent: " + frame.getData()); // Log de la trame envoyée
+
+        LOG.trace(() -> "CRC: " + frame.getCrc());
+    }
 
-        OutputStream out = socket.getOutputStream();
-        String outputFrame = frame.toByteString();
+    private void writeFrame(byte[] encoded, boolean endOfBurst) throws IOException {
+        writeFrame(encoded, 0, encoded.length, endOfBurst);
+    }
+
+    // Trame rangée dans un tampon de retransmission : écrite sans copie, sa position n'est pas modifiée
+    private void writeFrame(ByteBuffer encoded, boolean endOfBurst) throws IOException {
+        writeFrame(encoded.array(), encoded.arrayOffset() + encoded.position(), encoded.remaining(), endOfBurst);
+    }
 
-        if (frame.getType().equals("F") || isLast || nextSeqNum + 1 >= base + windowSize) {
-            outputFrame += "\n"; // Ajoute une fin de ligne si nécessaire
+    /**
+     * Écrit une trame déjà encodée sur la connexion.
+     *
+     * @param encoded Le tampon qui contient les octets de la trame
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @param endOfBurst Indique si la trame termine une salve (fin de ligne en mode texte, envoi du lot)
+     * @throws IOException En cas d'erreur d'envoi
+     */
+    private void writeFrame(byte[] encoded, int off, int len, boolean endOfBurst) throws IOException {
+        batcher.write(encoded, off, len);
+        stats.onBytesSent(len);
+        if (endOfBurst) {
+            if (codec.isLineDelimited()) {
+                batcher.write(NEWLINE); // Ajoute une fin de ligne si nécessaire
+            }
+            batcher.flush(); // La salve part en une seule écriture
         }
-        out.write(outputFrame.getBytes());
-        out.flush();
+    }
 
-        System.out.println("Sent: " + frame.getData()); // Log de la trame envoyée
-        sentFrames.add(frame); // Ajoute la trame à la liste des trames envoyées
+    /**
+     * @return Les statistiques du transfert en cours ou terminé
+     */
+    public TransferStats getStats() {
+        return stats;
+    }
 
-        System.out.println("CRC: " + frame.getCrc());
+    /**
+     * @return Les statistiques du sens retour d'un lien duplex, ou null sans sens retour
+     */
+    public ReceiverStats getReplyStats() {
+        return inbound != null ? inboundStats : null;
     }
 
     /**
-     * Attend un ACK pour une trame avec un délai d'attente (timeout).
+     * Ferme la connexion : le sens émission est fermé après les dernières trames, puis l'émetteur laisse au
+     * récepteur le temps de lire la fin de flux et de fermer à son tour. En duplex, l'émetteur attend d'abord
+     * la fin du sens retour, qu'il doit acquitter jusqu'au bout.
      *
-     * @param frameNum Numéro de la trame à attendre
-     * @return true si l'ACK est reçu, false sinon
+     * @throws IOException En cas d'erreur de fermeture
      */
-    private boolean waitForAck(int frameNum) {
+    public void close() throws IOException {
+        if (transport == null) {
+            return;
+        }
         try {
-            socket.setSoTimeout(3000); // Timeout de 3 secondes
-            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            String ack = reader.readLine();
-            Frame ackFrame = Frame.identifyFrame(ack, 1); // Décodage de la trame ACK
-
-            if (ackFrame != null) {
-                String unstuffedData = BitStuffing.removeBitStuffing(ackFrame.getData()); // Retire le bit stuffing
-                Frame unstuffedFrame = new Frame(ackFrame.getType(), ackFrame.getNum(), unstuffedData, ackFrame.getCrc());
-                frameNum--;
-                if (CRC.validateCRC(unstuffedFrame)) { // Vérifie le CRC
-                    if ("A".equals(unstuffedFrame.getType())) {
-                        System.out.println("Received ACK for frame " + frameNum);
-                        return true;
-                    } else if ("R".equals(unstuffedFrame.getType())) {
-                        System.err.println("Received REJ for frame " + frameNum);
-                    } else {
-                        System.err.println("Received unexpected frame type: " + unstuffedFrame.getType());
-                    }
-                } else {
-                    System.err.println("CRC mismatch for frame " + frameNum);
-                }
+            if (inbound != null && !ackReader.awaitInbound(INBOUND_IDLE_MILLIS)) {
+                LOG.warn("Reply from receiver did not end with an F frame.");
             }
-        } catch (SocketTimeoutException e) {
-            System.err.println("Timeout waiting for ACK for frame " + frameNum);
+            transport.shutdownOutput();
+            ackReader.awaitClosed(2000);
         } catch (IOException e) {
-            System.err.println("Error receiving ACK: " + e.getMessage());
+            if (transport.isOpen()) {
+                throw e;
+            }
+            // Le récepteur a déjà fermé la connexion après la trame F
+        } finally {
+            transport.close();
+            Metrics.unregister(metricsName);
+            metricsName = null;
+            LOG.info("Transfer statistics: " + stats);
+            if (inbound != null) {
+                inbound.awaitSinkClosed(); // Sur un transport NIO, le puits du sens retour se ferme hors de la boucle
+                LOG.info("Reply statistics: " + inboundStats);
+            } else {
+                sink.close(); // Pas de sens retour : le puits n'a rien reçu
+            }
         }
-        return false; // Retourne false si aucun ACK valide n'est reçu
     }
 
     /**
-     * Réenvoie les trames à partir d'un numéro de trame donné.
+     * Réenvoie les trames à partir d'une trame donnée : toute la fin de la fenêtre en Go-Back-N,
+     * cette seule trame en Selective Repeat.
      *
-     * @param frameNbr Numéro de la première trame à réenvoyer
+     * @param index Indice absolu de la première trame à réenvoyer
      * @throws IOException En cas d'erreur d'envoi
      */
-    private void resendFrames(int frameNbr) throws IOException {
-        for (int i = frameNbr; i < nextSeqNum; i++) {
-            Frame frame = sentFrames.get(i);
-            sendFrame(frame, i == nextSeqNum - 1); // Réenvoie la trame
+    private void resendFrames(long index) throws IOException {
+        long end = window.getMode() == SlidingWindow.Mode.GO_BACK_N ? window.getNextSeq() : Math.min(index + 1, window.getNextSeq());
+        for (long i = Math.max(index, window.getBase()); i < end; i++) {
+            ByteBuffer encoded = retransmissions.frame(i);
+            if (inbound != null) {
+                encoded = refreshAck(i);
+            }
+            // Marquée avant l'écriture : un ACK qui la suit de près ne doit pas être mesuré depuis le premier envoi (Karn)
+            timer.onSend(i, true);
+            stats.onSend(i, true);
+            writeFrame(encoded, i == end - 1); // Réenvoie la trame telle qu'elle a été encodée
+            int resent = SlidingWindow.sequenceNumber(i);
+            LOG.debug(() -> "Resent frame " + resent);
         }
     }
 
@@ -200,8 +706,16 @@ public class Sender {
      * Point d'entrée du programme. Initialise le Sender et commence l'envoi des trames.
      */
     public static void main(String[] args) {
-        if (args.length != 4) {
-            System.out.println("Usage: java Sender <Host> <Port> <Filename> <GoBackN>");
+        if (args.length != 4 && args.length != 5) {
+            System.out.println("Usage: java Sender <Host> <Port> <Filename> <GoBackN> [WindowSize]");
+            System.out.println("  <GoBackN>: 0 for Go-Back-N, 1 for Selective Repeat");
+            System.out.println("  -Dmtu=<bytes>: pack the file into frames of at most <bytes> of data instead of one per line");
+            System.out.println("  -Dfcs=crc16|crc32|crc32c: frame check sequence of the binary codec (crc32c for large frames)");
+            System.out.println("  -Dduplex=true: let the receiver send a file back, acknowledgements riding on data frames");
+            System.out.println("  -Doutput=<file>: write the file sent back by the receiver to <file>");
+            System.out.println("  -Dack.delay=<ms>: wait up to <ms> to coalesce acknowledgements of the reply (default 5)");
+            System.out.println("  -Dstreams=<n>: split the file over <n> parallel connections (binary codec, MTU "
+                    + ParallelSender.DEFAULT_MTU + " unless -Dmtu is set)");
             return;
         }
 
@@ -209,13 +723,42 @@ public class Sender {
         int port = Integer.parseInt(args[1]);
         String fileName = args[2];
         int goBackN = Integer.parseInt(args[3]);
+        int windowSize = args.length == 5 ? Integer.parseInt(args[4]) : 4;
+        if (goBackN != 0 && goBackN != 1) {
+            System.out.println("<GoBackN> must be 0 (Go-Back-N) or 1 (Selective Repeat)");
+            return;
+        }
+        SlidingWindow.Mode mode = goBackN == 0 ? SlidingWindow.Mode.GO_BACK_N : SlidingWindow.Mode.SELECTIVE_REPEAT;
+
+        String fcs = System.getProperty("fcs");
+        if (fcs != null && BinaryFrameCodec.Checksum.forName(fcs) == null) {
+            System.out.println("-Dfcs must be crc16, crc32 or crc32c");
+            return;
+        }
+        int streams = Integer.getInteger("streams", 1);
+        if (streams < 1) {
+            System.out.println("-Dstreams must be at least 1");
+            return;
+        }
 
         try {
-            Sender sender = new Sender();
+            if (streams > 1) {
+                new ParallelSender(mode, windowSize, streams).send(host, port, fileName);
+                return;
+            }
+            Sender sender = new Sender(mode, windowSize);
+            sender.setMtu(Integer.getInteger("mtu", 0));
+            String output = System.getProperty("output");
+            if (output != null) {
+                sender.setSink(new FileSink(Paths.get(output)));
+            }
             sender.connect(host, port);
             sender.sendFrames(fileName);
+            sender.close();
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.error("Transfer failed", e);
         }
     }
 }
@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tranche d'un fichier envoyé sur plusieurs connexions en parallèle : chaque connexion transporte les octets
+ * [offset, offset + length) d'un transfert de {@code total} octets, et le récepteur les écrit à leur position.
+ * Les tranches d'un même transfert partagent son identifiant.
+ *
+ * Annoncée par l'option "shard" de la trame de connexion, sous la forme "transfert:position:taille:total".
+ */
+public final class Shard {
+    private final String transfer;
+    private final long offset;
+    private final long length;
+    private final long total;
+
+    /**
+     * @param transfer L'identifiant du transfert, sans ':' ni ';'
+     * @param offset La position de la tranche dans le fichier
+     * @param length La taille de la tranche
+     * @param total La taille du fichier
+     */
+    public Shard(String transfer, long offset, long length, long total) {
+        if (transfer.isEmpty() || transfer.indexOf(':') >= 0 || transfer.indexOf(';') >= 0 || transfer.indexOf('=') >= 0) {
+            throw new IllegalArgumentException("Invalid transfer identifier: " + transfer);
+        }
+        if (offset < 0 || length < 0 || offset > total || length > total - offset) { // offset + length peut déborder
+            throw new IllegalArgumentException("Invalid shard " + offset + "+" + length + " of " + total + " bytes");
+        }
+        this.transfer = transfer;
+        this.offset = offset;
+        this.length = length;
+        this.total = total;
+    }
+
+    /**
+     * Découpe un fichier en tranches contiguës de tailles voisines, alignées sur la MTU pour que seule la
+     * dernière trame de la dernière tranche soit incomplète.
+     *
+     * @param transfer L'identifiant du transfert
+     * @param total La taille du fichier
+     * @param count Le nombre de tranches voulu
+     * @param mtu La taille des données d'une trame
+     * @return Les tranches dans l'ordre du fichier : au moins une, moins que count si le fichier est petit
+     */
+    public static List<Shard> split(String transfer, long total, int count, int mtu) {
+        if (count < 1 || mtu < 1) {
+            throw new IllegalArgumentException("Cannot split into " + count + " shards of " + mtu + "-byte frames");
+        }
+        long frames = (total + mtu - 1) / mtu;
+        long framesPerShard = Math.max(1, (frames + count - 1) / count);
+        List<Shard> shards = new ArrayList<>();
+        long offset = 0;
+        do {
+            long length = Math.min(framesPerShard * mtu, total - offset);
+            shards.add(new Shard(transfer, offset, length, total));
+            offset += length;
+        } while (offset < total);
+        return shards;
+    }
+
+    /**
+     * @param value La valeur de l'option "shard"
+     * @return La tranche, ou null si la valeur est absente ou mal formée
+     */
+    public static Shard parse(String value) {
+        if (value == null) {
+            return null;
+        }
+        String[] fields = value.split(":");
+        if (fields.length != 4) {
+            return null;
+        }
+        try {
+            return new Shard(fields[0], Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+        } catch (IllegalArgumentException e) { // NumberFormatException comprise
+            return null;
+        }
+    }
+
+    public String getTransfer() {
+        return transfer;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return transfer + ":" + offset + ":" + length + ":" + total;
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fenêtre d'émission pour Go-Back-N et Selective Repeat.
+ *
+ * Les trames sont repérées par un indice absolu (0, 1, 2, ...) qui ne déborde pas ; le numéro de séquence
+ * transmis dans la trame est cet indice modulo {@link #SEQUENCE_MODULUS}, puisque le champ num fait 8 bits.
+ * Les ACK sont cumulatifs : "A n" signifie que le récepteur attend la trame de numéro n. Le mode ne change
+ * que la retransmission : toute la fenêtre à partir de la trame perdue (Go-Back-N) ou cette seule trame
+ * (Selective Repeat, le récepteur conservant les trames arrivées dans le désordre).
+ *
+ * La fenêtre est partagée sans verrou entre deux threads : l'émetteur réserve les indices ({@link #next()})
+ * et le lecteur d'ACKs fait avancer la base ({@link #acknowledge(int)}).
+ */
+public class SlidingWindow {
+    public static final int SEQUENCE_MODULUS = 256; // Champ num sur 8 bits
+
+    public enum Mode {
+        GO_BACK_N("gbn"),
+        SELECTIVE_REPEAT("sr");
+
+        private final String name;
+
+        Mode(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return La plus grande fenêtre qui garde les numéros de séquence non ambigus
+         */
+        public int maxWindowSize() {
+            return this == GO_BACK_N ? SEQUENCE_MODULUS - 1 : SEQUENCE_MODULUS / 2;
+        }
+
+        public static Mode forName(String name) {
+            for (Mode mode : values()) {
+                if (mode.name.equals(name)) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Mode mode;
+    private final int size;
+    private final AtomicLong base = new AtomicLong(); // Indice de la plus ancienne trame non acquittée
+    private volatile long nextSeq; // Indice de la prochaine trame à envoyer (écrit par l'émetteur seul)
+
+    public SlidingWindow(Mode mode, int size) {
+        if (size < 1 || size > mode.maxWindowSize()) {
+            throw new IllegalArgumentException("Window size must be between 1 and " + mode.maxWindowSize() + " for " + mode);
+        }
+        this.mode = mode;
+        this.size = size;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getBase() {
+        return base.get();
+    }
+
+    public long getNextSeq() {
+        return nextSeq;
+    }
+
+    /**
+     * @return Le nombre de trames envoyées et pas encore acquittées
+     */
+    public int outstanding() {
+        return (int) (nextSeq - base.get());
+    }
+
+    public boolean isEmpty() {
+        return base.get() == nextSeq;
+    }
+
+    public boolean canSend() {
+        return nextSeq - base.get() < size;
+    }
+
+    /**
+     * Réserve l'indice de la prochaine trame.
+     *
+     * @return L'indice absolu de la trame
+     */
+    public long next() {
+        if (!canSend()) {
+            throw new IllegalStateException("Window is full");
+        }
+        long index = nextSeq;
+        nextSeq = index + 1;
+        return index;
+    }
+
+    public static int sequenceNumber(long index) {
+        return (int) (index % SEQUENCE_MODULUS);
+    }
+
+    /**
+     * Retrouve l'indice absolu d'un numéro de séquence reçu, parmi les trames en vol et la suivante.
+     *
+     * @param seq Le numéro de séquence (modulo 256)
+     * @return L'indice absolu, ou -1 si le numéro ne correspond à rien dans la fenêtre
+     */
+    public long indexOf(int seq) {
+        return indexOf(seq, base.get());
+    }
+
+    private long indexOf(int seq, long from) {
+        long index = from + Math.floorMod(seq - sequenceNumber(from), SEQUENCE_MODULUS);
+        return index <= nextSeq ? index : -1;
+    }
+
+    /**
+     * Traite un ACK cumulatif.
+     *
+     * @param seq Le numéro de la prochaine trame attendue par le récepteur
+     * @return Le nombre de trames nouvellement acquittées
+     */
+    public int acknowledge(int seq) {
+        while (true) {
+            long current = base.get();
+            long index = indexOf(seq, current);
+            if (index <= current) {
+                return 0; // ACK dupliqué ou hors fenêtre
+            }
+            if (base.compareAndSet(current, index)) {
+                return (int) (index - current);
+            }
+        }
+    }
+
+    /**
+     * @return true si la trame d'indice donné est encore en vol
+     */
+    public boolean isOutstanding(long index) {
+        return index >= base.get() && index < nextSeq;
+    }
+}
@@ -0,0 +1,96 @@
+import java.io.*;
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * Transport bloquant sur un {@link Socket} : un thread lit le flux et passe les octets au listener.
+ */
+public class SocketTransport implements Transport {
+    private static final int BUFFER_SIZE = 65536;
+
+    private final Socket socket;
+    private final OutputStream out; // Les écritures s'accumulent ici jusqu'au flush
+    private volatile boolean closed = false;
+
+    public SocketTransport(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true); // Les écritures sont déjà regroupées : pas d'attente de Nagle
+        this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(byte[] data, int off, int len) throws IOException {
+        synchronized (out) {
+            out.write(data, off, len);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (out) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Lit le flux sur un thread démon dédié.
+     */
+    @Override
+    public void start(TransportListener listener) {
+        Thread thread = new Thread(() -> readLoop(listener), "socket-reader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Lit le flux sur le thread appelant jusqu'à la fermeture du lien.
+     *
+     * @param listener Le destinataire des octets reçus
+     */
+    public void readLoop(TransportListener listener) {
+        IOException cause = null;
+        try {
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                listener.onData(buffer, 0, n);
+            }
+        } catch (SocketException e) {
+            if (!closed) {
+                cause = e;
+            }
+        } catch (IOException e) {
+            cause = e;
+        } finally {
+            close();
+            listener.onClosed(cause);
+        }
+    }
+
+    @Override
+    public void shutdownOutput() throws IOException {
+        flush();
+        socket.shutdownOutput();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed && !socket.isClosed();
+    }
+
+    @Override
+    public String getRemoteAddress() {
+        return String.valueOf(socket.getInetAddress());
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Le socket est déjà inutilisable
+        }
+    }
+}
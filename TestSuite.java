@@ -1,3 +1,30 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
 public class TestSuite {
     public static void main(String[] args) {
         System.out.println("Testing BitStuffing...");
@@ -34,6 +61,64 @@ public class TestSuite {
         testAcknowledgementFrame();
         System.out.println("Testing Send Frame and Wait...");
         testSendFrameAndWait();
+        System.out.println("Testing CRC engines...");
+        testCrcEnginesAgree();
+        System.out.println("Testing binary codec...");
+        testBinaryCodecRoundTrip();
+        System.out.println("Testing link options...");
+        testLinkOptions();
+        System.out.println("Testing packed bit stuffing...");
+        testPackedBitStuffing();
+        System.out.println("Testing packed unstuffing with flags and aborts...");
+        testPackedUnstuffingEvents();
+        System.out.println("Testing streaming deframer with split reads...");
+        testDeframerSplitReads();
+        System.out.println("Testing sliding window sequence wrap-around...");
+        testSlidingWindowWrapAround();
+        System.out.println("Testing RTT estimation and backoff...");
+        testRttEstimator();
+        System.out.println("Testing RetransmissionBuffer");
+        testRetransmissionBuffer();
+        System.out.println("Testing Receiver server");
+        testReceiverServer();
+        System.out.println("Testing NioTransport");
+        testNioTransportLoopback();
+        System.out.println("Testing NIO receiver with 50 senders");
+        testNioReceiverLoad();
+        System.out.println("Testing WriteBatcher");
+        testWriteBatcher();
+        System.out.println("Testing Log");
+        testLog();
+        System.out.println("Testing LatencyHistogram");
+        testLatencyHistogram();
+        System.out.println("Testing LossyChannel");
+        testLossyChannel();
+        System.out.println("Testing LossyProxy");
+        testLossyProxy();
+        System.out.println("Testing Metrics");
+        testMetrics();
+        System.out.println("Testing mapped send");
+        testMappedSend();
+        System.out.println("Testing FileSink");
+        testFileSink();
+        System.out.println("Testing sink backpressure over NIO");
+        testNioSinkBackpressure();
+        System.out.println("Testing MTU");
+        testMtu();
+        System.out.println("Testing duplex");
+        testDuplex();
+        System.out.println("Testing FrameBuffer");
+        testFrameBuffer();
+        System.out.println("Testing BitCodec");
+        testBitCodec();
+        System.out.println("Testing streaming CRC");
+        testStreamingCrc();
+        System.out.println("Testing CRC-32C");
+        testCrc32c();
+        System.out.println("Testing parallel send");
+        testParallelSend();
+        System.out.println("Testing shard bounds");
+        testShardBounds();
         System.out.println("All tests passed!");
 
     }
@@ -185,4 +270,1407 @@ public class TestSuite {
         assert sendFrame.getData().equals(newFrame.getData()) : "Failed to serialize/deserialize send frame data";
         assert sendFrame.getCrc().equals(newFrame.getCrc()) : "Failed to serialize/deserialize send frame crc";
     }
-}
\ No newline at end of file
+
+    private static void testCrcEnginesAgree() {
+        byte[] check = "123456789".getBytes();
+        assert CRC.crc16(check, 0, check.length) == 0x29B1 : "CRC-CCITT check value mismatch";
+
+        Random random = new Random(42);
+        CRC.Engine previous = CRC.getEngine();
+        try {
+            for (int len : new int[]{0, 1, 7, 8, 15, 16, 17, 64, 1000}) {
+                byte[] data = new byte[len + 3];
+                random.nextBytes(data);
+                StringBuilder text = new StringBuilder();
+                for (int i = 0; i < len; i++) {
+                    text.append(random.nextBoolean() ? '1' : '0');
+                }
+
+                CRC.setEngine(CRC.Engine.BITWISE);
+                int expectedBytes = CRC.crc16(data, 3, len);
+                String expectedText = CRC.calculateCRC(text.toString());
+                for (CRC.Engine engine : CRC.Engine.values()) {
+                    CRC.setEngine(engine);
+                    assert CRC.crc16(data, 3, len) == expectedBytes : "Engine " + engine + " disagrees on " + len + " bytes";
+                    assert CRC.calculateCRC(text.toString()).equals(expectedText) : "Engine " + engine + " disagrees on text";
+                    ByteBuffer direct = ByteBuffer.allocateDirect(len);
+                    direct.put(data, 3, len).flip();
+                    assert CRC.crc16(direct) == expectedBytes : "Engine " + engine + " disagrees on direct buffer";
+                }
+            }
+        } finally {
+            CRC.setEngine(previous);
+        }
+    }
+
+    private static void testBinaryCodecRoundTrip() {
+        String[] payloads = {"", "Hello, Receiver!", "11111111", "\u007E\u007E\u00FF", "é"};
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        for (int i = 0; i < payloads.length; i++) {
+            byte[] encoded = FrameCodec.BINARY.encode(new Frame("I", 250 + i, payloads[i], ""));
+            wire.write(encoded, 0, encoded.length);
+        }
+
+        InputStream in = new ByteArrayInputStream(wire.toByteArray());
+        try {
+            for (int i = 0; i < payloads.length; i++) {
+                Frame frame = FrameCodec.BINARY.readFrame(in);
+                assert frame != null : "Missing binary frame " + i;
+                assert frame.getType().equals("I") : "Failed to decode binary frame type";
+                assert frame.getNum() == (250 + i) % 256 : "Failed to decode binary frame num";
+                assert frame.getData().equals(payloads[i]) : "Failed to decode binary frame data";
+                assert FrameCodec.BINARY.validate(frame) : "Failed to validate binary frame CRC";
+            }
+            assert FrameCodec.BINARY.readFrame(in) == null : "Expected end of stream";
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        Frame corrupted = new Frame("I", 1, "Hello", "0000");
+        assert !FrameCodec.BINARY.validate(corrupted) : "Failed to reject corrupted binary frame";
+    }
+
+    private static void testLinkOptions() {
+        LinkOptions options = LinkOptions.parse("codec=binary;broken;window=8");
+        assert "binary".equals(options.get(LinkOptions.CODEC)) : "Failed to parse codec option";
+        assert "8".equals(options.get("window")) : "Failed to parse window option";
+        assert options.toString().equals("codec=binary;window=8") : "Failed to format options";
+        assert LinkOptions.parse("").isEmpty() : "Empty data should give no options";
+        assert FrameCodec.forName(LinkOptions.parse(null).get(LinkOptions.CODEC)) == null : "Unknown codec should be null";
+    }
+
+    private static void testPackedBitStuffing() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 200; trial++) {
+            int bits = random.nextInt(400);
+            boolean allOnes = trial % 4 == 0;
+            StringBuilder text = new StringBuilder();
+            long[] packed = new long[(bits + 63) / 64 + 1];
+            for (int i = 0; i < bits; i++) {
+                boolean one = allOnes || random.nextInt(4) != 0;
+                text.append(one ? '1' : '0');
+                if (one) {
+                    packed[i >>> 6] |= 1L << (63 - (i & 63));
+                }
+            }
+
+            // Bourrage en deux morceaux pour vérifier la conservation du compte de '1'
+            long[] stuffed = new long[BitStuffing.stuffedCapacity(bits)];
+            BitStuffing.Stuffer stuffer = new BitStuffing.Stuffer();
+            int split = bits == 0 ? 0 : random.nextInt(bits);
+            int length = stuffer.stuff(packed, 0, split, stuffed, 0);
+            length = stuffer.stuff(packed, split, bits, stuffed, length);
+
+            String expected = BitStuffing.applyBitStuffing(text.toString());
+            assert length == expected.length() : "Stuffed length mismatch";
+            for (int i = 0; i < length; i++) {
+                long bit = (stuffed[i >>> 6] >>> (63 - (i & 63))) & 1;
+                assert bit == expected.charAt(i) - '0' : "Stuffed bit mismatch at " + i;
+            }
+
+            long[] unstuffed = new long[packed.length + 1];
+            BitStuffing.Unstuffer unstuffer = new BitStuffing.Unstuffer();
+            unstuffer.setInput(stuffed, 0, length);
+            assert unstuffer.unstuff(unstuffed) == BitStuffing.Unstuffer.NEED_INPUT : "Unexpected unstuffing event";
+            assert unstuffer.outputBits() == bits : "Unstuffed length mismatch";
+            for (int i = 0; i < bits; i++) {
+                assert ((unstuffed[i >>> 6] >>> (63 - (i & 63))) & 1) == ((packed[i >>> 6] >>> (63 - (i & 63))) & 1)
+                        : "Unstuffed bit mismatch at " + i;
+            }
+        }
+    }
+
+    private static void testPackedUnstuffingEvents() {
+        // flag | 11111 0(bourrage) 1010 | flag | 1111111 (abandon)
+        String stream = "01111110" + "1111101010" + "01111110" + "1111111";
+        long[] input = new long[2];
+        for (int i = 0; i < stream.length(); i++) {
+            if (stream.charAt(i) == '1') {
+                input[i >>> 6] |= 1L << (63 - (i & 63));
+            }
+        }
+
+        long[] frame = new long[2];
+        BitStuffing.Unstuffer unstuffer = new BitStuffing.Unstuffer();
+        unstuffer.setInput(input, 0, stream.length());
+        assert unstuffer.unstuff(frame) == BitStuffing.Unstuffer.FLAG : "Opening flag not reported";
+        assert unstuffer.outputBits() == 0 : "Opening flag should leave an empty frame";
+        assert unstuffer.unstuff(frame) == BitStuffing.Unstuffer.FLAG : "Closing flag not reported";
+        assert unstuffer.outputBits() == 9 : "Frame should hold 9 unstuffed bits";
+        assert (frame[0] >>> 55) == 0x1FA : "Unexpected unstuffed content";
+        unstuffer.clearOutput();
+        assert unstuffer.unstuff(frame) == BitStuffing.Unstuffer.ABORT : "Abort sequence not reported";
+    }
+
+    private static void testDeframerSplitReads() {
+        Random random = new Random(3);
+        for (FrameCodec codec : new FrameCodec[]{FrameCodec.TEXT, FrameCodec.BINARY}) {
+            ByteArrayOutputStream wire = new ByteArrayOutputStream();
+            for (int i = 0; i < 20; i++) {
+                byte[] encoded = codec.encode(new Frame("I", i, "line " + i + " ~~~~", ""));
+                wire.write(encoded, 0, encoded.length);
+                if (codec.isLineDelimited() && i % 5 == 4) {
+                    wire.write('\n');
+                }
+            }
+            byte[] bytes = wire.toByteArray();
+
+            List<Frame> frames = new ArrayList<>();
+            int[] bursts = new int[1];
+            Deframer deframer = new Deframer(codec, new FrameListener() {
+                @Override
+                public void onFrame(Frame frame) {
+                    frames.add(frame);
+                }
+
+                @Override
+                public void onBurstEnd() {
+                    bursts[0]++;
+                }
+            });
+            try {
+                for (int off = 0; off < bytes.length; ) {
+                    int len = Math.min(bytes.length - off, 1 + random.nextInt(37));
+                    deframer.feed(bytes, off, len);
+                    off += len;
+                }
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+
+            assert frames.size() == 20 : codec.getName() + " deframer found " + frames.size() + " frames";
+            for (int i = 0; i < frames.size(); i++) {
+                assert frames.get(i).getNum() == i : "Frames out of order";
+                assert frames.get(i).getData().equals("line " + i + " ~~~~") : "Failed to deframe data";
+                assert codec.validate(frames.get(i)) : "Failed to validate deframed frame";
+            }
+            if (codec.isLineDelimited()) {
+                assert bursts[0] == 4 : "Text bursts should follow line ends";
+            }
+        }
+    }
+
+    private static void testSlidingWindowWrapAround() {
+        SlidingWindow window = new SlidingWindow(SlidingWindow.Mode.GO_BACK_N, 8);
+        for (int i = 0; i < 300; i++) {
+            assert window.canSend() : "Window should have room";
+            long index = window.next();
+            assert SlidingWindow.sequenceNumber(index) == i % 256 : "Sequence number should wrap at 256";
+            if (i % 8 == 7) {
+                int acked = window.acknowledge((i + 1) % 256);
+                assert acked == 8 : "Cumulative ACK should cover the whole window";
+                assert window.isEmpty() : "Window should be empty after cumulative ACK";
+            }
+        }
+        assert window.getBase() == 296 : "Base should keep counting past 255";
+
+        // Trames 296 à 299 en vol (numéros 40 à 43) : ACK partiel, dupliqué puis hors fenêtre
+        assert window.acknowledge(42) == 2 : "Partial ACK should acknowledge two frames";
+        assert window.acknowledge(42) == 0 : "Duplicate ACK should acknowledge nothing";
+        assert window.acknowledge(100) == 0 : "ACK outside the window should be ignored";
+        assert window.indexOf(43) == 299 && window.isOutstanding(299) : "Sequence 43 should map to index 299";
+
+        try {
+            new SlidingWindow(SlidingWindow.Mode.SELECTIVE_REPEAT, 129);
+            assert false : "Selective Repeat window above 128 should be refused";
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+    }
+
+    private static void testRttEstimator() {
+        RttEstimator estimator = new RttEstimator(1000, 1, 60000);
+        assert estimator.getRtoMillis() == 1000 : "Initial RTO should be used before any sample";
+
+        estimator.sample(100_000_000L); // 100 ms : SRTT = 100, RTTVAR = 50
+        assert estimator.getRtoMillis() == 300 : "RTO should be SRTT + 4 * RTTVAR after the first sample";
+        for (int i = 0; i < 50; i++) {
+            estimator.sample(100_000_000L);
+        }
+        assert estimator.getRtoMillis() < 110 : "RTO should converge towards a stable RTT";
+
+        long rto = estimator.getRtoMillis();
+        estimator.backoff();
+        estimator.backoff();
+        assert estimator.getRtoMillis() == rto * 4 : "Each timeout should double the RTO";
+        assert estimator.getBackoffs() == 2 : "Backoffs should be counted until the next sample";
+        estimator.sample(100_000_000L);
+        assert estimator.getBackoffs() == 0 && estimator.getRtoMillis() < rto * 2 : "A valid sample should end the backoff";
+
+        RttEstimator bounded = new RttEstimator(1000, 200, 1500);
+        bounded.backoff();
+        assert bounded.getRtoMillis() == 1500 : "RTO should be capped";
+        bounded.sample(1_000_000L);
+        assert bounded.getRtoMillis() == 200 : "RTO should not go below the minimum";
+    }
+
+    private static void testRetransmissionBuffer() {
+        RetransmissionBuffer buffer = new RetransmissionBuffer(4);
+        for (long i = 0; i < 4; i++) {
+            buffer.put(i, new byte[]{(byte) i});
+        }
+        assert buffer.size() == 4 && buffer.get(2)[0] == 2 : "Outstanding frames should be kept";
+
+        boolean rejected = false;
+        try {
+            buffer.put(4, new byte[]{4}); // La case de la trame 0, pas encore acquittée
+        } catch (IllegalStateException e) {
+            rejected = true;
+        }
+        assert rejected : "An outstanding frame should not be overwritten";
+
+        buffer.release(3); // ACK cumulatif des trames 0 à 2
+        assert buffer.size() == 1 && buffer.get(0) == null && buffer.get(3)[0] == 3 : "Acknowledged frames should be released";
+
+        // Plusieurs tours du tampon : la mémoire reste bornée par la capacité
+        for (long i = 4; i < 1000; i++) {
+            buffer.put(i, new byte[]{(byte) i});
+            buffer.release(i - 2);
+        }
+        assert buffer.size() == 3 && buffer.get(999)[0] == (byte) 999 && buffer.get(996) == null : "Buffer should stay bounded by its capacity";
+
+        buffer.release(2000); // ACK très en avance sur la dernière libération
+        assert buffer.size() == 0 && buffer.get(999) == null : "A far cumulative ACK should release every slot";
+    }
+
+    private static void testReceiverServer() {
+        // Même serveur en transport bloquant et en NIO
+        for (String transport : new String[]{Transport.SOCKET, Transport.NIO}) {
+            withProperty("transport", transport, () -> testConnectionLimit(transport));
+        }
+    }
+
+    // Deux connexions à la fois : une troisième est refusée tant qu'elles sont ouvertes, chacune a son fichier
+    private static void testConnectionLimit(String transport) {
+        byte[] content = new byte[50000];
+        new Random(9).nextBytes(content);
+        File source = tempFile("server-source", content);
+        File target = tempFile("server-target", new byte[0]);
+        List<File> written = Arrays.asList(target, new File(target.getPath() + ".2"), new File(target.getPath() + ".3"));
+        written.forEach(File::deleteOnExit);
+        Receiver receiver = new Receiver(2, true);
+        receiver.setSinkFactory(FileSink.factory(target.toPath()));
+        quietly(() -> {
+            Thread server = startServer(receiver);
+            int port = receiver.awaitListening(5000);
+            assert port > 0 : transport + ": receiver should listen";
+            Sender first = new Sender(SlidingWindow.Mode.SELECTIVE_REPEAT, 8);
+            Sender second = new Sender(SlidingWindow.Mode.SELECTIVE_REPEAT, 8);
+            first.setMtu(1024);
+            second.setMtu(1024);
+            first.connect("localhost", port);
+            second.connect("localhost", port);
+            assert receiver.getActiveConnections() == 2 : transport + ": both connections should be served";
+            try (Socket extra = new Socket("localhost", port)) {
+                extra.setSoTimeout(5000);
+                int read;
+                try {
+                    read = extra.getInputStream().read();
+                } catch (SocketTimeoutException e) {
+                    throw new AssertionError(transport + ": a connection over the limit should be closed");
+                } catch (IOException reset) {
+                    read = -1;
+                }
+                assert read == -1 : transport + ": a connection over the limit should get nothing";
+            }
+            first.sendFrames(source.getPath());
+            first.close();
+            second.sendFrames(source.getPath());
+            second.close();
+
+            // Une place libérée sert la connexion suivante
+            long deadline = System.currentTimeMillis() + 5000;
+            while (receiver.getActiveConnections() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Sender third = new Sender(SlidingWindow.Mode.GO_BACK_N, 4);
+            third.setMtu(1024);
+            third.connect("localhost", port);
+            third.sendFrames(source.getPath());
+            third.close();
+            receiver.shutdown();
+            server.join(5000);
+            return null;
+        });
+        assert receiver.getStats().getConnections() == 3 : transport + ": the rejected connection should not open a session";
+        for (File file : written) {
+            try {
+                assert Arrays.equals(Files.readAllBytes(file.toPath()), content) : transport + ": " + file + " should hold one transfer";
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    // Lance le récepteur sur son propre thread ; son port est donné par awaitListening()
+    private static Thread startServer(Receiver receiver) {
+        Thread server = new Thread(() -> {
+            try {
+                receiver.start(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, "test-receiver");
+        server.setDaemon(true);
+        server.start();
+        return server;
+    }
+
+    private static void testNioTransportLoopback() {
+        try (ServerSocket server = new ServerSocket(0)) {
+            NioTransport transport = NioTransport.connect("localhost", server.getLocalPort());
+            Socket peer = server.accept();
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            CountDownLatch closed = new CountDownLatch(1);
+            transport.start(new TransportListener() {
+                @Override
+                public void onData(byte[] buf, int off, int len) {
+                    synchronized (received) {
+                        received.write(buf, off, len);
+                    }
+                }
+
+                @Override
+                public void onClosed(IOException cause) {
+                    closed.countDown();
+                }
+            });
+
+            // Plusieurs écritures, dont une plus grande qu'un bloc, envoyées par un seul flush
+            byte[] large = new byte[40000];
+            Arrays.fill(large, (byte) 0x7E);
+            transport.write("first".getBytes());
+            transport.write(large);
+            transport.write("last".getBytes());
+            transport.shutdownOutput();
+            byte[] sent = peer.getInputStream().readAllBytes();
+            assert sent.length == 5 + large.length + 4 : "All written bytes should be flushed before the output is shut down";
+            assert new String(sent, 0, 5).equals("first") && new String(sent, sent.length - 4, 4).equals("last") : "Writes should keep their order";
+
+            peer.getOutputStream().write("ack".getBytes());
+            peer.close();
+            assert closed.await(5, TimeUnit.SECONDS) : "Listener should be told when the peer closes";
+            synchronized (received) {
+                assert received.toString().equals("ack") : "Received bytes should reach the listener";
+            }
+            assert !transport.isOpen() : "Transport should be closed after end of stream";
+        } catch (IOException | InterruptedException e) {
+            throw new AssertionError("Loopback transfer failed", e);
+        }
+    }
+
+    private static void testNioReceiverLoad() {
+        // 50 émetteurs connectés en même temps à un récepteur NIO : aucune connexion n'a son propre thread
+        int senders = 50;
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            lines.append("line number ").append(i).append('\n');
+        }
+        File source = tempFile("load-source", lines.toString().getBytes(StandardCharsets.US_ASCII));
+        Receiver receiver = new Receiver(senders, true);
+        withProperty("transport", Transport.NIO, () -> quietly(() -> {
+            Thread server = startServer(receiver);
+            int port = receiver.awaitListening(5000);
+            assert port > 0 : "Receiver should listen";
+            ExecutorService pool = Executors.newFixedThreadPool(senders);
+            CountDownLatch connected = new CountDownLatch(senders);
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < senders; i++) {
+                results.add(pool.submit(() -> {
+                    Sender sender = new Sender(SlidingWindow.Mode.GO_BACK_N, 8);
+                    sender.connect("localhost", port);
+                    connected.countDown();
+                    go.await();
+                    sender.sendFrames(source.getPath());
+                    sender.close();
+                    return null;
+                }));
+            }
+            assert connected.await(30, TimeUnit.SECONDS) : "Every sender should connect";
+            assert receiver.getActiveConnections() == senders : "Every connection should be served at once";
+            assert Thread.getAllStackTraces().keySet().stream().noneMatch(t -> t.getName().startsWith("receiver-session"))
+                    : "NIO connections should share the event loop thread";
+            go.countDown();
+            try {
+                for (Future<?> result : results) {
+                    result.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+            receiver.shutdown();
+            server.join(5000);
+            return null;
+        }));
+        assert receiver.getStats().getConnections() == senders : "Every sender should have its session";
+        assert receiver.getStats().getFramesReceived() >= senders * 1000L : "Every line should be delivered";
+        assert receiver.getStats().getPayloadBytesReceived() == senders * (long) (lines.length() - 1000) : "Every line should be delivered once";
+    }
+
+    private static void testWriteBatcher() {
+        // Transport factice : compte les écritures réellement envoyées
+        List<Integer> flushed = new ArrayList<>();
+        int[] buffered = new int[1];
+        Transport transport = new Transport() {
+            @Override
+            public void write(byte[] data, int off, int len) {
+                buffered[0] += len;
+            }
+
+            @Override
+            public void flush() {
+                flushed.add(buffered[0]);
+                buffered[0] = 0;
+            }
+
+            @Override
+            public void start(TransportListener listener) {
+            }
+
+            @Override
+            public void shutdownOutput() {
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public String getRemoteAddress() {
+                return "test";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try {
+            WriteBatcher batcher = new WriteBatcher(transport, 100, 60000);
+            for (int i = 0; i < 4; i++) {
+                batcher.write(new byte[20]);
+            }
+            assert flushed.isEmpty() : "Frames of a burst should be held until the burst ends";
+            batcher.flush();
+            assert flushed.equals(List.of(80)) : "A burst should leave in a single write";
+
+            batcher.write(new byte[60]);
+            batcher.write(new byte[60]); // Dépasserait la taille maximale : le premier lot part seul
+            assert flushed.equals(List.of(80, 60)) : "A full batch should be sent before it overflows";
+            batcher.flush();
+            batcher.flush();
+            assert flushed.equals(List.of(80, 60, 60)) && batcher.getFlushes() == 3 : "Empty batches should not be sent";
+
+            WriteBatcher eager = new WriteBatcher(transport, 100, 0);
+            eager.write(new byte[10]);
+            assert flushed.size() == 4 : "A batch older than the linger time should be sent on the next write";
+        } catch (IOException e) {
+            throw new AssertionError("Batching failed", e);
+        }
+    }
+
+    private static void testLog() {
+        List<String> lines = Collections.synchronizedList(new ArrayList<>());
+        Log.Level previousLevel = Log.getLevel();
+        Log.setAppender(new AsyncAppender(record -> lines.add(record.getLevel() + " " + record.getLogger() + " " + record.getMessage()), 4));
+        try {
+            Log log = Log.get(TestSuite.class);
+            Log.setLevel(Log.Level.INFO);
+            boolean[] evaluated = {false};
+            log.debug(() -> {
+                evaluated[0] = true;
+                return "hidden";
+            });
+            assert !evaluated[0] : "Messages below the level should not be built";
+
+            // Plus d'événements que de places dans le tampon : l'émetteur attend, rien n'est perdu
+            for (int i = 0; i < 20; i++) {
+                log.info("event " + i);
+            }
+            log.warn("last");
+            Log.flush();
+            assert lines.size() == 21 : "Every event should be written";
+            assert lines.get(0).equals("INFO TestSuite event 0") && lines.get(20).equals("WARN TestSuite last") : "Events should keep their order";
+
+            Log.setLevel(Log.Level.TRACE);
+            log.trace(() -> "traced");
+            Log.flush();
+            assert lines.get(21).equals("TRACE TestSuite traced") : "Lower levels should be written once enabled";
+
+            // Un message actif est rangé champ par champ dans le tampon : l'émetteur n'alloue pas d'enregistrement
+            Log.setAppender(new AsyncAppender(record -> { }, 4096));
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            long threadId = Thread.currentThread().getId();
+            long allocated = 0;
+            for (int round = 0; round < 2; round++) { // Le premier tour sert de chauffe
+                long before = threads.getThreadAllocatedBytes(threadId);
+                for (int i = 0; i < 1000; i++) {
+                    log.info("steady");
+                }
+                allocated = threads.getThreadAllocatedBytes(threadId) - before;
+                Log.flush();
+            }
+            assert allocated < 1000 : "Logging should not allocate per event: " + allocated + " bytes for 1000 events";
+        } finally {
+            Log.setLevel(previousLevel);
+            Log.setAppender(new ConsoleAppender());
+        }
+    }
+
+    private static void testLatencyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assert histogram.percentile(50) == 0 : "An empty histogram should report 0";
+        for (long i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assert histogram.getCount() == 1000 && histogram.getMax() == 1_000_000 : "Every value should be counted";
+        long median = histogram.percentile(50);
+        assert median >= 500_000 && median <= 500_000 * 1.04 : "Median should be within the bucket precision";
+        assert histogram.percentile(100) == 1_000_000 : "The last percentile should be the maximum";
+        for (long v = 0; v < 100_000; v += 37) {
+            assert LatencyHistogram.upperBound(LatencyHistogram.index(v)) >= v : "Each value should lie under its bucket bound";
+        }
+
+        // Lien en mémoire sans délai, une trame en vol : l'ACK peut arriver avant la fin de l'écriture. Il doit
+        // trouver l'envoi de sa trame déjà enregistré, pas rien ni celui de la trame de même numéro 256 trames plus tôt
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            lines.append("line number ").append(i).append('\n');
+        }
+        MemorySender sender = new MemorySender(SlidingWindow.Mode.GO_BACK_N, 1);
+        long start = System.nanoTime();
+        transferInMemory(sender, new LossyChannel.Config(), lines.toString().getBytes(StandardCharsets.US_ASCII));
+        long perFrame = (System.nanoTime() - start) / 2000;
+        LatencyHistogram latency = sender.getStats().getAckLatency();
+        assert latency.getCount() == 2000 : "Every frame should give one latency sample";
+        assert latency.getMean() < perFrame : "ACK latency should be measured from the send of the same frame";
+    }
+
+    private static void testLossyChannel() {
+        // Même graine, mêmes unités : mêmes pertes, corruptions et duplications
+        LossyChannel.Config config = new LossyChannel.Config().seed(7).drop(0.2).corrupt(0.2).duplicate(0.2).protectFirst(0);
+        List<List<String>> runs = new ArrayList<>();
+        for (int run = 0; run < 2; run++) {
+            List<String> delivered = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch ended = new CountDownLatch(1);
+            LossyChannel channel = new LossyChannel(config, new LossyChannel.Sink() {
+                @Override
+                public void deliver(byte[] data) {
+                    delivered.add(Arrays.toString(data));
+                }
+
+                @Override
+                public void end(IOException cause) {
+                    ended.countDown();
+                }
+            }, "test-channel");
+            try {
+                for (int i = 0; i < 500; i++) {
+                    channel.send(new byte[]{(byte) i, (byte) (i >> 8), '0', '1'}, 0, 4);
+                }
+                channel.close();
+                assert ended.await(5, TimeUnit.SECONDS) : "Channel should drain after close";
+            } catch (Exception e) {
+                throw new AssertionError("Channel failed: " + e.getMessage());
+            }
+            assert channel.getDropped() > 0 && channel.getCorrupted() > 0 && channel.getDuplicated() > 0 : "Every impairment should occur";
+            assert delivered.size() == 500 - channel.getDropped() + channel.getDuplicated() : "Every surviving unit should be delivered";
+            runs.add(delivered);
+        }
+        assert runs.get(0).equals(runs.get(1)) : "Same seed should give the same channel";
+
+        // Transfert complet en mémoire à travers un canal qui perd, corrompt, duplique et réordonne dans les deux sens
+        LossyChannel.Config forward = new LossyChannel.Config().seed(1).drop(0.05).corrupt(0.05).duplicate(0.05).reorder(0.05);
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            lines.append("line number ").append(i).append('\n');
+        }
+        MemorySender sender = new MemorySender(SlidingWindow.Mode.GO_BACK_N, 8);
+        Transfer transfer = transferInMemory(sender, forward, forward.copy().seed(2),
+                lines.toString().getBytes(StandardCharsets.US_ASCII), session -> { });
+        assert sender.getStats().getFramesAcked() == 300 : "Every frame should be acknowledged in order";
+        assert transfer.link[0].getChannel().getDropped() > 0 && transfer.link[0].getChannel().getCorrupted() > 0 : "The channel should have damaged frames";
+        assert sender.getStats().getRetransmissions() > 0 : "Damaged frames should be retransmitted";
+    }
+
+    private static void testLossyProxy() {
+        // Vrais sockets : Sender -> LossyProxy -> Receiver, le proxy perd et corrompt des blocs dans les deux sens
+        byte[] content = new byte[100000];
+        new Random(10).nextBytes(content);
+        File source = tempFile("proxy-source", content);
+        File target = tempFile("proxy-target", new byte[0]);
+        Receiver receiver = new Receiver();
+        receiver.setSinkFactory(FileSink.factory(target.toPath()));
+        Sender sender = new Sender(SlidingWindow.Mode.SELECTIVE_REPEAT, 8);
+        quietly(() -> {
+            Thread server = startServer(receiver);
+            int port = receiver.awaitListening(5000);
+            assert port > 0 : "Receiver should listen";
+            try (LossyProxy relay = new LossyProxy("localhost", port, new LossyChannel.Config().seed(11).drop(0.03).corrupt(0.05))) {
+                relay.bind(0);
+                relay.start();
+                sender.setMtu(1024);
+                sender.connect("localhost", relay.getLocalPort());
+                sender.sendFrames(source.getPath());
+                sender.close();
+            }
+            server.join(10000);
+            assert !server.isAlive() : "Receiver should stop after the transfer";
+            return null;
+        });
+        assert sender.getStats().getRetransmissions() > 0 : "Damaged blocks should be retransmitted";
+        try {
+            assert Arrays.equals(Files.readAllBytes(target.toPath()), content) : "Receiver should rebuild the file through the proxy";
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void testMetrics() {
+        TransferStats stats = new TransferStats();
+        stats.onSend(0, false);
+        stats.onSend(1, false);
+        stats.onSend(1, true);
+        stats.onAck(0, 2);
+        stats.onBytesSent(42);
+        javax.management.ObjectName name = Metrics.register("Sender", "test", stats);
+        assert name != null : "Stats should be registered";
+        try {
+            javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+            assert server.getAttribute(name, "FramesSent").equals(2L) : "Counters should be visible through JMX";
+            assert server.getAttribute(name, "Retransmissions").equals(1L) : "Retransmissions should be counted";
+            assert server.getAttribute(name, "BytesSent").equals(42L) : "Bytes should be counted";
+            assert stats.getAckLatency().getCount() == 1 : "Retransmitted frames should not give a latency sample";
+            assert Metrics.snapshot().contains("Sender test: frames=2 acked=2") : "Snapshot should list registered sources";
+        } catch (javax.management.JMException e) {
+            throw new AssertionError("JMX access failed: " + e.getMessage());
+        } finally {
+            Metrics.unregister(name);
+        }
+        assert !java.lang.management.ManagementFactory.getPlatformMBeanServer().isRegistered(name) : "Stats should be unregistered";
+    }
+
+    private static void testMappedSend() {
+        // Données quelconques encodées depuis un tampon : flags, octets non UTF-8 et octets nuls inclus
+        Random random = new Random(17);
+        byte[] data = new byte[5000];
+        random.nextBytes(data);
+        data[10] = 0x7E;
+        data[11] = (byte) 0xFF;
+        BinaryFrameCodec codec = (BinaryFrameCodec) FrameCodec.BINARY;
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        List<Frame> frames = new ArrayList<>();
+        Deframer deframer = new Deframer(codec, new FrameListener() {
+            @Override
+            public void onFrame(Frame frame) {
+                frames.add(frame);
+            }
+
+            @Override
+            public void onBurstEnd() {
+            }
+        });
+        FrameBuffer frame = new FrameBuffer();
+        ByteBuffer encoded = ByteBuffer.allocate(codec.maxEncodedLength(1000));
+        try {
+            for (int i = 0; i < 5; i++) {
+                int length = codec.encode(frame.reset('I', i).put(buffer, i * 1000, 1000), encoded.clear());
+                deframer.feed(encoded.array(), 0, length);
+            }
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        assert frames.size() == 5 : "Every chunk should be deframed";
+        for (int i = 0; i < 5; i++) {
+            assert Arrays.equals(frames.get(i).getPayload(), Arrays.copyOfRange(data, i * 1000, (i + 1) * 1000)) : "Chunk bytes should be preserved";
+            assert codec.validate(frames.get(i)) : "Chunk CRC should validate";
+        }
+        assert buffer.position() == 0 : "Encoding should not move the buffer";
+
+        // Transfert complet d'un fichier binaire en mémoire, avec un dernier morceau incomplet
+        byte[] content = new byte[100000];
+        random.nextBytes(content);
+        MemorySender sender = new MemorySender(SlidingWindow.Mode.SELECTIVE_REPEAT, 16);
+        sender.setMtu(4096);
+        Transfer transfer = transferInMemory(sender, new LossyChannel.Config(), content);
+        assert sender.getStats().getFramesAcked() == 25 : "Every chunk should be acknowledged";
+        assert transfer.stats.getPayloadBytesReceived() == 100000 : "Every byte should be delivered";
+        assert transfer.stats.getCrcErrors() == 0 : "Chunks should arrive intact";
+    }
+
+    private static void testFileSink() {
+        // Petits blocs et une seule place en attente : l'écriture passe par la contre-pression
+        File lines = tempFile("sink", new byte[0]);
+        try {
+            try (FileSink sink = new FileSink(lines.toPath(), 16, 1)) {
+                for (int i = 0; i < 100; i++) {
+                    byte[] line = ("line number " + i + "\n").getBytes(StandardCharsets.UTF_8);
+                    sink.write(line, 0, line.length);
+                }
+            }
+            List<String> written = Files.readAllLines(lines.toPath());
+            assert written.size() == 100 && written.get(99).equals("line number 99") : "Every line should be written in order";
+        } catch (IOException e) {
+            throw new AssertionError("File sink failed: " + e.getMessage());
+        }
+
+        // Transfert par morceaux en mémoire, écrit sur disque par le récepteur
+        byte[] content = new byte[70000];
+        new Random(5).nextBytes(content);
+        MemorySender sender = new MemorySender(SlidingWindow.Mode.GO_BACK_N, 8);
+        sender.setMtu(1500);
+        Transfer transfer = transferInMemory(sender, new LossyChannel.Config(), content);
+        assert transfer.session.isEnded() : "Transfer should end with a valid F frame";
+        assert Arrays.equals(transfer.received, content) : "Received file should match the sent file";
+
+        // Ligne à ligne en texte : les caractères non ASCII arrivent avec les octets envoyés
+        byte[] text = "caf\u00e9 na\u00efve\n\u00fcber \u20ac 5\nplain\n".getBytes(StandardCharsets.UTF_8);
+        withProperty("codec", "text", () -> {
+            Transfer lineTransfer = transferInMemory(new MemorySender(SlidingWindow.Mode.GO_BACK_N, 4), new LossyChannel.Config(), text);
+            assert Arrays.equals(lineTransfer.received, text) : "Text frames should be written byte for byte";
+        });
+    }
+
+    private static void testNioSinkBackpressure() {
+        // Deux connexions sur la même boucle NIO : la destination de la première est bloquée, la seconde va au bout
+        byte[] content = new byte[300000];
+        new Random(12).nextBytes(content);
+        File source = tempFile("backpressure-source", content);
+        File target = tempFile("backpressure-target", new byte[0]);
+        StalledSink stalled = new StalledSink();
+        PayloadSink.Factory files = FileSink.factory(target.toPath());
+        Receiver receiver = new Receiver(2, true);
+        receiver.setSinkFactory(connection -> connection == 1 ? stalled : files.open(connection));
+        withProperty("transport", Transport.NIO, () -> quietly(() -> {
+            Thread server = startServer(receiver);
+            int port = receiver.awaitListening(5000);
+            assert port > 0 : "Receiver should listen";
+            ExecutorService pool = Executors.newSingleThreadExecutor();
+            Future<?> slowTransfer = pool.submit(() -> { // Le thread qui se connecte est celui que les ACKs réveillent
+                Sender slow = new Sender(SlidingWindow.Mode.SELECTIVE_REPEAT, 8);
+                slow.setMtu(1024);
+                slow.connect("localhost", port); // Connexion 1 : puits bloqué
+                slow.sendFrames(source.getPath());
+                slow.close();
+                return null;
+            });
+            try {
+                boolean full = stalled.full.await(5, TimeUnit.SECONDS); // Aussi sans -ea : la connexion 1 doit précéder
+                assert full : "The first sink should fill up";
+                Sender fast = new Sender(SlidingWindow.Mode.SELECTIVE_REPEAT, 8);
+                fast.setMtu(1024);
+                fast.connect("localhost", port);
+                fast.sendFrames(source.getPath());
+                fast.close();
+                assert !slowTransfer.isDone() : "The stalled connection should still be waiting";
+                stalled.release();
+                slowTransfer.get(30, TimeUnit.SECONDS);
+            } finally {
+                stalled.release();
+                pool.shutdownNow();
+            }
+            receiver.shutdown();
+            server.join(5000);
+            return null;
+        }));
+        assert Arrays.equals(stalled.received.toByteArray(), content) : "The stalled connection should resume where it stopped";
+        try {
+            assert Arrays.equals(Files.readAllBytes(target.toPath()), content) : "The other connection should complete meanwhile";
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Puits plein dès sa première trame, jusqu'à {@link #release()} : une écriture bloquante y attend, une offre
+     * est acceptée mais demande de suspendre les lectures.
+     */
+    private static final class StalledSink implements PayloadSink {
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+        final CountDownLatch full = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private Runnable onWritable;
+
+        @Override
+        public void write(byte[] data, int off, int len) throws IOException {
+            full.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            synchronized (this) {
+                received.write(data, off, len);
+            }
+        }
+
+        @Override
+        public synchronized boolean offer(byte[] data, int off, int len, Runnable onWritable) {
+            received.write(data, off, len);
+            full.countDown();
+            if (released.getCount() == 0) {
+                return true;
+            }
+            this.onWritable = onWritable;
+            return false;
+        }
+
+        void release() {
+            Runnable resume;
+            synchronized (this) {
+                released.countDown();
+                resume = onWritable;
+                onWritable = null;
+            }
+            if (resume != null) {
+                resume.run();
+            }
+        }
+    }
+
+    private static void testMtu() {
+        // CRC-32 : quatre octets de somme, une erreur d'un bit est détectée
+        BinaryFrameCodec crc32 = BinaryFrameCodec.Checksum.CRC32.getCodec();
+        byte[] encoded = crc32.encode(new Frame("I", 9, "a large frame", ""));
+        assert encoded.length > FrameCodec.BINARY.encode(new Frame("I", 9, "a large frame", "")).length : "CRC-32 should be longer";
+        try {
+            Frame decoded = crc32.readFrame(new ByteArrayInputStream(encoded));
+            assert decoded != null && decoded.getCrc().length() == 8 && crc32.validate(decoded) : "CRC-32 frame should validate";
+            encoded[6] ^= 0x01;
+            Frame corrupted = crc32.readFrame(new ByteArrayInputStream(encoded));
+            assert corrupted == null || !crc32.validate(corrupted) : "CRC-32 should detect a flipped bit";
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        // Flux de caractères en texte : lignes longues fragmentées, lignes courtes regroupées
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            content.append(i % 10 == 0 ? "x".repeat(500) : i % 10 == 5 ? "\u00e9t\u00e9 " + i : "short " + i).append('\n');
+        }
+        byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+        withProperty("codec", "text", () -> {
+            MemorySender sender = new MemorySender(SlidingWindow.Mode.SELECTIVE_REPEAT, 8);
+            sender.setMtu(128);
+            Transfer transfer = transferInMemory(sender, new LossyChannel.Config(), bytes);
+            assert sender.getStats().getFramesSent() == (content.length() + 127) / 128 : "Frames should be filled up to the MTU";
+            assert Arrays.equals(transfer.received, bytes) : "Receiver should reassemble the stream";
+        });
+    }
+
+    private static void testDuplex() {
+        // Un fichier dans chaque sens, le sens retour perd et duplique : les ACKs partent dans les trames I,
+        // et une trame renvoyée porte l'ACK du moment
+        byte[] content = new byte[300000];
+        byte[] replyContent = new byte[150000];
+        Random random = new Random(6);
+        random.nextBytes(content);
+        random.nextBytes(replyContent);
+        File reply = tempFile("duplex-reply", replyContent);
+        File returned = tempFile("duplex-returned", new byte[0]);
+        try {
+            MemorySender sender = new MemorySender(SlidingWindow.Mode.GO_BACK_N, 8);
+            sender.setMtu(1000);
+            sender.setDuplex(true);
+            sender.setSink(new FileSink(returned.toPath()));
+            Transfer transfer = transferInMemory(sender, new LossyChannel.Config(), new LossyChannel.Config().seed(4).drop(0.02).duplicate(0.02),
+                    content, session -> session.setReplyFile(reply.getPath()));
+            assert transfer.session.isEnded() : "Transfer should end with a valid F frame";
+            assert Arrays.equals(transfer.received, content) : "Receiver should get the sent file";
+            assert Arrays.equals(Files.readAllBytes(returned.toPath()), replyContent) : "Sender should get the reply";
+            assert transfer.stats.getAcksPiggybacked() + sender.getReplyStats().getAcksPiggybacked() > 0 : "Acknowledgements should ride on data frames";
+            assert transfer.stats.getAcksSent() < transfer.stats.getFramesReceived() : "Acknowledgements should be coalesced";
+        } catch (IOException e) {
+            throw new AssertionError("Duplex transfer failed: " + e.getMessage());
+        }
+    }
+
+    private static void testFrameBuffer() {
+        Random random = new Random(21);
+        byte[] data = new byte[5000];
+        random.nextBytes(data);
+        Arrays.fill(data, 100, 400, (byte) 0xFF); // Bourrage maximal sur une partie des données
+        ByteBuffer source = ByteBuffer.wrap(data);
+        FrameBuffer frame = new FrameBuffer(); // Une seule trame réutilisée, pour toutes les tailles et sommes
+        for (BinaryFrameCodec.Checksum checksum : BinaryFrameCodec.Checksum.values()) {
+            BinaryFrameCodec codec = checksum.getCodec();
+            for (int length : new int[]{0, 1, 300, 5000, 16}) {
+                int offset = length == 300 ? 100 : 0;
+                frame.reset('I', length & 0xFF).put(source, offset, length);
+                ByteBuffer out = ByteBuffer.allocate(codec.maxEncodedLength(length) + 3);
+                out.position(3); // Écrite à la position du tampon
+                int written = codec.encode(frame, out);
+                byte[] expected = codec.encode(Frame.withPayload("I", length & 0xFF, Arrays.copyOfRange(data, offset, offset + length), ""));
+                assert written == expected.length && out.position() == 3 + written : "Encoded length should match";
+                assert Arrays.equals(Arrays.copyOfRange(out.array(), 3, 3 + written), expected)
+                        : "Pooled encoding should match the allocating encoder for " + checksum.getName();
+
+                Frame[] decoded = new Frame[1];
+                try {
+                    new Deframer(codec, f -> decoded[0] = f).feed(out.array(), 3, written);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+                assert decoded[0] != null && codec.validate(decoded[0])
+                        && Arrays.equals(decoded[0].getPayload(), Arrays.copyOfRange(data, offset, offset + length))
+                        : "Pooled frame should round-trip";
+            }
+        }
+
+        // Tampon trop petit : erreur, sans écriture partielle
+        ByteBuffer small = ByteBuffer.allocate(4);
+        boolean overflow = false;
+        try {
+            ((BinaryFrameCodec) FrameCodec.BINARY).encode(frame.reset('A', 1).put(data, 0, 10), small);
+        } catch (BufferOverflowException e) {
+            overflow = true;
+        }
+        assert overflow && small.position() == 0 : "A short output buffer should be rejected";
+
+        // Chaque case de retransmission garde son tampon d'une trame à l'autre
+        RetransmissionBuffer buffer = new RetransmissionBuffer(4);
+        ByteBuffer slot = buffer.reserve(0, 100);
+        slot.put(new byte[]{1, 2, 3}).flip();
+        assert buffer.frame(0) == slot && Arrays.equals(buffer.get(0), new byte[]{1, 2, 3}) : "Reserved frame should be stored";
+        buffer.release(1);
+        assert buffer.frame(0) == null && buffer.size() == 0 : "Reserved frame should be released";
+        assert buffer.reserve(4, 50) == slot && slot.position() == 0 && slot.limit() == slot.capacity() : "Slot buffer should be reused, cleared";
+        assert buffer.reserve(8 - 4, 500).capacity() >= 500 : "Slot buffer should grow for a larger frame";
+
+        // Régime établi : l'encodage dans un tampon réutilisé n'alloue rien
+        java.lang.management.ThreadMXBean threads = java.lang.management.ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+            BinaryFrameCodec codec = BinaryFrameCodec.Checksum.CRC32.getCodec();
+            ByteBuffer out = ByteBuffer.allocate(codec.maxEncodedLength(1000));
+            long id = Thread.currentThread().getId();
+            long before = 0;
+            for (int i = 0; i < 2000; i++) {
+                if (i == 1000) {
+                    before = counter.getThreadAllocatedBytes(id); // Après la mise en place des tampons
+                }
+                codec.encode(frame.reset('I', i & 0xFF).put(source, i, 1000), out.clear());
+            }
+            long allocated = counter.getThreadAllocatedBytes(id) - before;
+            assert allocated < 1000 : "Steady-state encoding should not allocate (" + allocated + " bytes)";
+
+            // Duplex : chaque trame est envoyée depuis sa case, puis renvoyée avec un nouvel ACK, sans décodage
+            RetransmissionBuffer window = new RetransmissionBuffer(8);
+            for (int i = 0; i < 4000; i++) {
+                if (i == 2000) {
+                    before = counter.getThreadAllocatedBytes(id);
+                }
+                window.release(i - 7);
+                window.content(i).reset('I', i & 0xFF).put((byte) 0).put(source, i % 2000, 1000);
+                codec.encode(window.content(i), window.reserve(i, codec.maxEncodedLength(1001)));
+                window.content(i).set(0, (byte) (i & 0x7F)); // Renvoi : l'ACK porté a avancé
+                codec.encode(window.content(i), window.reserve(i, codec.maxEncodedLength(1001)));
+            }
+            allocated = counter.getThreadAllocatedBytes(id) - before;
+            // Quelques octets de compilation au plus ; décoder chaque trame renvoyée coûtait des kilo-octets par trame
+            assert allocated < 4096 : "Resending with a refreshed ACK should not allocate (" + allocated + " bytes)";
+
+            Frame[] resent = new Frame[1];
+            ByteBuffer last = window.frame(3999).flip();
+            try {
+                new Deframer(codec, f -> resent[0] = f).feed(last.array(), last.position(), last.remaining());
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            byte[] payload = resent[0].getPayload();
+            assert codec.validate(resent[0]) && payload[0] == (byte) (3999 & 0x7F)
+                    && Arrays.equals(Arrays.copyOfRange(payload, 1, payload.length), Arrays.copyOfRange(data, 1999, 2999))
+                    : "Resent frame should carry the new ACK and the same data";
+        }
+    }
+
+    private static void testBitCodec() {
+        // Les tables donnent exactement les conversions d'origine
+        byte[] all = new byte[256];
+        for (int b = 0; b < 256; b++) {
+            all[b] = (byte) b;
+            String expected = String.format("%8s", Integer.toBinaryString(b)).replace(' ', '0');
+            assert BitCodec.appendBits(new StringBuilder(), b).toString().equals(expected) : "Bits of " + b;
+            assert BitCodec.parseByte(expected, 0) == Integer.parseInt(expected, 2) : "Byte of " + expected;
+        }
+        String bits = BitCodec.toBits(all);
+        byte[] back = new byte[256];
+        assert BitCodec.toBytes(bits, 0, bits.length(), back, 0) == 256 && Arrays.equals(back, all) : "Bytes should round-trip";
+        assert BitCodec.parseBits("0000101", 2, 5) == 5 : "A partial group should be read like Integer.parseInt";
+        assert BitCodec.toHex(0x0A3F, 4).equals(String.format("%04X", 0x0A3F))
+                && BitCodec.toHex(0xDEADBEEFL, 8).equals(String.format("%08X", 0xDEADBEEFL)) : "Hex digits should be upper case";
+        assert BitCodec.appendHexBits(new StringBuilder(), 0x0A3F, 4).toString().equals(BitStuffing.stringToBinary("0A3F"))
+                : "CRC bits should be those of its hex digits";
+
+        boolean rejected = false;
+        try {
+            BitCodec.parseByte("0101x101", 0);
+        } catch (NumberFormatException e) {
+            rejected = true;
+        }
+        assert rejected : "Characters other than 0 and 1 should be rejected";
+
+        // Trame texte : même encodage et même décodage qu'avant les tables
+        Frame frame = new Frame("I", 200, "données é~\u007f", "");
+        String line = frame.toByteString();
+        Frame decoded = Frame.identifyFrame(line, 1);
+        assert decoded != null && decoded.getNum() == 200 && CRC.validateCRC(decoded) : "Text frame should round-trip";
+    }
+
+    private static void testStreamingCrc() {
+        byte[] data = new byte[1000];
+        new Random(23).nextBytes(data);
+        CRC.Engine previous = CRC.getEngine();
+        try {
+            for (CRC.Engine engine : CRC.Engine.values()) {
+                CRC.setEngine(engine);
+                CRC.Accumulator crc = new CRC.Accumulator();
+                crc.update(data[0]);
+                crc.update(data, 1, 500);
+                for (int i = 501; i < data.length; i++) {
+                    crc.update(data[i]);
+                }
+                assert crc.value() == CRC.crc16(data, 0, data.length) : "Accumulated CRC should match with " + engine;
+                crc.reset();
+                crc.updateBits(0xA5);
+                assert crc.value() == CRC.crc16("10100101") : "Bits of a byte should be fed as characters";
+            }
+        } finally {
+            CRC.setEngine(previous);
+        }
+
+        // Le bourrage texte produit la même sortie que la conversion puis le bourrage en deux passes
+        StringBuilder stuffed = new StringBuilder();
+        new BitStuffing.TextStuffer(stuffed).append(data, 0, 100, null);
+        assert stuffed.toString().equals(BitStuffing.applyBitStuffing(BitCodec.toBits(Arrays.copyOf(data, 100))))
+                : "Fused text stuffing should match the two-pass stuffing";
+
+        // Trame texte : le CRC reçu est contrôlé pendant le décodage
+        CRC.Accumulator crc = new CRC.Accumulator();
+        StringBuilder content = new StringBuilder();
+        for (int b : new int[]{'I', 7, 'o', 'k'}) {
+            BitCodec.appendBits(content, b);
+            crc.updateBits(b);
+        }
+        BitCodec.appendHexBits(content, crc.value(), 4);
+        assert CRC.validateCRC(Frame.decodeContent(content)) : "Intact text frame should validate";
+        content.setCharAt(20, content.charAt(20) == '0' ? '1' : '0'); // Un bit de données inversé
+        assert !CRC.validateCRC(Frame.decodeContent(content)) : "Corrupted text frame should be rejected";
+
+        // Trame binaire : idem, y compris pour une somme sur 32 bits
+        for (BinaryFrameCodec.Checksum checksum : BinaryFrameCodec.Checksum.values()) {
+            byte[] body = new byte[2 + data.length + checksum.getSize()];
+            body[0] = 'I';
+            body[1] = 9;
+            System.arraycopy(data, 0, body, 2, data.length);
+            long value = checksum.compute(body, 0, 2 + data.length);
+            for (int i = body.length - 1; i >= 2 + data.length; i--, value >>>= 8) {
+                body[i] = (byte) value;
+            }
+            long[] bits = new long[body.length / 8 + 1];
+            BitStuffing.pack(body, 0, body.length, bits);
+            Frame frame = checksum.getCodec().decodeBody(bits, body.length * 8);
+            assert checksum.getCodec().validate(frame) && Arrays.equals(frame.getPayload(), data)
+                    : "Intact binary frame should validate with " + checksum.getName();
+            body[600] ^= 0x10;
+            BitStuffing.pack(body, 0, body.length, bits);
+            assert !checksum.getCodec().validate(checksum.getCodec().decodeBody(bits, body.length * 8))
+                    : "Corrupted binary frame should be rejected with " + checksum.getName();
+        }
+    }
+
+    private static void testCrc32c() {
+        // Valeur de contrôle de la norme : CRC-32C de "123456789"
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        assert BinaryFrameCodec.Checksum.forName("crc32c") == BinaryFrameCodec.Checksum.CRC32C : "crc32c should be known";
+        assert BinaryFrameCodec.Checksum.CRC32C.compute(check, 0, check.length) == 0xE3069283L : "CRC-32C check value";
+
+        // Somme négociée dans la trame "C", trames corrompues sur le lien : le fichier arrive intact
+        byte[] content = new byte[200000];
+        new Random(5).nextBytes(content);
+        MemorySender sender = new MemorySender(SlidingWindow.Mode.SELECTIVE_REPEAT, 16);
+        sender.setMtu(4096);
+        sender.setChecksum(BinaryFrameCodec.Checksum.CRC32C);
+        Transfer transfer = transferInMemory(sender, new LossyChannel.Config().seed(3).corrupt(0.05), content);
+        assert transfer.link[0].getChannel().getCorrupted() > 0 : "The channel should have damaged frames";
+        assert Arrays.equals(transfer.received, content) : "CRC-32C should reject every damaged frame";
+    }
+
+    private static void testParallelSend() {
+        // Tranches contiguës, alignées sur la MTU, qui couvrent tout le fichier
+        List<Shard> shards = Shard.split("t", 10000, 3, 1000);
+        assert shards.size() == 3 && shards.get(1).getOffset() == 4000 && shards.get(2).getLength() == 2000 : "Shards should be aligned on the MTU";
+        assert Shard.split("t", 0, 4, 1000).size() == 1 : "An empty file should give one empty shard";
+        assert Shard.parse(shards.get(2).toString()).getOffset() == 8000 && Shard.parse("t:1:x:2") == null : "Shard option should round-trip";
+
+        // Quatre connexions, dont une qui perd des trames, recollées dans un seul fichier
+        int streams = 4;
+        byte[] content = new byte[300001];
+        new Random(8).nextBytes(content);
+        File source = tempFile("parallel-source", content);
+        File target = tempFile("parallel-target", new byte[400000]); // Un ancien fichier plus long est raccourci
+        ParallelSender sender = quietly(() -> {
+            PayloadSink.Factory factory = FileSink.factory(target.toPath());
+            LossyTransport[][] links = new LossyTransport[streams][];
+            CountDownLatch closed = new CountDownLatch(streams);
+            for (int i = 0; i < streams; i++) {
+                links[i] = LossyTransport.pair(new LossyChannel.Config().seed(i).drop(i == 1 ? 0.05 : 0), new LossyChannel.Config());
+                ReceiverSession session = new ReceiverSession(links[i][1], closed::countDown, new ReceiverStats());
+                session.setSinkFactory(factory, i + 1);
+                links[i][1].start(session);
+            }
+            ParallelSender parallel = new ParallelSender(SlidingWindow.Mode.SELECTIVE_REPEAT, 8, streams) {
+                @Override
+                protected Sender newSender(int stream) {
+                    MemorySender shardSender = new MemorySender(SlidingWindow.Mode.SELECTIVE_REPEAT, 8);
+                    shardSender.link = links[stream][0];
+                    return shardSender;
+                }
+            };
+            parallel.setMtu(1024);
+            parallel.send("memory", 0, source.getPath());
+            assert closed.await(5, TimeUnit.SECONDS) : "Every session should end";
+            return parallel;
+        });
+        assert sender.getStats().size() == streams && sender.getStats().get(1).getRetransmissions() > 0 : "Each shard should run its own ARQ";
+        try {
+            assert Arrays.equals(Files.readAllBytes(target.toPath()), content) : "Receiver should reassemble the shards by offset";
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        // Un récepteur qui ne recolle pas les tranches les refuse : l'envoi échoue au lieu de corrompre
+        MemorySender refused = new MemorySender(SlidingWindow.Mode.GO_BACK_N, 4);
+        refused.setMtu(1024);
+        refused.setShard(shards.get(0));
+        sendRefused(refused, (link, onClose) -> new ReceiverSession(link, onClose, new ReceiverStats(), new FileSink(target.toPath())),
+                connected -> { }, source, "Unaccepted shard should not be sent");
+    }
+
+    private static void testShardBounds() {
+        // Une tranche qui dépasse du fichier est invalide, même quand position + taille déborde d'un long
+        assert Shard.parse("t:5:6:10") == null && Shard.parse("t:1:" + Long.MAX_VALUE + ":10") == null
+                && Shard.parse("t:" + Long.MAX_VALUE + ":1:10") == null : "An oversized shard should not parse";
+        boolean rejected = false;
+        try {
+            new Shard("t", 1, Long.MAX_VALUE, 10);
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        assert rejected : "An overflowing shard should be rejected";
+        assert Shard.parse("t:4:6:10").getLength() == 6 : "A shard ending at the end of the file should parse";
+
+        // Le puits d'une tranche n'écrit pas au-delà, et signale une tranche incomplète
+        File target = tempFile("shard-bounds", new byte[20]);
+        byte[] data = new byte[12];
+        Arrays.fill(data, (byte) 7);
+        try {
+            FileSink sink = new FileSink(target.toPath(), new Shard("t", 4, 10, 20), 4, 1);
+            sink.write(data, 0, 8);
+            boolean overflow = false;
+            try {
+                sink.write(data, 0, 3);
+            } catch (IOException e) {
+                overflow = true;
+            }
+            assert overflow : "Data beyond the shard should be refused";
+            boolean incomplete = false;
+            try {
+                quietly(() -> {
+                    sink.close();
+                    return null;
+                });
+            } catch (AssertionError e) {
+                incomplete = true;
+            }
+            assert incomplete : "A short shard should fail on close";
+            byte[] written = Files.readAllBytes(target.toPath());
+            assert written.length == 20 && written[3] == 0 && written[4] == 7 && written[11] == 7 && written[12] == 0
+                    : "Only the shard's bytes should be written";
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+
+        // Un expéditeur qui envoie plus que la tranche acceptée : la session s'arrête sans écrire plus loin
+        byte[] content = new byte[4096];
+        new Random(25).nextBytes(content);
+        File source = tempFile("shard-source", content);
+        File reassembled = tempFile("shard-target", new byte[0]);
+        MemorySender oversized = new MemorySender(SlidingWindow.Mode.GO_BACK_N, 4);
+        oversized.setMtu(512);
+        oversized.setShard(new Shard("t", 0, 1024, 4096));
+        SessionFactory receiver = (link, onClose) -> {
+            ReceiverSession receiving = new ReceiverSession(link, onClose, new ReceiverStats());
+            receiving.setSinkFactory(FileSink.factory(reassembled.toPath()), 1);
+            return receiving;
+        };
+        // Annonce une tranche, en envoie une plus grande
+        ReceiverSession session = sendRefused(oversized, receiver, connected -> connected.setShard(new Shard("t", 0, 4096, 4096)),
+                source, "Data beyond the accepted shard should end the connection");
+        assert session.getFailure() != null && !session.isEnded() : "Session should end on the overflowing write";
+        try {
+            byte[] written = Files.readAllBytes(reassembled.toPath());
+            // Le fichier ne s'étend qu'avec les tranches écrites : seule la première l'a été
+            assert written.length == 1024 && Arrays.equals(written, Arrays.copyOf(content, 1024))
+                    : "Nothing beyond the shard should be written";
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Sender relié à une extrémité d'une paire de {@link LossyTransport} plutôt qu'à un socket.
+     */
+    private static final class MemorySender extends Sender {
+        Transport link;
+
+        MemorySender(SlidingWindow.Mode mode, int windowSize) {
+            super(mode, windowSize);
+        }
+
+        @Override
+        protected Transport openTransport(String host, int port) {
+            return link;
+        }
+    }
+
+    /**
+     * Transfert en mémoire terminé : le lien, la session du récepteur et le fichier qu'elle a écrit.
+     */
+    private static final class Transfer {
+        final LossyTransport[] link;
+        final ReceiverSession session;
+        final ReceiverStats stats;
+        final byte[] received;
+
+        Transfer(LossyTransport[] link, ReceiverSession session, ReceiverStats stats, byte[] received) {
+            this.link = link;
+            this.session = session;
+            this.stats = stats;
+            this.received = received;
+        }
+    }
+
+    private static Transfer transferInMemory(MemorySender sender, LossyChannel.Config forward, byte[] content) {
+        return transferInMemory(sender, forward, new LossyChannel.Config(), content, session -> { });
+    }
+
+    /**
+     * Envoie un fichier avec un émetteur déjà configuré par le test à une ReceiverSession, à travers une paire de
+     * {@link LossyTransport}. Comme dans le Receiver, la session ouvre son puits par {@link FileSink#factory} une
+     * fois la connexion acceptée ; le fichier écrit est relu après la fin de la session.
+     *
+     * @param sender L'émetteur, relié au lien par cette méthode
+     * @param forward Le canal de l'émetteur vers le récepteur
+     * @param backward Le canal du récepteur vers l'émetteur
+     * @param content Le contenu du fichier envoyé
+     * @param setup Réglages de la session avant son démarrage
+     * @return Le transfert terminé
+     */
+    private static Transfer transferInMemory(MemorySender sender, LossyChannel.Config forward, LossyChannel.Config backward,
+                                             byte[] content, Consumer<ReceiverSession> setup) {
+        File source = tempFile("transfer-source", content);
+        File target = tempFile("transfer-target", new byte[0]);
+        return quietly(() -> {
+            LossyTransport[] link = LossyTransport.pair(forward, backward);
+            CountDownLatch closed = new CountDownLatch(1);
+            ReceiverStats stats = new ReceiverStats();
+            ReceiverSession session = new ReceiverSession(link[1], closed::countDown, stats);
+            session.setSinkFactory(FileSink.factory(target.toPath()), 1);
+            setup.accept(session);
+            link[1].start(session);
+            sender.link = link[0];
+            sender.connect("memory", 0);
+            sender.sendFrames(source.getPath());
+            sender.close();
+            assert closed.await(5, TimeUnit.SECONDS) : "Session should end";
+            return new Transfer(link, session, stats, Files.readAllBytes(target.toPath()));
+        });
+    }
+
+    /**
+     * Session du récepteur au bout d'un lien en mémoire.
+     */
+    private interface SessionFactory {
+        ReceiverSession open(Transport link, Runnable onClose) throws IOException;
+    }
+
+    /**
+     * Envoie un fichier qu'une session doit refuser, à la connexion ou en cours de transfert, à travers une paire de
+     * {@link LossyTransport} sans altération : l'envoi doit échouer, puis la session se terminer.
+     *
+     * @param sender L'émetteur, relié au lien par cette méthode
+     * @param receiver Crée la session du récepteur
+     * @param connected Réglages de l'émetteur entre la connexion et l'envoi
+     * @param source Le fichier envoyé
+     * @param message Le message d'échec si l'envoi réussit
+     * @return La session terminée
+     */
+    private static ReceiverSession sendRefused(MemorySender sender, SessionFactory receiver, Consumer<MemorySender> connected,
+                                               File source, String message) {
+        return quietly(() -> {
+            LossyTransport[] link = LossyTransport.pair(new LossyChannel.Config(), new LossyChannel.Config());
+            CountDownLatch closed = new CountDownLatch(1);
+            ReceiverSession session = receiver.open(link[1], closed::countDown);
+            link[1].start(session);
+            sender.link = link[0];
+            sender.connect("memory", 0);
+            connected.accept(sender);
+            try {
+                sender.sendFrames(source.getPath());
+                throw new AssertionError(message);
+            } catch (IOException expected) {
+                // Refusé par le récepteur, qui ferme la connexion
+            } finally {
+                sender.close();
+            }
+            assert closed.await(5, TimeUnit.SECONDS) : "Session should end";
+            return session;
+        });
+    }
+
+    // Fichier temporaire supprimé à la sortie de la JVM
+    private static File tempFile(String prefix, byte[] content) {
+        try {
+            File file = File.createTempFile(prefix, ".bin");
+            file.deleteOnExit();
+            Files.write(file.toPath(), content);
+            return file;
+        } catch (IOException e) {
+            throw new AssertionError("Cannot create a temporary file: " + e.getMessage());
+        }
+    }
+
+    // Lance un test avec une propriété système, par exemple -Dcodec=text, puis rétablit l'ancienne valeur
+    private static void withProperty(String key, String value, Runnable test) {
+        String previous = System.getProperty(key);
+        System.setProperty(key, value);
+        try {
+            test.run();
+        } finally {
+            if (previous == null) {
+                System.clearProperty(key);
+            } else {
+                System.setProperty(key, previous);
+            }
+        }
+    }
+
+    // Ne journalise que les erreurs pendant un transfert : REJ, erreurs de CRC et retransmissions sont attendus
+    private static <T> T quietly(Callable<T> transfer) {
+        Log.Level previousLevel = Log.getLevel();
+        Log.setLevel(Log.Level.ERROR);
+        try {
+            return transfer.call();
+        } catch (Exception e) {
+            throw new AssertionError("Transfer failed: " + e.getMessage(), e);
+        } finally {
+            Log.flush(); // Les erreurs des sessions fermées s'affichent avec leur test, pas pendant les suivants
+            Log.setLevel(previousLevel);
+        }
+    }
+
+}
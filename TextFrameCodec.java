@@ -0,0 +1,38 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codec d'origine : chaque bit de la trame est transmis sous forme de caractère '0' ou '1'.
+ */
+public class TextFrameCodec implements FrameCodec {
+
+    @Override
+    public String getName() {
+        return "text";
+    }
+
+    @Override
+    public byte[] encode(Frame frame) {
+        return frame.toByteString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public Frame decodeBody(long[] bits, int length) {
+        // Type, numéro et CRC (32 bits) au minimum, par octets entiers
+        if (length < 48 || length % 8 != 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length / 8];
+        BitStuffing.unpack(bits, length, bytes, 0);
+        return Frame.decodeContent(BitCodec.appendBits(new StringBuilder(length), bytes, 0, bytes.length));
+    }
+
+    @Override
+    public boolean validate(Frame frame) {
+        return CRC.validateCRC(frame);
+    }
+
+    @Override
+    public boolean isLineDelimited() {
+        return true;
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistiques d'un transfert côté émetteur : trames et octets envoyés, retransmissions, timeouts, REJ reçus,
+ * occupation de la fenêtre et délai entre l'envoi d'une trame et l'ACK qui la couvre. Comme pour le RTO, une
+ * trame réenvoyée ne donne pas de mesure de délai (règle de Karn).
+ *
+ * Les compteurs sont des {@link LongAdder} et les histogrammes sont sans verrou : l'émetteur et le lecteur
+ * d'ACKs les mettent à jour sans se bloquer.
+ */
+public class TransferStats implements TransferStatsMBean {
+    private final AtomicLongArray sendTimes = new AtomicLongArray(SlidingWindow.SEQUENCE_MODULUS); // 0 : pas de mesure
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder framesAcked = new LongAdder();
+    private final LongAdder retransmissions = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejects = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LatencyHistogram ackLatency = new LatencyHistogram();
+    private final LatencyHistogram windowOccupancy = new LatencyHistogram();
+
+    /**
+     * @param index L'indice absolu de la trame envoyée
+     * @param retransmission true si la trame a déjà été envoyée
+     */
+    public void onSend(long index, boolean retransmission) {
+        int slot = (int) (index % SlidingWindow.SEQUENCE_MODULUS);
+        if (retransmission) {
+            retransmissions.increment();
+            sendTimes.set(slot, 0);
+        } else {
+            framesSent.increment();
+            sendTimes.set(slot, System.nanoTime());
+        }
+    }
+
+    /**
+     * Enregistre un ACK cumulatif.
+     *
+     * @param fromIndex La base de la fenêtre avant l'ACK
+     * @param toIndex La base de la fenêtre après l'ACK
+     */
+    public void onAck(long fromIndex, long toIndex) {
+        long now = System.nanoTime();
+        for (long i = fromIndex; i < toIndex; i++) {
+            long sent = sendTimes.getAndSet((int) (i % SlidingWindow.SEQUENCE_MODULUS), 0);
+            if (sent != 0) {
+                ackLatency.record(now - sent);
+            }
+        }
+        framesAcked.add(toIndex - fromIndex);
+    }
+
+    /**
+     * @param bytes Octets écrits sur le lien, retransmissions comprises
+     */
+    public void onBytesSent(int bytes) {
+        bytesSent.add(bytes);
+    }
+
+    /**
+     * @param frames Nombre de trames en vol après un nouvel envoi
+     */
+    public void onWindowOccupancy(long frames) {
+        windowOccupancy.record(frames);
+    }
+
+    public void onTimeout() {
+        timeouts.increment();
+    }
+
+    public void onReject() {
+        rejects.increment();
+    }
+
+    @Override
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    @Override
+    public long getFramesAcked() {
+        return framesAcked.sum();
+    }
+
+    @Override
+    public long getRetransmissions() {
+        return retransmissions.sum();
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getRejects() {
+        return rejects.sum();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public double getAckLatencyMeanMicros() {
+        return ackLatency.getMean() / 1000;
+    }
+
+    @Override
+    public long getAckLatencyP50Micros() {
+        return ackLatency.percentile(50) / 1000;
+    }
+
+    @Override
+    public long getAckLatencyP99Micros() {
+        return ackLatency.percentile(99) / 1000;
+    }
+
+    @Override
+    public long getAckLatencyMaxMicros() {
+        return ackLatency.getMax() / 1000;
+    }
+
+    @Override
+    public double getWindowOccupancyMean() {
+        return windowOccupancy.getMean();
+    }
+
+    @Override
+    public long getWindowOccupancyMax() {
+        return windowOccupancy.getMax();
+    }
+
+    /**
+     * @return Les délais d'acquittement, en nanosecondes
+     */
+    public LatencyHistogram getAckLatency() {
+        return ackLatency;
+    }
+
+    @Override
+    public String toString() {
+        return "frames=" + getFramesSent() + " acked=" + getFramesAcked() + " bytes=" + getBytesSent()
+                + " resent=" + getRetransmissions() + " timeouts=" + getTimeouts() + " rejects=" + getRejects()
+                + " ackLatency(p50/p99/max)=" + getAckLatencyP50Micros() + "/" + getAckLatencyP99Micros()
+                + "/" + getAckLatencyMaxMicros() + "us window(mean/max)="
+                + String.format("%.1f", getWindowOccupancyMean()) + "/" + getWindowOccupancyMax();
+    }
+}
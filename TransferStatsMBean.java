@@ -0,0 +1,28 @@
+/**
+ * Vue JMX des statistiques d'un émetteur ({@link TransferStats}).
+ */
+public interface TransferStatsMBean {
+    long getFramesSent();
+
+    long getFramesAcked();
+
+    long getBytesSent();
+
+    long getRetransmissions();
+
+    long getTimeouts();
+
+    long getRejects();
+
+    double getAckLatencyMeanMicros();
+
+    long getAckLatencyP50Micros();
+
+    long getAckLatencyP99Micros();
+
+    long getAckLatencyMaxMicros();
+
+    double getWindowOccupancyMean();
+
+    long getWindowOccupancyMax();
+}
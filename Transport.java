@@ -0,0 +1,98 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Lien d'octets entre l'émetteur et le récepteur. Les écritures sont regroupées jusqu'à l'appel de
+ * {@link #flush()} ; les octets reçus sont passés à un {@link TransportListener}.
+ *
+ * Le transport bloquant ({@link SocketTransport}) reste celui par défaut ; le transport NIO
+ * ({@link NioTransport}) est choisi avec la propriété transport=nio.
+ */
+public interface Transport extends Closeable {
+    String SOCKET = "socket";
+    String NIO = "nio";
+
+    /**
+     * Ajoute des octets au lot d'écriture courant, sans les envoyer.
+     *
+     * @param data Les octets à écrire
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @throws IOException Si le lien est fermé
+     */
+    void write(byte[] data, int off, int len) throws IOException;
+
+    default void write(byte[] data) throws IOException {
+        write(data, 0, data.length);
+    }
+
+    /**
+     * Envoie les octets en attente.
+     *
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    void flush() throws IOException;
+
+    /**
+     * Commence à passer les octets reçus au listener.
+     *
+     * @param listener Le destinataire des octets reçus
+     * @throws IOException Si la lecture ne peut pas démarrer
+     */
+    void start(TransportListener listener) throws IOException;
+
+    /**
+     * Ferme le sens émission une fois les octets en attente envoyés ; le pair lit alors une fin de flux.
+     *
+     * @throws IOException En cas d'erreur
+     */
+    void shutdownOutput() throws IOException;
+
+    /**
+     * @return true si le listener est appelé sur un thread partagé avec d'autres liens (NIO) : il ne doit pas
+     *         y attendre, mais suspendre les lectures de son lien avec {@link #setReadPaused(boolean)}
+     */
+    default boolean isEventDriven() {
+        return false;
+    }
+
+    /**
+     * Suspend ou reprend la lecture du lien, sans effet sur les autres liens ; peut être appelée depuis
+     * n'importe quel thread. Les octets déjà lus sont tout de même passés au listener. Un transport bloquant
+     * l'ignore : son listener attend simplement sur le thread de lecture du lien.
+     *
+     * @param paused true pour suspendre, false pour reprendre
+     */
+    default void setReadPaused(boolean paused) {
+    }
+
+    /**
+     * @return true tant que le lien n'est pas fermé
+     */
+    boolean isOpen();
+
+    /**
+     * @return L'adresse du pair, pour les messages
+     */
+    String getRemoteAddress();
+
+    /**
+     * Ouvre une connexion avec le transport choisi par la propriété système transport.
+     *
+     * @param host Adresse IP ou nom d'hôte du pair
+     * @param port Port du pair
+     * @return Le transport connecté
+     * @throws IOException En cas d'erreur de connexion
+     */
+    static Transport connect(String host, int port) throws IOException {
+        String name = System.getProperty("transport", SOCKET);
+        if (NIO.equals(name)) {
+            return NioTransport.connect(host, port);
+        }
+        if (!SOCKET.equals(name)) {
+            throw new IllegalArgumentException("Unknown transport: " + name);
+        }
+        return new SocketTransport(new Socket(host, port));
+    }
+}
@@ -0,0 +1,25 @@
+import java.io.IOException;
+
+/**
+ * Reçoit les octets lus par un {@link Transport}, toujours depuis un seul thread à la fois.
+ */
+public interface TransportListener {
+
+    /**
+     * Appelée pour chaque bloc d'octets reçus. Le tableau est réutilisé après le retour de la méthode.
+     *
+     * @param buf Les octets reçus
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @throws IOException Si le traitement échoue ; le transport est alors fermé
+     */
+    void onData(byte[] buf, int off, int len) throws IOException;
+
+    /**
+     * Appelée une seule fois, quand le lien est fermé par le pair, localement ou sur erreur.
+     *
+     * @param cause L'erreur à l'origine de la fermeture, ou null pour une fermeture normale
+     */
+    default void onClosed(IOException cause) {
+    }
+}
@@ -0,0 +1,94 @@
+import java.io.IOException;
+
+/**
+ * Regroupe les trames d'une salve avant de les envoyer sur le {@link Transport} en une seule écriture.
+ *
+ * Le lot part à la fin de la salve ({@link #flush()}), dès qu'il atteindrait la taille maximale, ou à la
+ * première écriture qui suit l'expiration du délai maximal d'attente. Le délai n'est vérifié qu'à l'écriture :
+ * l'émetteur vide le lot à chaque fin de salve, avant d'attendre les ACKs.
+ *
+ * Réglages : propriétés système batch.size (octets) et batch.linger (millisecondes).
+ */
+public class WriteBatcher {
+    public static final int DEFAULT_MAX_BATCH_BYTES = 64 * 1024;
+    public static final long DEFAULT_MAX_LINGER_MILLIS = 5;
+
+    private final Transport transport;
+    private final int maxBatchBytes;
+    private final long maxLingerNanos;
+    private int batchBytes; // Octets écrits depuis le dernier envoi
+    private long batchStart; // Instant de la première écriture du lot
+    private long flushes; // Nombre d'envois effectués
+
+    public WriteBatcher(Transport transport) {
+        this(transport, Integer.getInteger("batch.size", DEFAULT_MAX_BATCH_BYTES),
+                Long.getLong("batch.linger", DEFAULT_MAX_LINGER_MILLIS));
+    }
+
+    /**
+     * @param transport Le lien sur lequel envoyer les lots
+     * @param maxBatchBytes La taille maximale d'un lot
+     * @param maxLingerMillis Le délai maximal entre la première écriture d'un lot et son envoi
+     */
+    public WriteBatcher(Transport transport, int maxBatchBytes, long maxLingerMillis) {
+        if (maxBatchBytes < 1 || maxLingerMillis < 0) {
+            throw new IllegalArgumentException("Batch size must be positive and linger time must not be negative");
+        }
+        this.transport = transport;
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxLingerNanos = maxLingerMillis * 1_000_000L;
+    }
+
+    /**
+     * Ajoute des octets au lot courant.
+     *
+     * @param data Les octets à envoyer
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public void write(byte[] data) throws IOException {
+        write(data, 0, data.length);
+    }
+
+    /**
+     * Ajoute une partie d'un tableau au lot courant.
+     *
+     * @param data Le tampon qui contient les octets
+     * @param off Position du premier octet
+     * @param len Nombre d'octets
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public void write(byte[] data, int off, int len) throws IOException {
+        if (batchBytes > 0 && batchBytes + len > maxBatchBytes) {
+            flush(); // Le lot courant est plein : il part avant ces octets
+        }
+        if (batchBytes == 0) {
+            batchStart = System.nanoTime();
+        }
+        transport.write(data, off, len);
+        batchBytes += len;
+        if (batchBytes >= maxBatchBytes || System.nanoTime() - batchStart >= maxLingerNanos) {
+            flush();
+        }
+    }
+
+    /**
+     * Envoie le lot courant, s'il n'est pas vide.
+     *
+     * @throws IOException En cas d'erreur d'écriture
+     */
+    public void flush() throws IOException {
+        if (batchBytes == 0) {
+            return;
+        }
+        transport.flush();
+        batchBytes = 0;
+        flushes++;
+    }
+
+    /**
+     * @return Le nombre de lots envoyés
+     */
+    public long getFlushes() {
+        return flushes;
+    }
+}